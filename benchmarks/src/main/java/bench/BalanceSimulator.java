@@ -0,0 +1,227 @@
+package bench;
+
+import model.Card;
+import model.GameState;
+import model.UnitStore;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless-симуляция баланса: матчи GameState без сокетов и JavaFX, параллельно на fork/join.
+ *
+ * Перебираются все колоды из 4 карт из 8 (70 колод, 4900 пар). Матч i играет пара колод
+ * (i % 70, i / 70 % 70), стороны чередуются, чтобы убрать перекос позиции.
+ * Политики розыгрыша:
+ *   random — каждый тик случайная карта колоды в случайную клетку своей половины;
+ *   greedy — самая дорогая доступная карта в передний ряд линии, где больше всего юнитов противника.
+ * Побеждает тот, кто нанёс больше урона по башне соперника (towerDamage игрока — урон по его башне).
+ *
+ * Вывод: матрица "карта против карты" (доля побед колод с картой по строке против колод с картой
+ * по столбцу, ничья = пол-победы), рейтинг колод и скорость в матчах/с.
+ *
+ * Запуск: java -cp benchmarks/target/benchmarks.jar bench.BalanceSimulator [matches] [random|greedy] [threads]
+ */
+public class BalanceSimulator {
+    public enum Policy { RANDOM, GREEDY }
+
+    private static final Card[] CARDS = Card.defaultCards();
+    private static final int[][] DECKS = decks(CARDS.length, 4);
+    private static final int LEAF = 2048;
+
+    /** Все сочетания k карт из n, по возрастанию. */
+    static int[][] decks(int n, int k) {
+        List<int[]> out = new ArrayList<>();
+        for (int mask = 0; mask < 1 << n; mask++) {
+            if (Integer.bitCount(mask) != k) continue;
+            int[] d = new int[k];
+            int j = 0;
+            for (int c = 0; c < n; c++) if ((mask & 1 << c) != 0) d[j++] = c;
+            out.add(d);
+        }
+        out.sort((a, b) -> {
+            for (int i = 0; i < a.length; i++) if (a[i] != b[i]) return a[i] - b[i];
+            return 0;
+        });
+        return out.toArray(new int[0][]);
+    }
+
+    /** Счётчики в пол-очках: победа 2, ничья 1, поражение 0. */
+    static final class Stats {
+        final long[][] cardPoints = new long[CARDS.length][CARDS.length];
+        final long[][] cardGames = new long[CARDS.length][CARDS.length];
+        final long[] deckPoints = new long[DECKS.length];
+        final long[] deckGames = new long[DECKS.length];
+        long matches;
+        long ticks;
+
+        void add(int deckA, int deckB, int pointsA) {
+            matches++;
+            deckPoints[deckA] += pointsA;
+            deckPoints[deckB] += 2 - pointsA;
+            deckGames[deckA]++;
+            deckGames[deckB]++;
+            for (int a : DECKS[deckA]) {
+                for (int b : DECKS[deckB]) {
+                    cardPoints[a][b] += pointsA;
+                    cardPoints[b][a] += 2 - pointsA;
+                    cardGames[a][b]++;
+                    cardGames[b][a]++;
+                }
+            }
+        }
+
+        Stats merge(Stats o) {
+            for (int i = 0; i < CARDS.length; i++) {
+                for (int j = 0; j < CARDS.length; j++) {
+                    cardPoints[i][j] += o.cardPoints[i][j];
+                    cardGames[i][j] += o.cardGames[i][j];
+                }
+            }
+            for (int d = 0; d < DECKS.length; d++) {
+                deckPoints[d] += o.deckPoints[d];
+                deckGames[d] += o.deckGames[d];
+            }
+            matches += o.matches;
+            ticks += o.ticks;
+            return this;
+        }
+    }
+
+    /** Диапазон матчей [from, to); делится пополам, пока не станет не больше LEAF. */
+    static final class Batch extends RecursiveTask<Stats> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final long from, to, seed;
+        private final Policy policy;
+
+        Batch(long from, long to, Policy policy, long seed) {
+            this.from = from;
+            this.to = to;
+            this.policy = policy;
+            this.seed = seed;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from <= LEAF) return run();
+            long mid = (from + to) >>> 1;
+            Batch left = new Batch(from, mid, policy, seed);
+            left.fork();
+            Stats right = new Batch(mid, to, policy, seed).compute();
+            return left.join().merge(right);
+        }
+
+        private Stats run() {
+            Stats stats = new Stats();
+            GameState state = new GameState();
+            // Своя последовательность на каждый диапазон: результат не зависит от числа потоков
+            SplittableRandom rnd = new SplittableRandom(seed ^ from * 0x9E3779B97F4A7C15L);
+            for (long i = from; i < to; i++) {
+                int deckA = (int) (i % DECKS.length);
+                int deckB = (int) (i / DECKS.length % DECKS.length);
+                boolean swap = (i / ((long) DECKS.length * DECKS.length) & 1) != 0;
+                int[] deck0 = DECKS[swap ? deckB : deckA];
+                int[] deck1 = DECKS[swap ? deckA : deckB];
+                int points0 = play(state, deck0, deck1, policy, rnd, stats);
+                stats.add(deckA, deckB, swap ? 2 - points0 : points0);
+            }
+            return stats;
+        }
+    }
+
+    /** Один матч; возвращает пол-очки игрока 0. */
+    static int play(GameState state, int[] deck0, int[] deck1, Policy policy, SplittableRandom rnd, Stats stats) {
+        state.startMatch();
+        while (!state.isMatchOver()) {
+            act(state, 0, deck0, policy, rnd);
+            act(state, 1, deck1, policy, rnd);
+            state.advanceTick();
+            stats.ticks++;
+        }
+        // Урон, нанесённый игроком, — это towerDamage соперника
+        int dealt0 = state.players[1].towerDamage;
+        int dealt1 = state.players[0].towerDamage;
+        return dealt0 > dealt1 ? 2 : dealt0 == dealt1 ? 1 : 0;
+    }
+
+    private static void act(GameState state, int player, int[] deck, Policy policy, SplittableRandom rnd) {
+        int elixir = state.players[player].elixir;
+        if (policy == Policy.RANDOM) {
+            int card = deck[rnd.nextInt(deck.length)];
+            if (CARDS[card].cost <= elixir) state.deploy(player, card, rnd.nextInt(5), rnd.nextInt(3));
+            return;
+        }
+        int best = -1;
+        for (int card : deck) {
+            if (CARDS[card].cost <= elixir && (best < 0 || CARDS[card].cost > CARDS[best].cost)) best = card;
+        }
+        if (best < 0) return;
+        int[] enemies = new int[GameState.COLS];
+        UnitStore units = state.units;
+        for (int i = 0; i < units.size(); i++) {
+            int s = units.slot(i);
+            if (units.owner(s) != player) enemies[units.col(s)]++;
+        }
+        int lane = rnd.nextInt(GameState.COLS);
+        for (int c = 0; c < GameState.COLS; c++) if (enemies[c] > enemies[lane]) lane = c;
+        // Передний ряд занят — ставим ближе к своей башне
+        for (int row = 0; row < 5; row++) if (state.deploy(player, best, row, lane)) return;
+    }
+
+    public static void main(String[] args) {
+        long matches = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        Policy policy = args.length > 1 ? Policy.valueOf(args[1].toUpperCase()) : Policy.RANDOM;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        pool.invoke(new Batch(0, Math.min(matches, 20_000), policy, 1)); // прогрев JIT
+        long t0 = System.nanoTime();
+        Stats s = pool.invoke(new Batch(0, matches, policy, 42));
+        double sec = (System.nanoTime() - t0) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d matches (%s, %d threads) in %.1f s: %.0f matches/s, %.0f ticks/s%n",
+                s.matches, policy, threads, sec, s.matches / sec, s.ticks / sec);
+
+        System.out.println();
+        System.out.println("Card vs card win rate (row deck vs column deck):");
+        StringBuilder head = new StringBuilder(String.format("%-10s", ""));
+        for (Card c : CARDS) head.append(String.format("%10s", c.name));
+        System.out.println(head);
+        for (int i = 0; i < CARDS.length; i++) {
+            StringBuilder row = new StringBuilder(String.format("%-10s", CARDS[i].name));
+            for (int j = 0; j < CARDS.length; j++) {
+                row.append(i == j ? String.format("%10s", "-")
+                        : String.format("%9.1f%%", 50.0 * s.cardPoints[i][j] / Math.max(1, s.cardGames[i][j])));
+            }
+            System.out.println(row);
+        }
+
+        Integer[] order = new Integer[DECKS.length];
+        for (int d = 0; d < order.length; d++) order[d] = d;
+        Arrays.sort(order, (a, b) -> Double.compare(rate(s, b), rate(s, a)));
+        System.out.println();
+        System.out.println("Deck ranking:");
+        for (int r = 0; r < order.length; r++) {
+            if (r >= 10 && r < order.length - 5) {
+                if (r == 10) System.out.println("  ...");
+                continue;
+            }
+            int d = order[r];
+            StringBuilder names = new StringBuilder();
+            for (int c : DECKS[d]) names.append(names.length() == 0 ? "" : ", ").append(CARDS[c].name);
+            System.out.printf("%3d. %5.1f%%  %s%n", r + 1, 100 * rate(s, d), names);
+        }
+    }
+
+    private static double rate(Stats s, int deck) {
+        return s.deckPoints[deck] / (2.0 * Math.max(1, s.deckGames[deck]));
+    }
+}
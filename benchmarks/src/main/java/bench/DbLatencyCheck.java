@@ -0,0 +1,142 @@
+package bench;
+
+import db.ConnectionPool;
+import db.DatabaseManager;
+import db.MatchWriter;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Проверка, что время saveResult (то, что видит поток тика) не зависит от задержки БД.
+ *
+ * Вместо PostgreSQL — JDBC-заглушка в памяти с настраиваемой задержкой на подключение
+ * и на каждый запрос. Для сравнения меряется и старый путь: новое подключение + INSERT.
+ * В конце заглушка "падает" на время, чтобы проверить буфер повторов.
+ *
+ * Запуск: java -cp benchmarks/target/benchmarks.jar bench.DbLatencyCheck [matches] [latenciesMs через запятую]
+ */
+public class DbLatencyCheck {
+    private static volatile long latencyMs;
+    private static volatile boolean down;
+    private static final AtomicLong rows = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String[] latencies = (args.length > 1 ? args[1] : "0,20,100").split(",");
+
+        ConnectionPool pool = new ConnectionPool(DbLatencyCheck::openFake, 4, 5000);
+        DatabaseManager db = new DatabaseManager(pool);
+        MatchWriter writer = db.matchWriter();
+
+        for (String l : latencies) {
+            latencyMs = Long.parseLong(l.trim());
+            long droppedBefore = writer.dropped();
+            long[] async = new long[matches];
+            for (int i = 0; i < matches; i++) {
+                long t0 = System.nanoTime();
+                db.saveResult(i % 7, i % 5);
+                async[i] = System.nanoTime() - t0;
+                if (i % 100 == 99) Thread.sleep(1); // матчи заканчиваются не все разом
+            }
+            long[] sync = new long[Math.min(20, matches)];
+            for (int i = 0; i < sync.length; i++) {
+                long t0 = System.nanoTime();
+                syncInsert(i % 7, i % 5);
+                sync[i] = System.nanoTime() - t0;
+            }
+            waitDrained(writer, 60_000);
+            System.out.printf("db latency %3d ms: saveResult p50=%d us p99=%d us max=%d us, dropped %d | old sync insert p50=%d us%n",
+                    latencyMs, pct(async, 0.5), pct(async, 0.99), pct(async, 1.0),
+                    writer.dropped() - droppedBefore, pct(sync, 0.5));
+        }
+
+        // БД недоступна: результаты должны дождаться её в буфере повторов
+        latencyMs = 0;
+        down = true;
+        long before = rows.get();
+        for (int i = 0; i < 100; i++) db.saveResult(1, 2);
+        Thread.sleep(1500);
+        System.out.printf("db down: written %d, pending %d%n", rows.get() - before, writer.pending());
+        down = false;
+        waitDrained(writer, 30_000);
+        System.out.printf("db back: written %d, pending %d, dropped %d, total rows %d in %d batches%n",
+                rows.get() - before, writer.pending(), writer.dropped(), rows.get(), writer.batches());
+        db.shutdown();
+    }
+
+    private static void syncInsert(int d0, int d1) throws SQLException {
+        try (Connection conn = openFake();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO matches(player1_damage, player2_damage, result) VALUES(?,?,?)")) {
+            ps.setInt(1, d0);
+            ps.setInt(2, d1);
+            ps.setString(3, "P1");
+            ps.executeUpdate();
+        }
+    }
+
+    private static void waitDrained(MatchWriter writer, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (writer.pending() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    }
+
+    private static long pct(long[] ns, double q) {
+        long[] s = ns.clone();
+        Arrays.sort(s);
+        return s[(int) Math.min(s.length - 1, s.length * q)] / 1000;
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Заглушка java.sql.Connection: задержка на подключение, commit и выполнение запросов. */
+    private static Connection openFake() throws SQLException {
+        if (down) throw new SQLException("connection refused", "08001");
+        pause();
+        boolean[] autoCommit = { true };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "prepareStatement": return fakeStatement();
+                        case "setAutoCommit": autoCommit[0] = (Boolean) a[0]; return null;
+                        case "getAutoCommit": return autoCommit[0];
+                        case "commit": pause(); return null;
+                        case "isValid": return !down;
+                        case "isClosed": return false;
+                        default: return null;
+                    }
+                });
+    }
+
+    private static PreparedStatement fakeStatement() {
+        int[] batch = { 0 };
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "addBatch": batch[0]++; return null;
+                        case "executeBatch":
+                            if (down) throw new SQLException("connection lost", "08006");
+                            pause();
+                            rows.addAndGet(batch[0]);
+                            int[] counts = new int[batch[0]];
+                            Arrays.fill(counts, 1);
+                            batch[0] = 0;
+                            return counts;
+                        case "executeUpdate":
+                            pause();
+                            rows.incrementAndGet();
+                            return 1;
+                        default: return null;
+                    }
+                });
+    }
+}
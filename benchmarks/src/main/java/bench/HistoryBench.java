@@ -0,0 +1,176 @@
+package bench;
+
+import db.DatabaseManager;
+import db.MatchHistory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Задержка страниц истории матчей на большой таблице: keyset (MatchHistory) против OFFSET.
+ *
+ * Нужен живой PostgreSQL из DatabaseManager. При первом запуске в matches досыпается до rows
+ * матчей между игроками bench_1..bench_N (каждый десятый — с участием bench_1, это "горячий"
+ * игрок с сотнями тысяч матчей), потом ANALYZE. Повторный запуск данные не трогает.
+ *
+ * Меряется:
+ *   keyset — страницы подряд от первой до pages-й, время страницы на глубинах 1, 10, 100, ...;
+ *   offset — тот же размер страницы через OFFSET на тех же глубинах (время растёт с глубиной);
+ *   матчи пары, полная выгрузка горячего игрока с fetch size и первая страница через кэш.
+ *
+ * Запуск: java -cp benchmarks/target/benchmarks.jar bench.HistoryBench [rows players pages]
+ * Например: java -cp benchmarks/target/benchmarks.jar bench.HistoryBench 5000000 10000 10000
+ */
+public class HistoryBench {
+    private static final String OFFSET_PAGE = "SELECT id, player1_id, player2_id, player1_damage, player2_damage, result, timestamp " +
+            "FROM matches WHERE player1_id = ? OR player2_id = ? ORDER BY timestamp DESC, id DESC OFFSET ? LIMIT ?";
+
+    public static void main(String[] args) throws Exception {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int pages = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+
+        DatabaseManager db = DatabaseManager.getInstance();
+        MatchHistory history = db.history();
+        long hot = seed(db, rows, players);
+        int page = history.pageSize();
+
+        // keyset: все страницы подряд, как листал бы клиент
+        long[] keyset = new long[pages];
+        MatchHistory.Cursor cursor = MatchHistory.Cursor.LATEST;
+        int walked = 0;
+        while (walked < pages && cursor != null) {
+            long t0 = System.nanoTime();
+            MatchHistory.Page p = history.recent(hot, cursor, page);
+            keyset[walked++] = System.nanoTime() - t0;
+            cursor = p.next;
+        }
+        System.out.printf("hot player %d, page %d rows, walked %d pages%n", hot, page, walked);
+        System.out.println("depth(page)   keyset ms   offset ms");
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(OFFSET_PAGE)) {
+            for (int depth = 1; depth <= walked; depth *= 10) {
+                long skip = (long) (depth - 1) * page;
+                long offset = median(3, () -> {
+                    ps.setLong(1, hot);
+                    ps.setLong(2, hot);
+                    ps.setLong(3, skip);
+                    ps.setInt(4, page);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) rs.getLong(1);
+                    }
+                });
+                // Соседние страницы, чтобы одно попадание в холодный кэш Postgres не решало
+                long[] around = Arrays.copyOfRange(keyset, depth - 1, Math.min(walked, depth + 4));
+                System.out.printf("%11d %11.2f %11.2f%n", depth, median(around) / 1e6, offset / 1e6);
+            }
+        }
+        long[] sorted = Arrays.copyOf(keyset, walked);
+        Arrays.sort(sorted);
+        System.out.printf("keyset over all %d pages: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", walked,
+                sorted[walked / 2] / 1e6, sorted[Math.min(walked - 1, (int) (walked * 0.99))] / 1e6, sorted[walked - 1] / 1e6);
+
+        long t0 = System.nanoTime();
+        int pairPages = 0;
+        long pairRows = 0;
+        for (MatchHistory.Cursor c = MatchHistory.Cursor.LATEST; c != null && pairPages < 100; pairPages++) {
+            MatchHistory.Page p = history.headToHead(hot, hot + 1, c, page);
+            pairRows += p.matches.size();
+            c = p.next;
+        }
+        int[] score = history.headToHeadScore(hot, hot + 1);
+        System.out.printf("head-to-head %d vs %d: %d rows in %d pages, %.2f ms/page, score %d-%d-%d%n", hot, hot + 1,
+                pairRows, pairPages, (System.nanoTime() - t0) / 1e6 / Math.max(1, pairPages), score[0], score[1], score[2]);
+
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = rt.totalMemory() - rt.freeMemory();
+        long[] peak = { heapBefore };
+        t0 = System.nanoTime();
+        long streamed = history.forEach(hot, MatchHistory.BEGINNING, new java.sql.Timestamp(System.currentTimeMillis() + 60_000), m -> {
+            if (m.id % 10_000 == 0) peak[0] = Math.max(peak[0], rt.totalMemory() - rt.freeMemory());
+        });
+        double sec = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("stream: %d matches in %.2f s (%.0f rows/s), heap growth under %d MB%n",
+                streamed, sec, streamed / sec, (peak[0] - heapBefore) / (1 << 20));
+
+        long[] cached = new long[1000];
+        for (int i = 0; i < cached.length; i++) {
+            long s = System.nanoTime();
+            history.recent(hot);
+            cached[i] = System.nanoTime() - s;
+        }
+        System.out.printf("first page through cache: first %.2f ms, then p50 %.3f ms%n",
+                cached[0] / 1e6, median(Arrays.copyOfRange(cached, 1, cached.length)) / 1e6);
+        db.shutdown();
+    }
+
+    /** Досыпает матчи до rows; возвращает id горячего игрока (bench_1). */
+    private static long seed(DatabaseManager db, long rows, int players) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("INSERT INTO players(name) SELECT 'bench_' || g FROM generate_series(1, " + players + ") g " +
+                    "ON CONFLICT (name) DO NOTHING");
+            long lo;
+            // Матчи ниже берут id игроков из диапазона [lo, lo + players), поэтому он должен быть сплошным
+            try (ResultSet rs = st.executeQuery("SELECT min(id), max(id), count(*) FROM players WHERE name LIKE 'bench\\_%'")) {
+                rs.next();
+                lo = rs.getLong(1);
+                if (rs.getLong(2) - lo + 1 != players || rs.getLong(3) != players)
+                    throw new IllegalStateException("bench_* players do not form one id range; delete them and rerun");
+            }
+            long have;
+            try (ResultSet rs = st.executeQuery("SELECT count(*) FROM matches WHERE player1_id BETWEEN " + lo +
+                    " AND " + (lo + players - 1))) {
+                rs.next();
+                have = rs.getLong(1);
+            }
+            if (have >= rows) return lo;
+            System.out.printf("seeding %d matches...%n", rows - have);
+            long t0 = System.nanoTime();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO matches(player1_id, player2_id, player1_damage, player2_damage, result, timestamp) " +
+                            "SELECT a, b, d0, d1, CASE WHEN d0 < d1 THEN 'P1' WHEN d1 < d0 THEN 'P2' ELSE 'DRAW' END, ts FROM (" +
+                            "SELECT CASE WHEN random() < 0.1 THEN ? ELSE ? + floor(random() * ?)::bigint END AS a, " +
+                            "? + floor(random() * ?)::bigint AS b, floor(random() * 500)::int AS d0, " +
+                            "floor(random() * 500)::int AS d1, now() - (? + g) * interval '1 second' AS ts " +
+                            "FROM generate_series(1, ?) g) s")) {
+                ps.setLong(1, lo);
+                ps.setLong(2, lo);
+                ps.setInt(3, players);
+                ps.setLong(4, lo);
+                ps.setInt(5, players);
+                ps.setLong(6, have);
+                ps.setLong(7, rows - have);
+                ps.executeUpdate();
+            }
+            st.execute("ANALYZE matches");
+            System.out.printf("seeded in %.1f s%n", (System.nanoTime() - t0) / 1e9);
+            return lo;
+        }
+    }
+
+    private interface Query {
+        void run() throws SQLException;
+    }
+
+    private static long median(int runs, Query q) throws SQLException {
+        long[] t = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long t0 = System.nanoTime();
+            q.run();
+            t[i] = System.nanoTime() - t0;
+        }
+        return median(t);
+    }
+
+    private static long median(long[] ns) {
+        long[] s = ns.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+}
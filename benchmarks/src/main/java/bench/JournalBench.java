@@ -0,0 +1,94 @@
+package bench;
+
+import model.GameState;
+import server.JournalReader;
+import server.MatchJournal;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Стоимость записи в MatchJournal и проверка воспроизведения.
+ *
+ * 1) threads потоков пишут DEPLOY-события, меряется ns на событие и доля захватов замка журнала с ожиданием;
+ * 2) симулируются случайные матчи с записью команд так же, как это делает Room,
+ *    затем каждый матч воспроизводится JournalReader и сверяется с исходным состоянием по тикам.
+ *
+ * Запуск: java -cp benchmarks/target/benchmarks.jar bench.JournalBench [events] [threads] [matches]
+ */
+public class JournalBench {
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int matches = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        File dir = Files.createTempDirectory("journal-bench").toFile();
+        String[][] expected = new String[matches][];
+
+        try (MatchJournal journal = MatchJournal.open(dir, 16 * 1024 * 1024, 50)) {
+            for (int round = 0; round < 2; round++) { // первый проход — прогрев
+                Thread[] ts = new Thread[threads];
+                long appends0 = journal.appends(), contended0 = journal.contended();
+                long t0 = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    int room = 1000 + t;
+                    ts[t] = new Thread(() -> {
+                        for (int i = 0; i < events / threads; i++) journal.append(MatchJournal.DEPLOY, room, i & 1, "3,4,1");
+                    });
+                    ts[t].start();
+                }
+                for (Thread t : ts) t.join();
+                long ns = System.nanoTime() - t0;
+                if (round == 1) System.out.printf("append: %d events, %d threads, %.0f ns/event, lock contended %.3f%%%n",
+                        events, threads, ns / (double) events,
+                        100.0 * (journal.contended() - contended0) / Math.max(1, journal.appends() - appends0));
+            }
+
+            // Матчи: те же вызовы и записи, что делает Room
+            Random rnd = new Random(11);
+            for (int m = 0; m < matches; m++) {
+                int room = m + 1;
+                GameState state = new GameState();
+                for (int p = 0; p < 2; p++) {
+                    String sel = "0,1,2,3,4,5,6,7".substring(0, 2 * (4 + rnd.nextInt(4)) - 1);
+                    journal.append(MatchJournal.SELECT, room, p, sel);
+                    state.setPlayerSelection(p, sel);
+                }
+                journal.append(MatchJournal.MATCH_START, room, -1, null);
+                state.startMatch();
+                List<String> ticks = new ArrayList<>();
+                while (state.inMatch() && !state.isMatchOver() && ticks.size() < 500) {
+                    for (int d = rnd.nextInt(3); d > 0; d--) {
+                        int p = rnd.nextInt(2);
+                        String deploy = rnd.nextInt(8) + "," + rnd.nextInt(5) + "," + rnd.nextInt(3);
+                        journal.append(MatchJournal.DEPLOY, room, p, deploy);
+                        state.deploy(p, deploy);
+                    }
+                    journal.append(MatchJournal.TICK, room, -1, null);
+                    state.advanceTick();
+                    ticks.add(state.serializeForClients());
+                }
+                if (state.isMatchOver()) journal.append(MatchJournal.END, room, -1, state.computeResult());
+                expected[m] = ticks.toArray(new String[0]);
+            }
+        }
+
+        List<File> segs = JournalReader.segments(dir, 0);
+        int ok = 0, unfinished = 0;
+        for (int m = 0; m < matches; m++) {
+            String[] want = expected[m];
+            boolean[] same = { true };
+            boolean result = JournalReader.replay(segs, m + 1, 1, (tick, state) -> {
+                if (tick > want.length || !want[tick - 1].equals(state.serializeForClients())) same[0] = false;
+            });
+            if (same[0] && result) ok++;
+            else if (same[0]) unfinished++;
+        }
+        System.out.printf("replay: %d/%d matches identical tick by tick (%d without END), %d segment(s)%n",
+                ok, matches, unfinished, segs.size());
+        for (File f : segs) f.delete();
+        dir.delete();
+    }
+}
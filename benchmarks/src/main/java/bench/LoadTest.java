@@ -0,0 +1,120 @@
+package bench;
+
+import net.Protocol;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный клиент для сравнения режимов сервера (server.transport / server.threads).
+ *
+ * Открывает idle-подключения, которые только держат сокет, и active-подключения,
+ * которые раз в intervalMs шлют NOTREADY и ждут своё эхо — по нему меряется round-trip.
+ *
+ * Запуск: java -cp benchmarks/target/benchmarks.jar bench.LoadTest host port idle active seconds [intervalMs]
+ * Например 10000 idle и 1000 active: java -cp benchmarks/target/benchmarks.jar bench.LoadTest 127.0.0.1 23456 10000 1000 60
+ * Память и число потоков сервера смотреть рядом через jcmd &lt;pid&gt; VM.native_memory / Thread.print.
+ */
+public class LoadTest {
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 23456;
+        int idle = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int active = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 30;
+        int intervalMs = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+
+        List<Socket> idleSockets = new ArrayList<>(idle);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < idle; i++) {
+            Socket s = new Socket(host, port);
+            idleSockets.add(s);
+            // Вычитываем приветствия, чтобы не заполнять буферы сервера
+            Thread.ofVirtual().start(() -> drain(s));
+        }
+        System.out.printf("idle connected: %d in %d ms%n", idle, (System.nanoTime() - t0) / 1_000_000);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ConcurrentLinkedQueue<long[]> samples = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(active);
+        for (int i = 0; i < active; i++) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    samples.add(runActive(host, port, deadline, intervalMs));
+                } catch (IOException e) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+
+        int total = 0;
+        for (long[] s : samples) total += s.length;
+        long[] all = new long[total];
+        int pos = 0;
+        for (long[] s : samples) {
+            System.arraycopy(s, 0, all, pos, s.length);
+            pos += s.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("active: %d ok, %d failed, %d round-trips (%.0f/s)%n",
+                samples.size(), errors.get(), total, total / (double) seconds);
+        if (total > 0) {
+            System.out.printf("rtt us: p50=%d p99=%d p999=%d max=%d%n",
+                    all[total / 2] / 1000, all[(int) (total * 0.99)] / 1000,
+                    all[(int) Math.min(total - 1, total * 0.999)] / 1000, all[total - 1] / 1000);
+        }
+        for (Socket s : idleSockets) s.close();
+    }
+
+    private static long[] runActive(String host, int port, long deadline, int intervalMs) throws IOException {
+        try (Socket s = new Socket(host, port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = s.getOutputStream();
+            int me = -1;
+            String line;
+            while (me < 0 && (line = in.readLine()) != null) {
+                Protocol.Parsed p = Protocol.parse(line);
+                if ("ASSIGN".equals(p.type)) me = Integer.parseInt(p.payload);
+            }
+            String echo = String.valueOf(me);
+            byte[] ping = Protocol.make("NOTREADY", "").getBytes(StandardCharsets.UTF_8);
+            long[] rtt = new long[1024];
+            int n = 0;
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                out.write(ping);
+                out.flush();
+                while ((line = in.readLine()) != null) {
+                    Protocol.Parsed p = Protocol.parse(line);
+                    if ("NOTREADY".equals(p.type) && echo.equals(p.payload)) break;
+                }
+                if (line == null) break;
+                if (n == rtt.length) rtt = Arrays.copyOf(rtt, n * 2);
+                rtt[n++] = System.nanoTime() - start;
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            return Arrays.copyOf(rtt, n);
+        }
+    }
+
+    private static void drain(Socket s) {
+        try {
+            InputStream in = s.getInputStream();
+            byte[] buf = new byte[256];
+            while (in.read(buf) >= 0) { /* ничего */ }
+        } catch (IOException ignored) {
+        }
+    }
+}
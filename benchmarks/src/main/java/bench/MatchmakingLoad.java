@@ -0,0 +1,115 @@
+package bench;
+
+import server.Matchmaker;
+import util.Histogram;
+
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Нагрузка на Matchmaker без сети: producers потоков ставят в очередь игроков с рейтингом
+ * из нормального распределения (1500 ± 300) с общей частотой rate в секунду, проход подбора
+ * идёт каждые intervalMs. Меряются пары в секунду, время до пары, разница рейтингов в паре,
+ * длительность прохода и пик очереди. В конце — отдельный замер: backlog игроков ставятся разом,
+ * и считается, за сколько проходов и миллисекунд очередь разбирается.
+ *
+ * Запуск: java -cp benchmarks/target/benchmarks.jar bench.MatchmakingLoad [rate seconds producers intervalMs backlog]
+ * Например: java -cp benchmarks/target/benchmarks.jar bench.MatchmakingLoad 20000 10 4 100 50000
+ */
+public class MatchmakingLoad {
+    static final class Player {
+        final int rating;
+        final long enqueuedNanos = System.nanoTime();
+
+        Player(int rating) { this.rating = rating; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int producers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int intervalMs = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int backlog = args.length > 4 ? Integer.parseInt(args[4]) : 50_000;
+
+        Histogram wait = new Histogram();
+        Histogram gap = new Histogram();
+        AtomicLong pairs = new AtomicLong();
+        Matchmaker<Player> mm = new Matchmaker<>(100, 4000, 2000, 10, new ReentrantLock(), (a, b) -> {
+            long now = System.nanoTime();
+            wait.record(now - a.enqueuedNanos);
+            wait.record(now - b.enqueuedNanos);
+            gap.record(Math.abs(a.rating - b.rating));
+            pairs.incrementAndGet();
+        });
+
+        ScheduledExecutorService matcher = Executors.newSingleThreadScheduledExecutor();
+        Histogram pass = new Histogram();
+        AtomicLong peak = new AtomicLong();
+        matcher.scheduleWithFixedDelay(() -> {
+            long t0 = System.nanoTime();
+            mm.pass();
+            pass.record(System.nanoTime() - t0);
+            peak.accumulateAndGet(mm.queued(), Math::max);
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        System.out.printf("arrivals: %d/s for %d s, %d producers, pass every %d ms%n", rate, seconds, producers, intervalMs);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(producers);
+        AtomicLong enqueued = new AtomicLong();
+        for (int p = 0; p < producers; p++) {
+            long seed = p;
+            Thread.ofPlatform().start(() -> {
+                Random rnd = new Random(seed);
+                long perMilli = Math.max(1, rate / producers / 1000);
+                try {
+                    while (System.nanoTime() < deadline) {
+                        for (int i = 0; i < perMilli; i++) {
+                            Player pl = new Player(rating(rnd));
+                            mm.enqueue(pl, pl.rating);
+                        }
+                        enqueued.addAndGet(perMilli);
+                        Thread.sleep(1);
+                    }
+                } catch (InterruptedException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        Thread.sleep(intervalMs * 3L);
+        long matched = pairs.get() * 2;
+        System.out.printf("enqueued %d, matched %d (%.0f pairs/s), still queued %d, peak queue %d%n",
+                enqueued.get(), matched, pairs.get() / (double) seconds, mm.queued(), peak.get());
+        print("time to match", wait, 1e6, "ms");
+        print("rating gap", gap, 1, "");
+        print("pass", pass, 1e6, "ms");
+        matcher.shutdownNow();
+        matcher.awaitTermination(5, TimeUnit.SECONDS);
+
+        // Разбор накопившейся очереди: все игроки разом, проходы подряд
+        Random rnd = new Random(42);
+        long before = pairs.get();
+        for (int i = 0; i < backlog; i++) {
+            Player pl = new Player(rating(rnd));
+            mm.enqueue(pl, pl.rating);
+        }
+        long t0 = System.nanoTime();
+        int passes = 0;
+        while (mm.pass() > 0) passes++;
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        System.out.printf("backlog %d: %d pairs in %d passes, %d ms, left %d%n",
+                backlog, pairs.get() - before, passes, ms, mm.queued());
+    }
+
+    private static int rating(Random rnd) {
+        return (int) Math.max(0, Math.round(1500 + rnd.nextGaussian() * 300));
+    }
+
+    private static void print(String what, Histogram h, double div, String unit) {
+        System.out.printf("%s: p50 %.2f%s, p99 %.2f%s, max %.2f%s%n", what,
+                h.percentile(0.5) / div, unit, h.percentile(0.99) / div, unit, h.max() / div, unit);
+    }
+}
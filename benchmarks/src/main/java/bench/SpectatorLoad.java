@@ -0,0 +1,114 @@
+package bench;
+
+import net.Protocol;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузка зрителями: два игрока начинают матч, затем подключаются spectators зрителей (SPECTATE)
+ * и seconds секунд принимают UPDATE. Для каждого кадра (по seq) меряется разброс доставки —
+ * от первого зрителя, получившего кадр, до последнего. Заодно проверяется, что каждый зритель
+ * начал с полного кадра K и дальше не видел разрывов seq.
+ *
+ * Запуск: java -cp benchmarks/target/benchmarks.jar bench.SpectatorLoad host port spectators seconds
+ * Сервер лучше запускать с server.transport=nio, а для тысяч зрителей — с ulimit -n побольше.
+ */
+public class SpectatorLoad {
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 23456;
+        int spectators = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+
+        // Два игрока в одной комнате, оба READY
+        // Подключаем обоих сразу: в режиме server.matchmaking=queue ASSIGN приходит только после подбора пары
+        Socket[] players = { new Socket(host, port), new Socket(host, port) };
+        for (int i = 0; i < 2; i++) {
+            BufferedReader in = reader(players[i]);
+            String line;
+            while ((line = in.readLine()) != null && !line.startsWith("ASSIGN:")) { /* до посадки */ }
+            Thread.ofVirtual().start(() -> drain(in));
+        }
+        for (Socket p : players) write(p, "READY", "");
+        Thread.sleep(300);
+
+        ConcurrentHashMap<Long, long[]> spread = new ConcurrentHashMap<>(); // seq -> {first, last, count}
+        AtomicLong joined = new AtomicLong(), startedWithKey = new AtomicLong(), gaps = new AtomicLong(), frames = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(spectators);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < spectators; i++) {
+            Thread.ofVirtual().start(() -> {
+                try (Socket s = new Socket(host, port)) {
+                    sockets.add(s);
+                    s.setSoTimeout(1000);
+                    BufferedReader in = reader(s);
+                    write(s, "SPECTATE", "");
+                    long lastSeq = -1;
+                    while (System.nanoTime() < deadline) {
+                        String line;
+                        try {
+                            line = in.readLine();
+                        } catch (java.net.SocketTimeoutException e) {
+                            continue;
+                        }
+                        if (line == null) break;
+                        Protocol.Parsed p = Protocol.parse(line);
+                        if ("SPECTATE".equals(p.type)) joined.incrementAndGet();
+                        if (!"UPDATE".equals(p.type)) continue;
+                        long now = System.nanoTime();
+                        String[] f = p.payload.split("\\|", 3);
+                        long seq = Long.parseLong(f[1]);
+                        if (lastSeq < 0 && f[0].equals("K")) startedWithKey.incrementAndGet();
+                        if (lastSeq >= 0 && f[0].equals("D") && seq != lastSeq + 1) gaps.incrementAndGet();
+                        lastSeq = seq;
+                        frames.incrementAndGet();
+                        spread.compute(seq, (k, v) -> {
+                            if (v == null) return new long[] { now, now, 1 };
+                            v[0] = Math.min(v[0], now);
+                            v[1] = Math.max(v[1], now);
+                            v[2]++;
+                            return v;
+                        });
+                    }
+                } catch (IOException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        System.out.printf("spectators: %d joined (connect phase %d ms), %d started with K, %d seq gaps, %d UPDATE frames%n",
+                joined.get(), (System.nanoTime() - t0) / 1_000_000, startedWithKey.get(), gaps.get(), frames.get());
+        List<Long> seqs = new ArrayList<>(spread.keySet());
+        Collections.sort(seqs);
+        for (long seq : seqs) {
+            long[] v = spread.get(seq);
+            System.out.printf("seq %d: %d receivers, delivery spread %.1f ms%n", seq, v[2], (v[1] - v[0]) / 1e6);
+        }
+        for (Socket s : players) s.close();
+    }
+
+    private static BufferedReader reader(Socket s) throws IOException {
+        return new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void write(Socket s, String type, String payload) throws IOException {
+        OutputStream out = s.getOutputStream();
+        out.write(Protocol.make(type, payload).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void drain(BufferedReader in) {
+        try {
+            while (in.readLine() != null) { /* игрокам ответы не нужны */ }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package jmh;
+
+import model.GameState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Воспроизводимые доски для бенчмарков: заданное число юнитов, поровну у обоих игроков. */
+final class Boards {
+    static final int CELLS = GameState.ROWS * GameState.COLS;
+
+    private Boards() {}
+
+    /** План расстановки: {player, card, localRow, col} на каждый юнит. */
+    static int[][] plan(int units, long seed) {
+        Random rnd = new Random(seed);
+        boolean[][] used = new boolean[2][15];
+        List<int[]> out = new ArrayList<>();
+        for (int i = 0; i < Math.min(units, CELLS); i++) {
+            int player = i & 1;
+            int cell;
+            do {
+                cell = rnd.nextInt(15);
+            } while (used[player][cell]);
+            used[player][cell] = true;
+            out.add(new int[] { player, rnd.nextInt(8), cell / 3, cell % 3 });
+        }
+        return out.toArray(new int[0][]);
+    }
+
+    /** Новый матч и расстановка по плану (эликсир не ограничивает). */
+    static void apply(GameState state, int[][] plan) {
+        state.startMatch();
+        for (int[] d : plan) {
+            state.players[d[0]].elixir = 10;
+            state.deploy(d[0], d[1], d[2], d[3]);
+        }
+        state.players[0].elixir = 10;
+        state.players[1].elixir = 10;
+    }
+
+    /** Свободная клетка игрока 0 в плане: {localRow, col}. */
+    static int[] freeCell(int[][] plan) {
+        boolean[] used = new boolean[15];
+        for (int[] d : plan) if (d[0] == 0) used[d[2] * 3 + d[3]] = true;
+        for (int c = 0; c < 15; c++) if (!used[c]) return new int[] { c / 3, c % 3 };
+        return null;
+    }
+
+    static GameState filled(int units, long seed) {
+        GameState state = new GameState();
+        apply(state, plan(units, seed));
+        return state;
+    }
+}
@@ -0,0 +1,54 @@
+package jmh;
+
+import app.UpdateParser;
+import model.GameState;
+import model.UpdateEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор UPDATE на клиенте (UpdateParser без JavaFX): старый полный формат,
+ * ключевой кадр и ключевой кадр + следующая за ним дельта.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientParseBench {
+    @Param({ "3", "9", "15", "24" })
+    int units;
+
+    String legacy;
+    String keyframe;
+    String delta;
+    final UpdateParser parser = new UpdateParser();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GameState state = Boards.filled(units, 7);
+        legacy = state.serializeForClients();
+        UpdateEncoder enc = new UpdateEncoder(UpdateEncoder.Mode.DELTA, 1000);
+        keyframe = enc.encode(state);
+        state.advanceTick();
+        delta = enc.encode(state);
+    }
+
+    @Benchmark
+    public UpdateParser.Result applyLegacy() {
+        return parser.apply(legacy);
+    }
+
+    @Benchmark
+    public UpdateParser.Result applyKeyframe() {
+        return parser.apply(keyframe);
+    }
+
+    @Benchmark
+    public UpdateParser.Result applyKeyframeThenDelta() {
+        parser.apply(keyframe);
+        return parser.apply(delta);
+    }
+}
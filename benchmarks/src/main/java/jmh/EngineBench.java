@@ -0,0 +1,92 @@
+package jmh;
+
+import model.GameState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути движка: advanceTick, deploy, serializeForClients.
+ * units — число юнитов на доске из 30 клеток (3 ≈ 10%, 9 ≈ 30%, 15 = 50%, 24 = 80% заполнения).
+ * Тик и deploy меняют доску, поэтому для них заранее собирается BATCH досок, а один вызов
+ * проходит по всем (OperationsPerInvocation): сам Level.Invocation для операций короче микросекунды
+ * вносит в замер больше, чем меряет.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBench {
+    static final int BATCH = 256;
+
+    @Param({ "3", "9", "15", "24" })
+    int units;
+
+    int[][] plan;
+    int[] free;
+
+    @Setup(Level.Trial)
+    public void plan() {
+        plan = Boards.plan(units, 7);
+        free = Boards.freeCell(plan);
+    }
+
+    /** Доски, которые бенчмарк портит: пачка собирается заново перед каждым вызовом. */
+    @State(Scope.Thread)
+    public static class Fresh {
+        final GameState[] states = new GameState[BATCH];
+
+        @Setup(Level.Invocation)
+        public void fill(EngineBench b) {
+            for (int i = 0; i < BATCH; i++) {
+                if (states[i] == null) states[i] = new GameState();
+                Boards.apply(states[i], b.plan);
+            }
+        }
+    }
+
+    /** Доска только для чтения. */
+    @State(Scope.Thread)
+    public static class Filled {
+        GameState state;
+
+        @Setup(Level.Trial)
+        public void fill(EngineBench b) {
+            state = new GameState();
+            Boards.apply(state, b.plan);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void advanceTick(Fresh f, Blackhole bh) {
+        for (GameState s : f.states) {
+            s.advanceTick();
+            bh.consume(s);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void deploy(Fresh f, Blackhole bh) {
+        // Карта 0 стоит 2 эликсира, свободная клетка есть при любом units <= 28
+        for (GameState s : f.states) bh.consume(s.deploy(0, 0, free[0], free[1]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void deployPayload(Fresh f, Blackhole bh) {
+        for (GameState s : f.states) {
+            s.deploy(0, "0," + free[0] + "," + free[1]);
+            bh.consume(s.units.size() > units);
+        }
+    }
+
+    @Benchmark
+    public String serializeForClients(Filled f) {
+        return f.state.serializeForClients();
+    }
+}
@@ -0,0 +1,78 @@
+package jmh;
+
+import db.Leaderboard;
+import db.PlayerProfile;
+import db.PlayerStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лидерборд из памяти: чтение top() (то, что отвечает на LEADERBOARD) и применение пачки
+ * из 64 новых рейтингов после commit писателя. "БД" — массив рейтингов, в неё ходит только reload().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LeaderboardBench {
+    @Param({ "100000" })
+    int players;
+
+    int[] rating;
+    Leaderboard leaderboard;
+    final SplittableRandom rnd = new SplittableRandom(7);
+    final List<PlayerProfile> changed = new ArrayList<>(64);
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        rating = new int[players];
+        for (int i = 0; i < players; i++) rating[i] = 800 + rnd.nextInt(400);
+        PlayerStore store = new PlayerStore(null) {
+            @Override
+            public List<PlayerProfile> top(int limit) {
+                long[] keys = new long[rating.length];
+                for (int i = 0; i < keys.length; i++) keys[i] = ((long) -rating[i] << 32) | i;
+                Arrays.sort(keys);
+                List<PlayerProfile> top = new ArrayList<>(limit);
+                for (int i = 0; i < Math.min(limit, keys.length); i++) {
+                    int id = (int) keys[i];
+                    top.add(new PlayerProfile(id, "p" + id, rating[id]));
+                }
+                return top;
+            }
+        };
+        leaderboard = new Leaderboard(store, 100, 200, 60_000); // как leaderboard.reload.ms по умолчанию
+        leaderboard.reload();
+    }
+
+    @Benchmark
+    public List<PlayerProfile> top() {
+        return leaderboard.top();
+    }
+
+    /** 32 матча: половина среди текущих лидеров, чтобы менялся верх таблицы. */
+    @Benchmark
+    public void update() {
+        changed.clear();
+        List<PlayerProfile> top = leaderboard.top();
+        for (int m = 0; m < 32; m++) {
+            // Пока reload ограничен по частоте, доказуемых мест может не остаться
+            int a = m % 2 == 0 && !top.isEmpty() ? (int) top.get(rnd.nextInt(top.size())).id : rnd.nextInt(players);
+            int b = rnd.nextInt(players);
+            if (a == b) continue;
+            int d = PlayerStore.eloDelta(rating[a], rating[b], rnd.nextInt(3) / 2.0, 32);
+            rating[a] += d;
+            rating[b] -= d;
+            changed.add(new PlayerProfile(a, "p" + a, rating[a]));
+            changed.add(new PlayerProfile(b, "p" + b, rating[b]));
+        }
+        leaderboard.update(changed);
+    }
+}
@@ -0,0 +1,55 @@
+package jmh;
+
+import net.FrameDecoder;
+import net.Protocol;
+import net.ProtocolException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/** Кодирование и разбор UPDATE в текстовом и бинарном формате; payload — реальная доска на units юнитов. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolBench {
+    @Param({ "3", "9", "15", "24" })
+    int units;
+
+    String payload;
+    String line;
+    byte[] binaryFrame;
+    FrameDecoder decoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        payload = Boards.filled(units, 7).serializeForClients();
+        line = Protocol.make("UPDATE", payload).trim();
+        binaryFrame = Protocol.encode(Protocol.Format.BINARY, "UPDATE", payload);
+        decoder = new FrameDecoder();
+    }
+
+    @Benchmark
+    public String make() {
+        return Protocol.make("UPDATE", payload);
+    }
+
+    @Benchmark
+    public Protocol.Parsed parse() {
+        return Protocol.parse(line);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return Protocol.encode(Protocol.Format.BINARY, "UPDATE", payload);
+    }
+
+    @Benchmark
+    public void decodeBinary(Blackhole bh) throws ProtocolException {
+        decoder.decode(ByteBuffer.wrap(binaryFrame), bh::consume);
+    }
+}
@@ -0,0 +1,23 @@
+package jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Все бенчмарки модуля с GC-профайлером: кроме ns/op в отчёте будут gc.alloc.rate.norm (байт на операцию)
+ * и число сборок, так что рост аллокаций виден так же, как рост задержки.
+ * Аргументы — как у обычного JMH (например -p units=24 или -rf json -rff result.json).
+ */
+public class RunAll {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include("jmh\\..*Bench")
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
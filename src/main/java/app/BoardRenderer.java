@@ -0,0 +1,421 @@
+package app;
+
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import model.Card;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Поле игры слоями, снизу вверх:
+ *   board  — фон, сетка, разделитель половин и башни: рисуется один раз в картинку (WritableImage);
+ *   select — подсветка своей половины: перерисовывается только при смене выбора карты;
+ *   units  — юниты: анимируются в frame(), перерисовываются только прямоугольники изменившихся юнитов;
+ *   hud    — урон башен: только при изменении чисел.
+ * Верхние слои прозрачные, поэтому стереть юнита — это clearRect, без перерисовки фона под ней.
+ *
+ * Сервер тикает раз в Room.TICK_MILLIS, поэтому render() только запоминает новое состояние,
+ * а frame() (каждый кадр AnimationTimer) плавно ведёт каждого юнита от того, что сейчас
+ * нарисовано, к последнему UPDATE: перемещение, полоска hp, появление, вспышка урона и гибель.
+ * Когда ничего не анимируется, кадр ничего не рисует.
+ *
+ * Все методы — только на потоке JavaFX.
+ */
+public class BoardRenderer {
+    static final int ROWS = 10, COLS = 3;
+
+    // Длительности анимаций; перемещение заметно короче тика, чтобы юнит успевал встать в клетку
+    private static final long MOVE_NANOS = 500_000_000L;
+    private static final long SPAWN_NANOS = 300_000_000L;
+    private static final long HIT_NANOS = 250_000_000L;
+    private static final long DEATH_NANOS = 400_000_000L;
+
+    private static final Font TOWER_FONT = new Font(20);
+    private static final Font UNIT_FONT = new Font(12);
+
+    private final double width, height;
+    private final double cellSize, startX, startY, fieldHeight;
+    private final double towerW, towerH, towerX, yourTowerY, enemyTowerY;
+    private final Card[] cards;
+    private final StackPane root;
+    private final Canvas select, units, hud;
+
+    // Юниты на слое units: по ключу (uid или клетка эха DEPLOY) и в порядке отрисовки
+    private final Map<Integer, Track> tracks = new HashMap<>();
+    private final List<Track> order = new ArrayList<>();
+    // Прямоугольники, которые надо перерисовать в этом кадре: x, y, w, h подряд
+    private double[] dirty = new double[64];
+    private int generation;
+    private int playerIndex = Integer.MIN_VALUE;
+    private int selectionShown = -1; // -1 — ещё не рисовали, 0/1 — подсветка снята/показана
+    private int hudYour = -1, hudEnemy = -1;
+    private long unitsRedrawn;
+
+    public BoardRenderer(double width, double height, Card[] cards) {
+        this.width = width;
+        this.height = height;
+        this.cards = cards;
+        cellSize = Math.min(width, height) * 0.075;
+        startX = width / 2 - cellSize * 1.5;
+        startY = height * 0.12;
+        fieldHeight = cellSize * ROWS;
+        towerW = cellSize * 2;
+        towerH = cellSize * 2.5;
+        towerX = startX + cellSize * 1.5 - towerW / 2;
+        yourTowerY = startY + fieldHeight + 10;
+        enemyTowerY = startY - towerH - 10;
+
+        select = new Canvas(width, height);
+        units = new Canvas(width, height);
+        hud = new Canvas(width, height);
+        root = new StackPane(new ImageView(prerenderBoard()), select, units, hud);
+    }
+
+    /** Узел для сцены; клики по полю ловить на нём (координаты совпадают с координатами слоёв). */
+    public Node node() { return root; }
+
+    public double width() { return width; }
+    public double height() { return height; }
+    public double cellSize() { return cellSize; }
+    public double startX() { return startX; }
+    public double startY() { return startY; }
+
+    /** Сколько раз юниты перерисованы за всё время — для отладки. */
+    public long unitsRedrawn() { return unitsRedrawn; }
+
+    /** Статичная часть поля: рисуется один раз во вспомогательный Canvas и снимается в картинку. */
+    private WritableImage prerenderBoard() {
+        Canvas c = new Canvas(width, height);
+        GraphicsContext g = c.getGraphicsContext2D();
+        g.setFill(Color.LIGHTGRAY);
+        g.fillRect(0, 0, width, height);
+
+        // Фон поля
+        g.setFill(Color.DARKOLIVEGREEN);
+        g.fillRect(startX - 10, startY - 10, cellSize * 3 + 20, fieldHeight + 20);
+
+        // Сетка (квадратные клетки)
+        g.setStroke(Color.BLACK);
+        g.setLineWidth(2);
+        for (int r = 0; r <= ROWS; r++) {
+            double y = startY + r * cellSize;
+            g.strokeLine(startX, y, startX + cellSize * COLS, y);
+        }
+        for (int col = 0; col <= COLS; col++) {
+            double x = startX + col * cellSize;
+            g.strokeLine(x, startY, x, startY + fieldHeight);
+        }
+
+        // Разделительная линия между половинами
+        g.setStroke(Color.GOLD);
+        g.setLineWidth(3);
+        double midY = startY + cellSize * 5;
+        g.strokeLine(startX, midY, startX + cellSize * COLS, midY);
+
+        // Башни: своя всегда внизу, вражеская вверху; числа урона — на слое hud
+        g.setFont(TOWER_FONT);
+        g.setFill(Color.DARKSEAGREEN);
+        g.fillRect(towerX, yourTowerY, towerW, towerH);
+        g.setFill(Color.WHITE);
+        g.fillText("ТЫ", towerX + 5, yourTowerY + 25);
+        g.setFill(Color.DARKSALMON);
+        g.fillRect(towerX, enemyTowerY, towerW, towerH);
+        g.setFill(Color.WHITE);
+        g.fillText("ВРАГ", towerX + 5, enemyTowerY + 90);
+
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        return c.snapshot(params, null);
+    }
+
+    /**
+     * Новое состояние поля: юниты (глобальные строки), урон башен и подсветка выбора.
+     * Подсветка и урон рисуются сразу, юниты — анимацией в следующих frame().
+     */
+    public void render(int playerIndex, Collection<UnitState> visible, int towerDamage0, int towerDamage1, boolean selection) {
+        if (playerIndex != this.playerIndex) {
+            // Сменилась перспектива — всё нарисованное неверно
+            this.playerIndex = playerIndex;
+            units.getGraphicsContext2D().clearRect(0, 0, width, height);
+            tracks.clear();
+            order.clear();
+            selectionShown = -1;
+            hudYour = hudEnemy = -1;
+        }
+        retarget(visible, System.nanoTime());
+        renderSelection(selection);
+        renderHud(playerIndex == 0 ? towerDamage0 : towerDamage1, playerIndex == 0 ? towerDamage1 : towerDamage0);
+    }
+
+    /** Сопоставляет юнитов с треками: новые появляются, изменившиеся едут к цели, пропавшие гибнут. */
+    private void retarget(Collection<UnitState> visible, long now) {
+        int gen = ++generation;
+        List<UnitState> spawned = null;
+        for (UnitState u : visible) {
+            int vr = visualRow(u.row);
+            if (vr < 0 || u.col < 0 || u.col >= COLS) continue;
+            Track t = tracks.get(key(u));
+            if (t == null || t.deathStart != 0) {
+                if (spawned == null) spawned = new ArrayList<>();
+                spawned.add(u);
+                continue;
+            }
+            t.seen = gen;
+            t.retarget(u, vr, now);
+        }
+        if (spawned != null) {
+            for (UnitState u : spawned) {
+                // Эхо DEPLOY уходит, когда тот же юнит приходит в UPDATE со своим uid: передаём ему трек без эффектов
+                Track t = u.uid != 0 ? takeEcho(u, gen) : null;
+                if (t == null) {
+                    t = new Track();
+                    t.spawn(u, visualRow(u.row), now);
+                    order.add(t);
+                } else {
+                    t.retarget(u, visualRow(u.row), now);
+                }
+                Track old = tracks.put(key(u), t);
+                if (old != null && old != t) old.key = Integer.MIN_VALUE; // доигрывает гибель без ключа
+                t.key = key(u);
+                t.seen = gen;
+            }
+        }
+        for (Track t : order) {
+            if (t.seen != gen && t.deathStart == 0) {
+                t.deathStart = now;
+                t.settled = false;
+            }
+        }
+    }
+
+    private Track takeEcho(UnitState u, int gen) {
+        Track echo = tracks.get(echoKey(u.owner, u.row, u.col));
+        if (echo == null || echo.seen == gen || echo.deathStart != 0 || echo.card != u.cardId) return null;
+        tracks.remove(echo.key);
+        return echo;
+    }
+
+    /**
+     * Один кадр анимации: стирает и перерисовывает только прямоугольники юнитов, которые ещё в движении.
+     * Возвращает true, если что-то перерисовано.
+     */
+    public boolean frame(long now) {
+        int n = 0;
+        for (Track t : order) {
+            if (t.settled) continue;
+            t.layout(now);
+            // Грязный прямоугольник — объединение нарисованного ранее и нового положения
+            double x0 = Math.min(t.paintedX, t.x), y0 = Math.min(t.paintedY, t.y);
+            double x1 = Math.max(t.paintedX + t.paintedSize, t.x + t.size);
+            double y1 = Math.max(t.paintedY + t.paintedSize, t.y + t.size);
+            if (t.paintedSize == 0) { x0 = t.x; y0 = t.y; x1 = t.x + t.size; y1 = t.y + t.size; }
+            if (n + 4 > dirty.length) dirty = Arrays.copyOf(dirty, dirty.length * 2);
+            dirty[n++] = x0; dirty[n++] = y0; dirty[n++] = x1 - x0; dirty[n++] = y1 - y0;
+        }
+        if (n == 0) return false;
+
+        GraphicsContext g = units.getGraphicsContext2D();
+        for (int i = 0; i < n; i += 4) {
+            double x = dirty[i], y = dirty[i + 1], w = dirty[i + 2], h = dirty[i + 3];
+            g.clearRect(x, y, w, h);
+            g.save();
+            g.beginPath();
+            g.rect(x, y, w, h);
+            g.clip();
+            // Соседи, задетые прямоугольником, дорисовываются в пределах клипа
+            for (Track t : order) {
+                if (t.dead || t.x >= x + w || t.x + t.size <= x || t.y >= y + h || t.y + t.size <= y) continue;
+                draw(g, t);
+                unitsRedrawn++;
+            }
+            g.restore();
+        }
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Track t = order.get(i);
+            if (t.settled) continue;
+            t.paintedX = t.x;
+            t.paintedY = t.y;
+            t.paintedSize = t.size;
+            t.settled = t.finished(now);
+            if (t.dead) {
+                order.remove(i);
+                if (t.key != Integer.MIN_VALUE && tracks.get(t.key) == t) tracks.remove(t.key);
+            }
+        }
+        return true;
+    }
+
+    private void draw(GraphicsContext g, Track t) {
+        double cx = t.x + t.size / 2, cy = t.y + t.size / 2;
+        double d = cellSize * 0.7 * t.scale;
+        double ux = cx - d / 2, uy = cy - d / 2;
+        g.setGlobalAlpha(t.alpha);
+        // Цвет зависит от того, чей это юнит относительно текущего игрока
+        g.setFill(t.owner == playerIndex ? Color.BLUE : Color.RED);
+        g.fillOval(ux, uy, d, d);
+        if (t.hit > 0) {
+            // Вспышка урона — белый контур, гаснущий за HIT_NANOS
+            g.setGlobalAlpha(t.alpha * t.hit);
+            g.setStroke(Color.WHITE);
+            g.setLineWidth(3);
+            g.strokeOval(ux, uy, d, d);
+            g.setGlobalAlpha(t.alpha);
+        }
+        // Полоска hp над юнитом
+        double barW = cellSize * 0.7, barH = cellSize * 0.08;
+        double barX = cx - barW / 2, barY = cy - cellSize * 0.45;
+        double frac = Math.max(0, Math.min(1, t.hpShown / Math.max(1, cards[t.card].hp)));
+        g.setFill(Color.DARKRED);
+        g.fillRect(barX, barY, barW, barH);
+        g.setFill(Color.LIMEGREEN);
+        g.fillRect(barX, barY, barW * frac, barH);
+        g.setFill(Color.WHITE);
+        g.setFont(UNIT_FONT);
+        g.fillText(cards[t.card].name.substring(0, 1) + " " + Math.round(t.hpShown), cx - d / 2 + 5, cy);
+        if (t.deathStart != 0) {
+            // Гибель — расходящееся кольцо
+            g.setGlobalAlpha(t.alpha);
+            g.setStroke(Color.ORANGE);
+            g.setLineWidth(2);
+            double r = cellSize * (0.35 + 0.25 * (1 - t.alpha));
+            g.strokeOval(cx - r, cy - r, r * 2, r * 2);
+        }
+        g.setGlobalAlpha(1);
+    }
+
+    private void renderSelection(boolean selection) {
+        int want = selection ? 1 : 0;
+        if (want == selectionShown) return;
+        selectionShown = want;
+        GraphicsContext g = select.getGraphicsContext2D();
+        g.clearRect(0, 0, width, height);
+        if (!selection) return;
+        // Своя половина у любого игрока визуально нижняя
+        g.setStroke(Color.YELLOW);
+        g.setLineWidth(3.0);
+        g.strokeRect(startX, startY + cellSize * 5, cellSize * COLS, cellSize * 5);
+    }
+
+    private void renderHud(int yourDamage, int enemyDamage) {
+        if (yourDamage == hudYour && enemyDamage == hudEnemy) return;
+        GraphicsContext g = hud.getGraphicsContext2D();
+        g.setFont(TOWER_FONT);
+        g.setFill(Color.WHITE);
+        if (yourDamage != hudYour) {
+            g.clearRect(towerX, yourTowerY + 30, towerW + 80, 26); // с запасом на длинное число
+            g.fillText("Урон: " + yourDamage, towerX + 5, yourTowerY + 50);
+            hudYour = yourDamage;
+        }
+        if (enemyDamage != hudEnemy) {
+            g.clearRect(towerX, enemyTowerY + 95, towerW + 80, 26);
+            g.fillText("Урон: " + enemyDamage, towerX + 5, enemyTowerY + 115);
+            hudEnemy = enemyDamage;
+        }
+    }
+
+    /** Визуальная строка: для игрока 1 поле зеркалится, чтобы своя половина была внизу. -1 — вне поля. */
+    private int visualRow(int globalRow) {
+        if (globalRow < 0 || globalRow >= ROWS) return -1;
+        return playerIndex == 1 ? ROWS - 1 - globalRow : globalRow;
+    }
+
+    /** Ключ трека: uid, а у эха DEPLOY (uid ещё нет) — отрицательный номер по владельцу и клетке. */
+    private static int key(UnitState u) {
+        return u.uid != 0 ? u.uid : echoKey(u.owner, u.row, u.col);
+    }
+
+    private static int echoKey(int owner, int row, int col) {
+        return -1 - ((owner & 1) * ROWS * COLS + row * COLS + col);
+    }
+
+    private static double smooth(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    /**
+     * Анимация одного юнита: откуда и куда он едет (визуальные строка/столбец), какое hp показывать,
+     * и где он нарисован сейчас. Прямоугольник юнита — клетка с полями под кольцо гибели.
+     */
+    private final class Track {
+        int key;
+        int seen;
+        int owner, card;
+        double fromRow, fromCol, toRow, toCol;
+        double fromHp, toHp;
+        long moveStart, spawnStart, hitStart, deathStart;
+        boolean settled, dead;
+        // Текущее положение и вид (считаются в layout)
+        double row, col, hpShown, scale = 1, alpha = 1, hit;
+        double x, y, size;
+        double paintedX, paintedY, paintedSize;
+
+        void spawn(UnitState u, int vr, long now) {
+            owner = u.owner;
+            card = u.cardId;
+            fromRow = toRow = row = vr;
+            fromCol = toCol = col = u.col;
+            fromHp = toHp = hpShown = u.hp;
+            spawnStart = now;
+            settled = false;
+        }
+
+        void retarget(UnitState u, int vr, long now) {
+            if (vr == toRow && u.col == toCol && u.hp == toHp && u.owner == owner && u.cardId == card) return;
+            layout(now);
+            fromRow = row;
+            fromCol = col;
+            fromHp = hpShown;
+            if (u.hp < toHp) hitStart = now;
+            toRow = vr;
+            toCol = u.col;
+            toHp = u.hp;
+            owner = u.owner;
+            card = u.cardId;
+            moveStart = now;
+            settled = false;
+        }
+
+        void layout(long now) {
+            double m = moveStart == 0 ? 1 : Math.min(1, (now - moveStart) / (double) MOVE_NANOS);
+            double e = smooth(m);
+            row = fromRow + (toRow - fromRow) * e;
+            col = fromCol + (toCol - fromCol) * e;
+            hpShown = fromHp + (toHp - fromHp) * m;
+            hit = hitStart == 0 ? 0 : Math.max(0, 1 - (now - hitStart) / (double) HIT_NANOS);
+            scale = 1;
+            alpha = 1;
+            if (spawnStart != 0 && now - spawnStart < SPAWN_NANOS) {
+                double s = smooth((now - spawnStart) / (double) SPAWN_NANOS);
+                scale = 0.3 + 0.7 * s;
+                alpha = s;
+            }
+            if (deathStart != 0) {
+                double k = Math.min(1, (now - deathStart) / (double) DEATH_NANOS);
+                scale = 1 - 0.5 * k;
+                alpha = 1 - k;
+                dead = k >= 1;
+            }
+            double pad = cellSize * 0.15;
+            x = startX + col * cellSize - pad;
+            y = startY + row * cellSize - pad;
+            size = cellSize + pad * 2;
+        }
+
+        boolean finished(long now) {
+            return now - moveStart >= MOVE_NANOS && now - spawnStart >= SPAWN_NANOS
+                    && now - hitStart >= HIT_NANOS && deathStart == 0;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package app;
+
+import java.util.List;
+
+/**
+ * Неизменяемое состояние поля для отрисовки: собирается на потоке чтения сети (UpdateParser.frame())
+ * и передаётся потоку JavaFX целиком, поэтому FX никогда не видит наполовину применённый UPDATE.
+ */
+public final class ClientFrame {
+    public static final ClientFrame EMPTY = new ClientFrame(0, 5, 5, 0, 0, List.of(), List.of(), 0, 0);
+
+    /** Сколько UPDATE применено к моменту снимка; по росту видно, что пришёл новый тик. */
+    public final long updates;
+    public final int elixir0, elixir1;
+    public final int towerDamage0, towerDamage1;
+    /** Юниты из UPDATE, затем ещё не подтверждённые эхо DEPLOY. */
+    public final List<UnitState> units;
+    /** Только эхо DEPLOY (они же в конце units). */
+    public final List<UnitState> echoes;
+    /** Последний свой DEPLOY (seq), на который ответил сервер — эхом или REJECT. */
+    public final long deployAck;
+    /** Сколько своих DEPLOY сервер отклонил за всё время. */
+    public final long deployRejects;
+
+    ClientFrame(long updates, int elixir0, int elixir1, int towerDamage0, int towerDamage1,
+                List<UnitState> units, List<UnitState> echoes, long deployAck, long deployRejects) {
+        this.updates = updates;
+        this.elixir0 = elixir0;
+        this.elixir1 = elixir1;
+        this.towerDamage0 = towerDamage0;
+        this.towerDamage1 = towerDamage1;
+        this.units = units;
+        this.echoes = echoes;
+        this.deployAck = deployAck;
+        this.deployRejects = deployRejects;
+    }
+
+    public int elixir(int player) { return player == 0 ? elixir0 : elixir1; }
+    public int towerDamage(int player) { return player == 0 ? towerDamage0 : towerDamage1; }
+}
@@ -0,0 +1,80 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Свои DEPLOY, которые уже показаны на поле, но ещё не подтверждены сервером.
+ *
+ * Клик сразу ставит предсказанного юнита и списывает эликсир, в сервер уходит DEPLOY с номером попытки
+ * (seq). Сервер отвечает эхом DEPLOY с тем же seq (юнит принят — дальше его показывает эхо/UPDATE)
+ * или REJECT:seq (юнит убирается, эликсир возвращается). Ответы идут в порядке команд, поэтому
+ * кадру достаточно нести последний отвеченный seq (ClientFrame.deployAck). Если ответа нет два UPDATE
+ * подряд (сервер без REJECT), предсказание тоже снимается: к этому времени команда точно разобрана.
+ *
+ * Только поток JavaFX.
+ */
+public class DeployPredictions {
+    private static final int UPDATES_TO_EXPIRE = 2;
+
+    private final List<Prediction> pending = new ArrayList<>();
+    private long nextSeq = 1;
+
+    /** Номер для следующего DEPLOY; сквозной на всё время подключения. */
+    public long nextSeq() { return nextSeq++; }
+
+    /** Ставит предсказанного юнита (uid 0, как у эха DEPLOY) для отправленного DEPLOY. */
+    public void add(long seq, UnitState unit, int cost, long sentAtUpdates) {
+        pending.add(new Prediction(seq, unit, cost, sentAtUpdates));
+    }
+
+    /** Снимает предсказания, на которые сервер ответил или которые устарели. Возвращает, сколько снято. */
+    public int reconcile(ClientFrame f) {
+        int before = pending.size();
+        pending.removeIf(p -> p.seq <= f.deployAck || f.updates - p.sentAtUpdates >= UPDATES_TO_EXPIRE);
+        return before - pending.size();
+    }
+
+    /** Сколько эликсира списано предсказаниями сверх того, что уже знает кадр. */
+    public int pendingCost() {
+        int cost = 0;
+        for (Prediction p : pending) cost += p.cost;
+        return cost;
+    }
+
+    /** Юниты кадра плюс предсказанные, если их клетка в кадре ещё свободна. */
+    public List<UnitState> overlay(List<UnitState> units) {
+        if (pending.isEmpty()) return units;
+        List<UnitState> all = new ArrayList<>(units.size() + pending.size());
+        all.addAll(units);
+        for (Prediction p : pending) {
+            boolean occupied = false;
+            for (UnitState u : units) {
+                if (u.row == p.unit.row && u.col == p.unit.col) {
+                    occupied = true;
+                    break;
+                }
+            }
+            if (!occupied) all.add(p.unit);
+        }
+        return all;
+    }
+
+    public boolean isEmpty() { return pending.isEmpty(); }
+
+    public void clear() { pending.clear(); }
+
+    private static final class Prediction {
+        final long seq;
+        final UnitState unit;
+        final int cost;
+        final long sentAtUpdates;
+
+        Prediction(long seq, UnitState unit, int cost, long sentAtUpdates) {
+            this.seq = seq;
+            this.unit = unit;
+            this.cost = cost;
+            this.sentAtUpdates = sentAtUpdates;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package app;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Application;
@@ -18,28 +19,45 @@ import javafx.util.Duration;
 import net.NetClient;
 import net.Protocol;
 import model.Card;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class GameClient extends Application {
+    private static final Logger log = LoggerFactory.getLogger(GameClient.class);
+
     private Stage primaryStage;
     private Scene menuScene, gameScene, endScene;
     private Label opponentReadyLabel;
     private Label opponentSelectionLabel;
+    private Label profileLabel;
     private Button readyButton;
     private boolean isReady = false;
-    private NetClient net = new NetClient();
+    // Формат провода: binary (по умолчанию, с откатом на текст) или text — для отладки
+    private NetClient net = new NetClient(Protocol.Format.valueOf(
+            server.ConfigLoader.get("client.protocol", "binary").trim().toUpperCase()));
     private int playerIndex = -1;
-    private Canvas gameCanvas;
+    private BoardRenderer board;
     private AtomicInteger elixir0 = new AtomicInteger(5), elixir1 = new AtomicInteger(5);
     private Label elixirLabel;
-    private final List<UnitState> units = new ArrayList<>();
+    // Состояние поля из UPDATE и эха DEPLOY; трогается только потоком чтения сети
+    private final UpdateParser updates = new UpdateParser();
+    // Передача кадров в FX: одна ячейка, новый кадр вытесняет не забранный (кадр несёт всё состояние)
+    private final AtomicReference<ClientFrame> pendingFrame = new AtomicReference<>();
+    // Кадр, который сейчас на экране; только поток JavaFX
+    private ClientFrame shown = ClientFrame.EMPTY;
+    // Свои DEPLOY, показанные до ответа сервера; только поток JavaFX
+    private final DeployPredictions predictions = new DeployPredictions();
     private int towerDamage0 = 0;
     private int towerDamage1 = 0;
     private Label gameTimeLabel;
     private Label cycleTimeLabel;
     private Timeline gameTimer;
     private Timeline cycleTimer;
+    // Кадры анимации поля (~60 fps, по пульсу JavaFX); когда юниты стоят, кадр ничего не рисует
+    private AnimationTimer frameTimer;
     private double cycleTimeRemaining = 3.0;
 
     private int prevTowerDamage0 = 0;
@@ -51,20 +69,6 @@ public class GameClient extends Application {
     private final List<ToggleButton> menuToggles = new ArrayList<>();
     private List<Integer> selectedCardIds = new ArrayList<>(); // Храним выбранные карты
 
-    private static class UnitState {
-        int owner;
-        int cardId;
-        int row;
-        int col;
-        int hp;
-        UnitState(int owner, int cardId, int row, int col, int hp) {
-            this.owner = owner; this.cardId = cardId; this.row = row; this.col = col; this.hp = hp;
-        }
-        @Override public String toString() {
-            return owner + "," + cardId + "," + row + "," + col + "," + hp;
-        }
-    }
-
     @Override
     public void start(Stage stage) {
         primaryStage = stage;
@@ -79,26 +83,28 @@ public class GameClient extends Application {
     }
 
     private void connectToServer(String host, int port) {
-        new Thread(() -> {
+        Thread.ofVirtual().name("connect").start(() -> {
             try {
                 net.connect(host, port, this::onServerMessage);
+                // Имя игрока для рейтинга; без входа матчи не идут в рейтинг
+                net.send("LOGIN", server.ConfigLoader.get("client.name", System.getProperty("user.name", "player")));
             } catch (Exception e) {
-                e.printStackTrace();
+                log.error("connect to {}:{} failed", host, port, e);
                 Platform.runLater(() -> showAlert("Network", "Failed to connect to server: " + e.getMessage()));
             }
-        }).start();
+        });
     }
 
-    private void onServerMessage(String raw) {
-        System.out.println("[CLIENT] recv: " + raw);
-        var p = Protocol.parse(raw);
+    private void onServerMessage(Protocol.Parsed p) {
         if (p == null) return;
+        log.debug("recv: {}:{}", p.type, p.payload);
         switch (p.type) {
             case "ASSIGN":
                 try {
                     playerIndex = Integer.parseInt(p.payload);
-                    System.out.println("Assigned playerIndex = " + playerIndex);
-                    resetGameState();
+                    log.info("Assigned playerIndex = {}", playerIndex);
+                    resetDecoder();
+                    Platform.runLater(this::resetGameState);
                 } catch (Exception ignored) {}
                 break;
             case "READY":
@@ -107,7 +113,7 @@ public class GameClient extends Application {
                     if (who != playerIndex) {
                         Platform.runLater(() -> opponentReadyLabel.setText("Противник готов"));
                     } else {
-                        System.out.println("Server confirmed our READY");
+                        log.debug("Server confirmed our READY");
                     }
                 } catch (Exception ignored) {}
                 break;
@@ -117,7 +123,7 @@ public class GameClient extends Application {
                     if (who != playerIndex) {
                         Platform.runLater(() -> opponentReadyLabel.setText("Противник не готов"));
                     } else {
-                        System.out.println("Server confirmed our NOTREADY");
+                        log.debug("Server confirmed our NOTREADY");
                     }
                 } catch (Exception ignored) {}
                 break;
@@ -129,18 +135,19 @@ public class GameClient extends Application {
                     if (from != playerIndex) {
                         Platform.runLater(() -> opponentSelectionLabel.setText("Выбор противника: " + cards));
                     } else {
-                        System.out.println("Our selection acknowledged by server: " + cards);
+                        log.debug("Our selection acknowledged by server: {}", cards);
                         updateCardButtons(cards);
                     }
                 } catch (Exception ignored) {}
                 break;
             case "START_GAME":
+                resetDecoder();
                 Platform.runLater(() -> {
                     resetGameState();
                     if (selectedCardIds.size() == 4 && playerIndex != -1) {
                         String payload = String.join(",", selectedCardIds.stream().map(Object::toString).toArray(String[]::new));
-                        net.send(Protocol.make("SELECT", payload));
-                        System.out.println("Auto-sent SELECT on START_GAME: " + payload);
+                        net.send("SELECT", payload);
+                        log.debug("Auto-sent SELECT on START_GAME: {}", payload);
                     }
                     startTimers(); // Запускаем таймеры при старте игры
                     primaryStage.setScene(gameScene);
@@ -149,9 +156,12 @@ public class GameClient extends Application {
             case "DEPLOY":
                 handleDeployMessage(p.payload);
                 break;
+            case "REJECT":
+                updates.reject(p.payload);
+                pendingFrame.set(updates.frame());
+                break;
             case "UPDATE":
                 parseUpdatePayload(p.payload);
-                Platform.runLater(this::resetCycleTimer); // Сбрасываем таймер цикла при каждом обновлении
                 break;
             case "END":
                 String score = p.payload;
@@ -161,13 +171,39 @@ public class GameClient extends Application {
                 });
                 break;
             case "INFO":
-                System.out.println("INFO from server: " + p.payload);
+                log.info("INFO from server: {}", p.payload);
+                break;
+            case "PROFILE": {
+                // id,имя,рейтинг
+                String[] f = p.payload.split(",", 3);
+                Platform.runLater(() -> profileLabel.setText("Игрок: " + f[1] + ", рейтинг " + f[2]));
                 break;
+            }
+            case "LEADERBOARD": {
+                // имя,рейтинг;имя,рейтинг;...
+                StringBuilder sb = new StringBuilder();
+                int place = 1;
+                for (String e : p.payload.split(";")) {
+                    if (e.isEmpty()) continue;
+                    String[] f = e.split(",", 2);
+                    sb.append(place++).append(". ").append(f[0]).append(" — ").append(f[1]).append('\n');
+                }
+                String text = sb.length() == 0 ? "Пока никто не сыграл рейтинговый матч" : sb.toString();
+                Platform.runLater(() -> showAlert("Рейтинг игроков", text));
+                break;
+            }
         }
     }
 
+    /** Новый матч для разбора; FX увидит пустое поле со следующим кадром. Поток чтения сети. */
+    private void resetDecoder() {
+        updates.reset();
+        pendingFrame.set(updates.frame());
+    }
+
     private void resetGameState() {
-        units.clear();
+        shown = ClientFrame.EMPTY;
+        predictions.clear();
         selectedCardIndex = null;
         towerDamage0 = 0;
         towerDamage1 = 0;
@@ -179,7 +215,8 @@ public class GameClient extends Application {
                 tb.setSelected(false);
             }
             if (readyButton != null) {
-                readyButton.setDisable(true);
+                // ASSIGN приходит, когда подобран соперник, — карты к этому времени могут быть уже выбраны
+                readyButton.setDisable(selectedCardIds.size() < 4);
                 readyButton.setText("Готов!");
                 isReady = false;
             }
@@ -192,61 +229,11 @@ public class GameClient extends Application {
         });
     }
 
-    // Внутри класса GameClient
-    private int getVisualRow(int globalRow, int playerIndex) {
-        // Для игрока 0: отображение без изменений
-        // Для игрока 1: зеркальное отображение относительно центра поля
-        return (playerIndex == 0) ? globalRow : 9 - globalRow;
-    }
-
     private void handleDeployMessage(String payload) {
-        try {
-            String[] parts = payload.split(":", 2);
-            if (parts.length < 2) return;
-            int deployerIndex = Integer.parseInt(parts[0]);
-            String[] deployData = parts[1].split(",");
-            if (deployData.length < 3) return;
-            int cardId = Integer.parseInt(deployData[0]);
-            int localRow = Integer.parseInt(deployData[1]);
-            int col = Integer.parseInt(deployData[2]);
-
-            int globalRow;
-            if (deployerIndex == 0) {
-                // Игрок 0: его локальные строки 0-4 → глобальные 5-9 (нижняя половина поля)
-                globalRow = 5 + localRow;
-            } else {
-                // Игрок 1: его локальные строки 0-4 → глобальные 4-0 (верхняя половина поля)
-                globalRow = 4 - localRow;
-            }
-
-            Card card = null;
-            for (Card c : allCards) {
-                if (c.id == cardId) {
-                    card = c;
-                    break;
-                }
-            }
-
-            if (card == null) return;
-            UnitState newUnit = new UnitState(deployerIndex, cardId, globalRow, col, card.hp);
-
-            Platform.runLater(() -> {
-                boolean exists = false;
-                for (UnitState u : units) {
-                    if (u.owner == deployerIndex && u.row == globalRow && u.col == col) {
-                        exists = true;
-                        break;
-                    }
-                }
-                if (!exists) {
-                    units.add(newUnit);
-                }
-                redrawGame();
-                appendDebug("Отображён юнит: " + newUnit);
-            });
-        } catch (Exception e) {
-            System.err.println("Ошибка обработки DEPLOY: " + e.getMessage());
-        }
+        UnitState echo = updates.deploy(payload, allCards, playerIndex);
+        if (echo != null) log.debug("DEPLOY echo: {}", echo);
+        // Даже без нового юнита эхо могло подтвердить наше предсказание и списать эликсир
+        pendingFrame.set(updates.frame());
     }
 
     private void updateCardButtons(String cardsPayload) {
@@ -270,71 +257,62 @@ public class GameClient extends Application {
         });
     }
 
+    /** Разбор UPDATE прямо на потоке чтения сети; в FX уходит только готовый неизменяемый кадр. */
     private void parseUpdatePayload(String pay) {
-        try {
-            String[] parts = pay.split("\\|", 5);
-            int prev0 = towerDamage0;
-            int prev1 = towerDamage1;
-
-            if (parts.length >= 2) {
-                int e0 = Integer.parseInt(parts[0]);
-                int e1 = Integer.parseInt(parts[1]);
-                elixir0.set(e0); elixir1.set(e1);
-            }
-            if (parts.length >= 4) {
-                try { towerDamage0 = Integer.parseInt(parts[2]); } catch (Exception ignored) { towerDamage0 = 0; }
-                try { towerDamage1 = Integer.parseInt(parts[3]); } catch (Exception ignored) { towerDamage1 = 0; }
-            }
-            units.clear();
-            if (parts.length == 5) {
-                String unitsPart = parts[4];
-                if (unitsPart != null && !unitsPart.isBlank()) {
-                    String[] unitEntries = unitsPart.split(";");
-                    for (String u : unitEntries) {
-                        if (u.isBlank()) continue;
-                        String[] f = u.split(",");
-                        if (f.length >= 5) {
-                            try {
-                                int owner = Integer.parseInt(f[0]);
-                                int cardId = Integer.parseInt(f[1]);
-                                int row = Integer.parseInt(f[2]);
-                                int col = Integer.parseInt(f[3]);
-                                int hp = Integer.parseInt(f[4]);
-                                units.add(new UnitState(owner, cardId, row, col, hp));
-                            } catch (NumberFormatException nfe) {
-                                System.out.println("[CLIENT] bad unit entry: " + u);
-                            }
-                        }
-                    }
-                }
-            }
+        switch (updates.apply(pay)) {
+            case RESYNC:
+                net.send("RESYNC", "");
+                return;
+            case APPLIED:
+                break;
+            default:
+                return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("parsed UPDATE: e0={} e1={} dmg0={} dmg1={} units={}", updates.elixir(0), updates.elixir(1),
+                    updates.towerDamage(0), updates.towerDamage(1), updates.unitCount());
+        }
+        // Если FX ещё не забрал предыдущий кадр, он просто заменяется: runLater на каждое сообщение не копится
+        pendingFrame.set(updates.frame());
+    }
 
-            System.out.println("[CLIENT] parsed UPDATE: e0=" + elixir0 + " e1=" + elixir1
-                    + " dmg0=" + towerDamage0 + " dmg1=" + towerDamage1 + " units=" + units.size());
+    /** Пульс JavaFX: не больше одного нового кадра, затем шаг анимации поля. */
+    private void onPulse(long now) {
+        ClientFrame f = pendingFrame.getAndSet(null);
+        if (f != null) showFrame(f);
+        board.frame(now);
+    }
 
-            Platform.runLater(() -> {
-                redrawGame();
-                updateCardButtonsUI();
-                if (towerDamage0 != prev0) {
-                    String msg = "towerDamage0 changed: " + prev0 + " -> " + towerDamage0;
-                    msg += " ; nearby units: " + describeNearbyUnitsForTower(0);
-                    appendDebug(msg);
-                }
-                if (towerDamage1 != prev1) {
-                    String msg = "towerDamage1 changed: " + prev1 + " -> " + towerDamage1;
-                    msg += " ; nearby units: " + describeNearbyUnitsForTower(1);
-                    appendDebug(msg);
-                }
-            });
-        } catch (Exception ex) {
-            ex.printStackTrace();
+    private void showFrame(ClientFrame f) {
+        ClientFrame prev = shown;
+        shown = f;
+        predictions.reconcile(f);
+        refreshElixir();
+        towerDamage0 = f.towerDamage0;
+        towerDamage1 = f.towerDamage1;
+        redrawGame();
+        updateCardButtonsUI();
+        if (f.updates != prev.updates) resetCycleTimer(); // Сбрасываем таймер цикла при каждом обновлении
+        for (UnitState u : f.echoes) {
+            if (!prev.echoes.contains(u)) appendDebug("Отображён юнит: " + u);
+        }
+        if (f.deployRejects > prev.deployRejects) {
+            appendDebug("Сервер отклонил размещение — юнит убран, эликсир возвращён");
+        }
+        if (f.towerDamage0 != prev.towerDamage0) {
+            appendDebug("towerDamage0 changed: " + prev.towerDamage0 + " -> " + f.towerDamage0
+                    + " ; nearby units: " + describeNearbyUnitsForTower(0));
+        }
+        if (f.towerDamage1 != prev.towerDamage1) {
+            appendDebug("towerDamage1 changed: " + prev.towerDamage1 + " -> " + f.towerDamage1
+                    + " ; nearby units: " + describeNearbyUnitsForTower(1));
         }
     }
 
     private String describeNearbyUnitsForTower(int towerIndex) {
-        if (gameCanvas == null) return "[no-canvas]";
-        double w = gameCanvas.getWidth();
-        double h = gameCanvas.getHeight();
+        if (board == null) return "[no-canvas]";
+        double w = board.width();
+        double h = board.height();
         double minDim = Math.min(w, h);
         double cellSize = minDim * 0.07;
         double startX = w/2 - cellSize*1.5;
@@ -347,7 +325,7 @@ public class GameClient extends Application {
         double tx = towerX + cellSize*1;
         double ty = towerY + cellSize*1.5;
         List<String> near = new ArrayList<>();
-        for (UnitState u : units) {
+        for (UnitState u : visibleUnits()) {
             double ux = startX + u.col*cellSize + cellSize*0.15 + (cellSize*0.7)/2;
             double uy = startY + u.row*cellSize + cellSize*0.15 + (cellSize*0.7)/2;
             double dist = Math.hypot(ux - tx, uy - ty);
@@ -359,9 +337,21 @@ public class GameClient extends Application {
         return String.join(",", near);
     }
 
+    /** Юниты из UPDATE, ещё не подтверждённые эхо DEPLOY и свои предсказанные размещения. */
+    private List<UnitState> visibleUnits() {
+        return predictions.overlay(shown.units);
+    }
+
+    /** Эликсир из кадра минус то, что уже потрачено предсказанными размещениями. */
+    private void refreshElixir() {
+        int debit = predictions.pendingCost();
+        elixir0.set(shown.elixir0 - (playerIndex == 0 ? debit : 0));
+        elixir1.set(shown.elixir1 - (playerIndex == 1 ? debit : 0));
+    }
+
     private void appendDebug(String text) {
         String t = "[" + new Date() + "] " + text + "\n";
-        System.out.println(t);
+        log.debug(text);
         if (debugArea != null) {
             debugArea.appendText(t);
             debugArea.setScrollTop(Double.MAX_VALUE);
@@ -376,6 +366,8 @@ public class GameClient extends Application {
         opponentReadyLabel.setFont(new Font(16));
         opponentSelectionLabel = new Label("Выбор противника: -");
         opponentSelectionLabel.setFont(new Font(14));
+        profileLabel = new Label("Игрок: вход...");
+        profileLabel.setFont(new Font(14));
 
         readyButton = new Button("Готов!");
         readyButton.setDisable(true);
@@ -428,12 +420,16 @@ public class GameClient extends Application {
 
             // Отправляем SELECT для показа противнику
             String payload = String.join(",", selectedCardIds.stream().map(Object::toString).toArray(String[]::new));
-            net.send(Protocol.make("SELECT", payload));
-            System.out.println("Sent SELECT to show to opponent: " + payload);
+            net.send("SELECT", payload);
+            log.debug("Sent SELECT to show to opponent: {}", payload);
             showAlert("Колода отправлена", "Ваша колода показана противнику");
         });
 
-        root.getChildren().addAll(opponentReadyLabel, opponentSelectionLabel, new Label("Выберите 4 карты:"), cards, showDeckButton, readyButton);
+        Button leaderboardButton = new Button("Рейтинг игроков");
+        leaderboardButton.setPrefSize(200, 30);
+        leaderboardButton.setOnAction(e -> net.send("LEADERBOARD", ""));
+
+        root.getChildren().addAll(profileLabel, opponentReadyLabel, opponentSelectionLabel, new Label("Выберите 4 карты:"), cards, showDeckButton, readyButton, leaderboardButton);
         menuScene = new Scene(root, 950, 800); // Увеличиваем размер окна для размещения больших кнопок
     }
 
@@ -446,11 +442,11 @@ public class GameClient extends Application {
             }
 
             // Отправляем READY без автоматической отправки SELECT
-            net.send(Protocol.make("READY", ""));
+            net.send("READY", "");
             isReady = true;
             readyButton.setText("Не готов");
         } else {
-            net.send(Protocol.make("NOTREADY", ""));
+            net.send("NOTREADY", "");
             isReady = false;
             readyButton.setText("Готов!");
         }
@@ -458,7 +454,7 @@ public class GameClient extends Application {
 
     private void initGame() {
         BorderPane root = new BorderPane();
-        gameCanvas = new Canvas(900, 750);
+        board = new BoardRenderer(900, 750, allCards);
         elixirLabel = new Label("Эликсир: ?");
         elixirLabel.setFont(new Font(18));
         elixirLabel.setTextFill(Color.web("#FF1493"));
@@ -500,11 +496,11 @@ public class GameClient extends Application {
         // Добавляем таймеры над debug log
         left.getChildren().addAll(elixirLabel, gameTimeLabel, cycleTimeLabel, new Label("Debug log:"), debugArea);
 
-        root.setCenter(gameCanvas);
+        root.setCenter(board.node());
         root.setRight(right);
         root.setLeft(left);
         gameScene = new Scene(root, 1400, 800);
-        gameCanvas.addEventHandler(MouseEvent.MOUSE_CLICKED, ev -> handleCanvasClick(ev));
+        board.node().addEventHandler(MouseEvent.MOUSE_CLICKED, ev -> handleCanvasClick(ev));
         redrawGame();
     }
 
@@ -541,6 +537,14 @@ public class GameClient extends Application {
         }));
         cycleTimer.setCycleCount(Timeline.INDEFINITE);
         cycleTimer.play();
+
+        frameTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onPulse(now);
+            }
+        };
+        frameTimer.start();
     }
 
     private void resetCycleTimer() {
@@ -567,6 +571,10 @@ public class GameClient extends Application {
             cycleTimer.stop();
             cycleTimer = null;
         }
+        if (frameTimer != null) {
+            frameTimer.stop();
+            frameTimer = null;
+        }
     }
 
     private void selectCard(int cardIndex) {
@@ -658,12 +666,10 @@ public class GameClient extends Application {
             return;
         }
 
-        double w = gameCanvas.getWidth();
-        double h = gameCanvas.getHeight();
-        double minDim = Math.min(w, h);
-        double cellSize = minDim * 0.075; // ТОТ ЖЕ САМЫЙ РАЗМЕР КЛЕТКИ
-        double startX = w/2 - cellSize*1.5;
-        double startY = h*0.12; // ТОТ ЖЕ САМЫЙ СДВИГ
+        // Та же геометрия, что у отрисовки
+        double cellSize = board.cellSize();
+        double startX = board.startX();
+        double startY = board.startY();
 
         double relX = ev.getX() - startX;
         double relY = ev.getY() - startY;
@@ -696,7 +702,7 @@ public class GameClient extends Application {
         }
 
         boolean cellOccupied = false;
-        for (UnitState u : units) {
+        for (UnitState u : visibleUnits()) {
             if (u.row == globalRow && u.col == col) {
                 cellOccupied = true;
                 break;
@@ -716,10 +722,14 @@ public class GameClient extends Application {
         }
 
         int cardId = selectedCard.id;
-        String payload = cardId + "," + localRow + "," + col;
-        System.out.println("[CLIENT] sending DEPLOY (playerIndex=" + playerIndex + "): " + payload);
+        long seq = predictions.nextSeq();
+        String payload = cardId + "," + localRow + "," + col + "," + seq;
+        log.debug("sending DEPLOY (playerIndex={}): {}", playerIndex, payload);
         appendDebug("Размещение карты: " + payload + " (стоимость: " + cardCost + ", остаток эликсира: " + (currentElixir - cardCost) + ")");
-        net.send(Protocol.make("DEPLOY", payload));
+        net.send("DEPLOY", payload);
+        // Юнит и списанный эликсир видны сразу; эхо DEPLOY с тем же seq подтвердит, REJECT — откатит
+        predictions.add(seq, new UnitState(0, playerIndex, cardId, globalRow, col, selectedCard.hp), cardCost, shown.updates);
+        refreshElixir();
 
         selectedCardIndex = null;
         if (selectedButton != null) {
@@ -728,124 +738,16 @@ public class GameClient extends Application {
         redrawGame();
     }
 
+    /** Передаёт текущее состояние полю; юниты доедут до него анимацией в кадрах frameTimer. */
     private void redrawGame() {
-        GraphicsContext g = gameCanvas.getGraphicsContext2D();
-        g.setFill(Color.LIGHTGRAY);
-        g.fillRect(0,0,gameCanvas.getWidth(),gameCanvas.getHeight());
-
-        double w = gameCanvas.getWidth();
-        double h = gameCanvas.getHeight();
-        double minDim = Math.min(w, h);
-        double cellSize = minDim * 0.075; // Немного увеличиваем размер клетки
-        double startX = w/2 - cellSize*1.5;
-        double startY = h*0.12; // Немного сдвигаем поле вниз
-        double fieldHeight = cellSize * 10;
-
-        // Фон поля
-        g.setFill(Color.DARKOLIVEGREEN);
-        g.fillRect(startX - 10, startY - 10, cellSize*3 + 20, fieldHeight + 20);
-
-        // Рисуем сетку (квадратные клетки)
-        g.setStroke(Color.BLACK);
-        g.setLineWidth(2);
-
-        // Горизонтальные линии
-        for (int r = 0; r <= 10; r++) {
-            double y = startY + r * cellSize;
-            g.strokeLine(startX, y, startX + cellSize*3, y);
-        }
-
-        // Вертикальные линии
-        for (int c = 0; c <= 3; c++) {
-            double x = startX + c * cellSize;
-            g.strokeLine(x, startY, x, startY + fieldHeight);
-        }
-
-        // Разделительная линия между половинами
-        g.setStroke(Color.GOLD);
-        g.setLineWidth(3);
-        double midY = startY + cellSize*5;
-        g.strokeLine(startX, midY, startX + cellSize*3, midY);
-
-        // Рисуем башни
-        double towerW = cellSize*2, towerH = cellSize*2.5;
-
-        // ВАЖНО: Для обоих игроков своя башня должна быть внизу, вражеская - вверху
-        int yourDamage = (playerIndex == 0) ? towerDamage0 : towerDamage1;
-        int enemyDamage = (playerIndex == 0) ? towerDamage1 : towerDamage0;
-
-        // Ваша башня (всегда внизу визуально)
-        double yourTowerY = startY + fieldHeight + 10;
-        double yourTowerX = startX + cellSize*1.5 - towerW/2;
-        g.setFill(Color.DARKSEAGREEN);
-        g.fillRect(yourTowerX, yourTowerY, towerW, towerH);
-        g.setFill(Color.WHITE);
-        g.setFont(new Font(20));
-        // Компактное расположение текста
-        g.fillText("ТЫ", yourTowerX + 5, yourTowerY + 25);
-        g.fillText("Урон: " + yourDamage, yourTowerX + 5, yourTowerY + 50);
-
-        // Башня противника (всегда вверху визуально)
-        double enemyTowerY = startY - towerH - 10;
-        double enemyTowerX = startX + cellSize*1.5 - towerW/2;
-        g.setFill(Color.DARKSALMON);
-        g.fillRect(enemyTowerX, enemyTowerY, towerW, towerH);
-        g.setFill(Color.WHITE);
-        g.setFont(new Font(20));
-        // Компактное расположение текста
-        g.fillText("ВРАГ", enemyTowerX + 5, enemyTowerY + 90);
-        g.fillText("Урон: " + enemyDamage, enemyTowerX + 5, enemyTowerY + 115);
-
-        // Рисуем юнитов
-        for (UnitState u : units) {
-            drawUnit(g, u, cellSize, startX, startY, false);
-        }
+        board.render(playerIndex, visibleUnits(), towerDamage0, towerDamage1, selectedCardIndex != null);
 
         // Информация об эликсире - убираем "(вы)"
         String eText;
         if (playerIndex == 0) eText = "Эликсир: " + elixir0.get() + "/10";
         else if (playerIndex == 1) eText = "Эликсир: " + elixir1.get() + "/10";
         else eText = "Эликсир: " + elixir0.get() + "|" + elixir1.get();
-        elixirLabel.setText(eText);
-        elixirLabel.setTextFill(Color.web("#FF1493")); // Яркий неоновый розовый
-
-        // Подсветка выбранной карты - ТОЛЬКО СВОЯ ПОЛОВИНА
-        if (selectedCardIndex != null) {
-            g.setStroke(Color.YELLOW);
-            g.setLineWidth(3.0);
-
-            if (playerIndex == 0) {
-                double startYPlayer = startY + cellSize * 5;
-                g.strokeRect(startX, startYPlayer, cellSize * 3, cellSize * 5);
-            } else {
-                double startYPlayer = startY + cellSize * 5; // Нижняя половина визуально
-                g.strokeRect(startX, startYPlayer, cellSize * 3, cellSize * 5);
-            }
-        }
-    }
-
-    private void drawUnit(GraphicsContext g, UnitState u, double cellSize, double startX, double startY, boolean isLocal) {
-        // Вычисляем визуальную строку на основе глобальной и индекса игрока
-        int visualRow = getVisualRow(u.row, playerIndex);
-
-        double ux = startX + u.col*cellSize + cellSize*0.15;
-        double uy = startY + visualRow*cellSize + cellSize*0.15;
-        double uw = cellSize*0.7;
-        double uh = cellSize*0.7;
-
-        // Цвет зависит от того, чей это юнит (относительно текущего игрока)
-        boolean isOwnUnit = (u.owner == playerIndex);
-        if (isOwnUnit) {
-            g.setFill(Color.BLUE); // Синий для своих юнитов
-        } else {
-            g.setFill(Color.RED); // Красный для чужих юнитов
-        }
-        g.fillOval(ux, uy, Math.max(12, uw), Math.max(12, uh));
-
-        g.setFill(Color.WHITE);
-        g.setFont(new Font(12));
-        String lab = allCards[u.cardId].name.substring(0, 1) + " " + u.hp;
-        g.fillText(lab, ux+5, uy+uh/2);
+        if (!eText.equals(elixirLabel.getText())) elixirLabel.setText(eText);
     }
 
     private void initEnd() {
@@ -880,11 +782,12 @@ public class GameClient extends Application {
         Label scoreLabel = new Label("Урон башен: " + d0 + " / " + d1);
         scoreLabel.setFont(new Font(20));
 
+        // d0/d1 — урон, полученный башней игрока: побеждает тот, кто получил меньше
         String outcome;
-        if ((playerIndex == 0 && d0 > d1) || (playerIndex == 1 && d1 > d0)) {
+        if ((playerIndex == 0 && d0 < d1) || (playerIndex == 1 && d1 < d0)) {
             outcome = "ПОБЕДА!";
             root.setStyle("-fx-background-color: #90EE90;");
-        } else if ((playerIndex == 0 && d0 < d1) || (playerIndex == 1 && d1 < d0)) {
+        } else if ((playerIndex == 0 && d0 > d1) || (playerIndex == 1 && d1 > d0)) {
             outcome = "ПОРАЖЕНИЕ...";
             root.setStyle("-fx-background-color: #FFB6C1;");
         } else {
@@ -916,5 +819,8 @@ public class GameClient extends Application {
         a.showAndWait();
     }
 
-    public static void main(String[] args) { launch(args); }
+    public static void main(String[] args) {
+        util.AsyncConsole.install();
+        launch(args);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package app;
+
+/** Юнит так, как его видит клиент (из UPDATE или эха DEPLOY). Неизменяемый: кадры делят объекты между потоками. */
+public class UnitState {
+    final int uid;
+    final int owner;
+    final int cardId;
+    final int row;
+    final int col;
+    final int hp;
+
+    UnitState(int uid, int owner, int cardId, int row, int col, int hp) {
+        this.uid = uid;
+        this.owner = owner; this.cardId = cardId; this.row = row; this.col = col; this.hp = hp;
+    }
+
+    @Override public String toString() {
+        return owner + "," + cardId + "," + row + "," + col + "," + hp;
+    }
+}
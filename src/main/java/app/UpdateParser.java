@@ -0,0 +1,253 @@
+package app;
+
+import model.Card;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разбор UPDATE и эха DEPLOY на стороне клиента без JavaFX: держит последнее известное состояние поля
+ * и по запросу отдаёт его неизменяемым снимком (frame()) для потока отрисовки.
+ * Понимает дельта-формат "K|seq|..." / "D|seq|..." и старый полный "e0|e1|t0|t1|units".
+ * Payload разбирается одним проходом по строке, без split и промежуточных массивов.
+ *
+ * Не потокобезопасен: вызывается только с потока чтения сети.
+ * Вынесен из GameClient, чтобы его можно было гонять в бенчмарках.
+ */
+public class UpdateParser {
+    private static final Logger log = LoggerFactory.getLogger(UpdateParser.class);
+
+    public enum Result {
+        /** Состояние обновлено. */
+        APPLIED,
+        /** Пропущен кадр: нужно отправить RESYNC. */
+        RESYNC,
+        /** Ждём полный кадр после RESYNC, дельта проигнорирована. */
+        WAITING,
+        /** Payload не разобран. */
+        BAD
+    }
+
+    // Юниты по uid; порядок вставки сохраняется для стабильной отрисовки
+    private final Map<Integer, UnitState> units = new LinkedHashMap<>();
+    // Юниты из эха DEPLOY, ещё не подтверждённые очередным UPDATE
+    private final List<UnitState> echoes = new ArrayList<>();
+    private long lastUpdateSeq = -1;
+    private boolean resyncRequested = false;
+    private long applied;
+    // Свои DEPLOY: последний seq, на который сервер ответил (эхом или REJECT), и сколько из них отклонено
+    private long deployAck;
+    private long deployRejects;
+    private int elixir0 = 5, elixir1 = 5;
+    private int towerDamage0 = 0, towerDamage1 = 0;
+
+    // Разбираемая строка и позиция в ней
+    private String in;
+    private int pos;
+
+    public Result apply(String pay) {
+        try {
+            in = pay;
+            pos = 0;
+            boolean delta = pay.length() > 1 && (pay.charAt(0) == 'K' || pay.charAt(0) == 'D') && pay.charAt(1) == '|';
+            boolean keyframe = !delta || pay.charAt(0) == 'K';
+            if (delta) {
+                pos = 2;
+                long seq = nextLong();
+                if (!keyframe && seq != lastUpdateSeq + 1) {
+                    // Пропустили кадр — дельту не к чему применить, просим полный кадр и ждём его
+                    if (resyncRequested) return Result.WAITING;
+                    resyncRequested = true;
+                    return Result.RESYNC;
+                }
+                if (keyframe) resyncRequested = false;
+                lastUpdateSeq = seq;
+                expect('|');
+            }
+
+            elixir0 = nextInt();
+            expect('|');
+            elixir1 = nextInt();
+            if (skip('|') && more()) {
+                towerDamage0 = nextInt();
+                expect('|');
+                towerDamage1 = nextInt();
+            }
+            skip('|');
+            if (keyframe) units.clear();
+            int synthetic = 0;
+            while (more() && in.charAt(pos) != '|') {
+                if (skip(';')) continue;
+                UnitState us = nextUnit(delta);
+                // В старом формате uid нет — ключом служит порядковый номер в кадре
+                units.put(delta ? us.uid : synthetic++, us);
+                skip(';');
+            }
+            if (delta && skip('|')) {
+                while (more()) {
+                    if (skip(';')) continue;
+                    units.remove(nextInt());
+                }
+            }
+            // Эхо DEPLOY живёт только до первого UPDATE — дальше юнит приходит от сервера
+            echoes.clear();
+            applied++;
+            return Result.APPLIED;
+        } catch (RuntimeException ex) {
+            log.warn("bad UPDATE payload: {}", pay, ex);
+            return Result.BAD;
+        } finally {
+            in = null;
+        }
+    }
+
+    /** "uid,owner,card,row,col,hp" (дельта-формат) или "owner,card,row,col,hp" (старый). */
+    private UnitState nextUnit(boolean withUid) {
+        int uid = 0;
+        if (withUid) {
+            uid = nextInt();
+            expect(',');
+        }
+        int owner = nextInt();
+        expect(',');
+        int cardId = nextInt();
+        expect(',');
+        int row = nextInt();
+        expect(',');
+        int col = nextInt();
+        expect(',');
+        int hp = nextInt();
+        return new UnitState(uid, owner, cardId, row, col, hp);
+    }
+
+    /**
+     * Эхо DEPLOY "player:card,row,col[,seq]" (строка — в половине игрока): юнит показывается сразу,
+     * до UPDATE следующего тика, а эликсир игрока списывается так же, как его списал сервер.
+     * seq в эхе своего DEPLOY подтверждает предсказание клиента (см. DeployPredictions).
+     * Возвращает добавленного юнита или null, если клетка уже занята или payload не разобран.
+     */
+    public UnitState deploy(String payload, Card[] cards, int me) {
+        try {
+            in = payload;
+            pos = 0;
+            int deployerIndex = nextInt();
+            expect(':');
+            int cardId = nextInt();
+            expect(',');
+            int localRow = nextInt();
+            expect(',');
+            int col = nextInt();
+            // Сервер отвечает на команды клиента по порядку, поэтому хватает последнего seq
+            if (skip(',') && deployerIndex == me) deployAck = Math.max(deployAck, nextLong());
+
+            // Игрок 0: его локальные строки 0-4 → глобальные 5-9 (нижняя половина поля),
+            // игрок 1: его локальные строки 0-4 → глобальные 4-0 (верхняя половина поля)
+            int globalRow = deployerIndex == 0 ? 5 + localRow : 4 - localRow;
+
+            Card card = null;
+            for (Card c : cards) {
+                if (c.id == cardId) {
+                    card = c;
+                    break;
+                }
+            }
+            if (card == null) return null;
+            if (deployerIndex == 0) elixir0 -= card.cost;
+            else if (deployerIndex == 1) elixir1 -= card.cost;
+            for (UnitState u : units.values()) {
+                if (u.owner == deployerIndex && u.row == globalRow && u.col == col) return null;
+            }
+            for (UnitState u : echoes) {
+                if (u.owner == deployerIndex && u.row == globalRow && u.col == col) return null;
+            }
+            UnitState echo = new UnitState(0, deployerIndex, cardId, globalRow, col, card.hp);
+            echoes.add(echo);
+            return echo;
+        } catch (RuntimeException ex) {
+            log.warn("Ошибка обработки DEPLOY: {}", ex.getMessage());
+            return null;
+        } finally {
+            in = null;
+        }
+    }
+
+    /** REJECT "seq": сервер не принял наш DEPLOY (не хватило эликсира или клетка занята). */
+    public void reject(String payload) {
+        try {
+            in = payload;
+            pos = 0;
+            deployAck = Math.max(deployAck, nextLong());
+            deployRejects++;
+        } catch (RuntimeException ex) {
+            log.warn("bad REJECT payload: {}", payload);
+        } finally {
+            in = null;
+        }
+    }
+
+    /** Неизменяемый снимок текущего состояния: его можно отдавать другому потоку. */
+    public ClientFrame frame() {
+        List<UnitState> all = new ArrayList<>(units.size() + echoes.size());
+        all.addAll(units.values());
+        all.addAll(echoes);
+        return new ClientFrame(applied, elixir0, elixir1, towerDamage0, towerDamage1,
+                Collections.unmodifiableList(all), List.copyOf(echoes), deployAck, deployRejects);
+    }
+
+    /** Новый матч: забываем поле и номер последнего кадра. Номера DEPLOY сквозные и не сбрасываются. */
+    public void reset() {
+        units.clear();
+        echoes.clear();
+        lastUpdateSeq = -1;
+        resyncRequested = false;
+        towerDamage0 = 0;
+        towerDamage1 = 0;
+    }
+
+    public int unitCount() { return units.size(); }
+    public int elixir(int player) { return player == 0 ? elixir0 : elixir1; }
+    public int towerDamage(int player) { return player == 0 ? towerDamage0 : towerDamage1; }
+
+    private boolean more() {
+        return pos < in.length();
+    }
+
+    private boolean skip(char c) {
+        if (pos < in.length() && in.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!skip(c)) throw new IllegalArgumentException("'" + c + "' expected at " + pos);
+    }
+
+    private int nextInt() {
+        long v = nextLong();
+        if (v != (int) v) throw new NumberFormatException("int overflow at " + pos);
+        return (int) v;
+    }
+
+    private long nextLong() {
+        int n = in.length();
+        boolean neg = skip('-');
+        int start = pos;
+        long v = 0;
+        while (pos < n) {
+            char c = in.charAt(pos);
+            if (c < '0' || c > '9') break;
+            if (pos - start >= 18) throw new NumberFormatException("number too long at " + start);
+            v = v * 10 + (c - '0');
+            pos++;
+        }
+        if (pos == start) throw new NumberFormatException("number expected at " + start);
+        return neg ? -v : v;
+    }
+}
@@ -0,0 +1,133 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Простой пул JDBC-подключений фиксированного размера.
+ *
+ * Соединения открываются лениво, не больше size штук. getConnection() отдаёт обёртку,
+ * у которой close() возвращает соединение в пул, поэтому вызывающий код пишет обычный
+ * try-with-resources. Сломанное соединение (isValid == false) при выдаче заменяется новым.
+ */
+public class ConnectionPool implements AutoCloseable {
+    /** Откуда брать новые физические соединения. */
+    public interface Factory {
+        Connection open() throws SQLException;
+    }
+
+    private final Factory factory;
+    private final BlockingQueue<Connection> idle;
+    private final Semaphore permits;
+    private final long timeoutMillis;
+    private volatile boolean closed;
+
+    public ConnectionPool(Factory factory, int size, long timeoutMillis) {
+        this.factory = factory;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+        this.permits = new Semaphore(Math.max(1, size));
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Берёт соединение из пула, ждёт не дольше timeoutMillis. Свои отказы — с SQLState класса 08
+     * (нет соединения), чтобы писатели повторяли их так же, как обрыв связи с самой БД.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("pool is closed", "08003");
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+                throw new SQLException("no free connection in " + timeoutMillis + " ms", "08001");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for connection", "08001", e);
+        }
+        try {
+            Connection c = idle.poll();
+            if (c != null && !c.isValid(1)) {
+                closeQuietly(c);
+                c = null;
+            }
+            if (c == null) c = factory.open();
+            return wrap(c);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(Connection c, boolean broken) {
+        try {
+            if (broken || closed || c.isClosed()) {
+                closeQuietly(c);
+                return;
+            }
+            // Незакоммиченное не должно достаться следующему
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (!idle.offer(c)) closeQuietly(c);
+        } catch (SQLException e) {
+            closeQuietly(c);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection wrap(Connection real) {
+        InvocationHandler h = new InvocationHandler() {
+            private boolean returned;
+            private boolean broken;
+
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                switch (m.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            release(real, broken);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || real.isClosed();
+                    default:
+                        if (returned) throw new SQLException("connection already returned to pool");
+                        try {
+                            return m.invoke(real, args);
+                        } catch (InvocationTargetException e) {
+                            // Ошибка соединения, а не запроса — такое соединение в пул не возвращаем
+                            if (e.getCause() instanceof SQLException se && isConnectionError(se)) broken = true;
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, h);
+    }
+
+    /** SQLState класса 08 — проблемы с подключением. */
+    private static boolean isConnectionError(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    private static void closeQuietly(Connection c) {
+        try { c.close(); } catch (SQLException ignored) {}
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection c;
+        while ((c = idle.poll()) != null) closeQuietly(c);
+    }
+}
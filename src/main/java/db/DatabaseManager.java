@@ -1,6 +1,9 @@
 package db;
 
 import model.GameState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.ConfigLoader;
 
 import java.sql.*;
 
@@ -9,21 +12,80 @@ import java.sql.*;
  * Параметры подключения (URL / USER / PASS) можно изменить под свою БД.
  *
  * NOTE: перед запуском убедись, что PostgreSQL запущен и БД/пользователь доступны.
+ *
+ * Соединения берутся из ConnectionPool (db.pool.size), результаты матчей пишет MatchWriter
+ * в фоне пачками (db.writer.queue, db.writer.batch, db.writer.retry), так что saveResult не ждёт БД.
+ * Игроки и рейтинги — PlayerStore; рейтинг по Эло (rating.k) меняет тот же MatchWriter,
+ * лидерборд (leaderboard.size, leaderboard.track, leaderboard.reload.ms) отдаётся из памяти.
+ * История матчей читается через MatchHistory (db.history.page, db.history.fetch,
+ * db.history.cache.size, db.history.cache.ttl.ms).
  */
 public class DatabaseManager {
+    private static final Logger log = LoggerFactory.getLogger(DatabaseManager.class);
     private static final String URL = "jdbc:postgresql://localhost:5434/clashgame";
     private static final String USER = "postgres";
     private static final String PASSWORD = "postgres";
 
     private static DatabaseManager instance;
 
+    private final ConnectionPool pool;
+    private final PlayerStore players;
+    private final Leaderboard leaderboard;
+    private final MatchHistory history;
+    private final MatchWriter matches;
+
     private DatabaseManager() {
         try {
             Class.forName("org.postgresql.Driver");
-            initSchema();
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("PostgreSQL driver not found", e);
         }
+        pool = new ConnectionPool(() -> DriverManager.getConnection(URL, USER, PASSWORD),
+                ConfigLoader.getInt("db.pool.size", 4), 5000);
+        players = new PlayerStore(pool);
+        leaderboard = newLeaderboard(players);
+        history = newHistory(pool);
+        matches = newWriter(pool, leaderboard, history);
+        initSchema();
+        try {
+            leaderboard.reload();
+        } catch (SQLException e) {
+            log.warn("leaderboard preload failed, starting empty", e);
+        }
+    }
+
+    /**
+     * Для стендов и бенчмарков: своя фабрика соединений вместо PostgreSQL из констант.
+     * Схема не создаётся, лидерборд не загружается (считается, что игроков пока нет).
+     */
+    public DatabaseManager(ConnectionPool pool) {
+        this.pool = pool;
+        this.players = new PlayerStore(pool);
+        this.leaderboard = newLeaderboard(players);
+        this.history = newHistory(pool);
+        this.matches = newWriter(pool, leaderboard, history);
+    }
+
+    private static Leaderboard newLeaderboard(PlayerStore players) {
+        int size = ConfigLoader.getInt("leaderboard.size", 100);
+        return new Leaderboard(players, size,
+                ConfigLoader.getInt("leaderboard.track", size * 2),
+                ConfigLoader.getInt("leaderboard.reload.ms", 60_000));
+    }
+
+    private static MatchHistory newHistory(ConnectionPool pool) {
+        return new MatchHistory(pool,
+                ConfigLoader.getInt("db.history.page", 20),
+                ConfigLoader.getInt("db.history.fetch", 500),
+                ConfigLoader.getInt("db.history.cache.size", 1024),
+                ConfigLoader.getInt("db.history.cache.ttl.ms", 10_000));
+    }
+
+    private static MatchWriter newWriter(ConnectionPool pool, Leaderboard leaderboard, MatchHistory history) {
+        return new MatchWriter(pool, leaderboard, history, ConfigLoader.getInt("rating.k", 32),
+                ConfigLoader.getInt("db.writer.queue", 1024),
+                ConfigLoader.getInt("db.writer.batch", 64),
+                ConfigLoader.getInt("db.writer.retry", 4096)).start();
     }
 
     public static synchronized DatabaseManager getInstance() {
@@ -31,39 +93,86 @@ public class DatabaseManager {
         return instance;
     }
 
+    /** Соединение из пула; close() возвращает его обратно. */
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return pool.getConnection();
     }
 
+    public MatchWriter matchWriter() { return matches; }
+
+    public PlayerStore players() { return players; }
+
+    public Leaderboard leaderboard() { return leaderboard; }
+
+    public MatchHistory history() { return history; }
+
+    /** То же, что schema_postgres.sql; ALTER — для баз, созданных до появления игроков. */
     private void initSchema() {
-        String createMatches =
+        String[] schema = {
+                "CREATE TABLE IF NOT EXISTS players (" +
+                        "id BIGSERIAL PRIMARY KEY, " +
+                        "name VARCHAR(32) NOT NULL UNIQUE, " +
+                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "last_seen TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ");",
+                "CREATE TABLE IF NOT EXISTS ratings (" +
+                        "player_id BIGINT PRIMARY KEY REFERENCES players(id) ON DELETE CASCADE, " +
+                        "rating INTEGER NOT NULL DEFAULT " + PlayerStore.INITIAL_RATING + ", " +
+                        "games INTEGER NOT NULL DEFAULT 0, " +
+                        "wins INTEGER NOT NULL DEFAULT 0, " +
+                        "losses INTEGER NOT NULL DEFAULT 0, " +
+                        "draws INTEGER NOT NULL DEFAULT 0, " +
+                        "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ");",
+                "CREATE INDEX IF NOT EXISTS ratings_rating_idx ON ratings (rating DESC, player_id);",
                 "CREATE TABLE IF NOT EXISTS matches (" +
                         "id SERIAL PRIMARY KEY, " +
+                        "player1_id BIGINT REFERENCES players(id), " +
+                        "player2_id BIGINT REFERENCES players(id), " +
                         "player1_damage INTEGER NOT NULL, " +
                         "player2_damage INTEGER NOT NULL, " +
                         "result VARCHAR(16) NOT NULL, " +
-                        "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                        ");";
+                        "timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                        ");",
+                "ALTER TABLE matches ADD COLUMN IF NOT EXISTS player1_id BIGINT REFERENCES players(id);",
+                "ALTER TABLE matches ADD COLUMN IF NOT EXISTS player2_id BIGINT REFERENCES players(id);",
+                "CREATE INDEX IF NOT EXISTS matches_player1_history_idx ON matches (player1_id, timestamp DESC, id DESC);",
+                "CREATE INDEX IF NOT EXISTS matches_player2_history_idx ON matches (player2_id, timestamp DESC, id DESC);",
+                "CREATE INDEX IF NOT EXISTS matches_pair_history_idx ON matches " +
+                        "(LEAST(player1_id, player2_id), GREATEST(player1_id, player2_id), timestamp DESC, id DESC);"
+        };
         try (Connection conn = getConnection();
              Statement st = conn.createStatement()) {
-            st.execute(createMatches);
+            // Каждая команда отдельно (autocommit): сбой одной не отменяет остальные
+            for (String sql : schema) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    log.warn("schema statement failed: {}", sql, e);
+                }
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("schema init failed, no database connection", e);
         }
     }
 
     public void saveResult(GameState state) {
-        String sql = "INSERT INTO matches(player1_damage, player2_damage, result) VALUES(?,?,?)";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, state.players[0].towerDamage);
-            ps.setInt(2, state.players[1].towerDamage);
-            String res = state.players[0].towerDamage > state.players[1].towerDamage ? "P1" :
-                    (state.players[1].towerDamage > state.players[0].towerDamage ? "P2" : "DRAW");
-            ps.setString(3, res);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        saveResult(state.players[0].towerDamage, state.players[1].towerDamage);
+    }
+
+    /** Только ставит результат в очередь MatchWriter — вызывать можно прямо из тика. */
+    public void saveResult(int damage0, int damage1) {
+        matches.enqueue(damage0, damage1);
+    }
+
+    /** С игроками (null — не входил): если известны оба, матч меняет их рейтинг. Тоже только очередь. */
+    public void saveResult(PlayerProfile player0, PlayerProfile player1, int damage0, int damage1) {
+        matches.enqueue(player0, player1, damage0, damage1);
+    }
+
+    /** Дописывает отложенные результаты и закрывает пул. */
+    public void shutdown() {
+        matches.close();
+        pool.close();
     }
 }
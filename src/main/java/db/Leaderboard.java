@@ -0,0 +1,151 @@
+package db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Metrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Лидерборд из памяти: запросы никогда не ходят в БД.
+ *
+ * Кэш держит до track лучших игроков (с запасом к показываемым size) в порядке рейтинг ↓, id ↑.
+ * Один раз при старте он загружается запросом по индексу (PlayerStore.top), дальше только
+ * дополняется: MatchWriter после каждой закоммиченной пачки отдаёт новые рейтинги в update().
+ *
+ * floor — верхняя граница рейтинга всех, кого в кэше нет: рейтинг, на котором обрезана загрузка,
+ * и рейтинги вытесненных. Чужой рейтинг меняется только через update(), а поднявшийся выше floor
+ * попадает в кэш, поэтому граница не ломается. Показываются только записи с рейтингом не ниже floor —
+ * выше них никого вне кэша быть не может (на самой границе порядок равных рейтингов условный).
+ * Если таких записей стало меньше size (лидеры проседают), кэш перечитывается из БД, но не чаще
+ * раза в reloadMillis.
+ *
+ * update() и reload() — поток MatchWriter (и первичная загрузка до первого матча);
+ * top() и payload() — из любого потока, это готовый неизменяемый снимок.
+ */
+public class Leaderboard {
+    private static final Logger log = LoggerFactory.getLogger(Leaderboard.class);
+    private static final Comparator<PlayerProfile> ORDER =
+            Comparator.comparingInt((PlayerProfile p) -> -p.rating).thenComparingLong(p -> p.id);
+
+    private static final Metrics.Counter RELOADS = Metrics.counter("leaderboard_reloads_total",
+            "Leaderboard cache loads from the database");
+    private static final Metrics.Counter READS = Metrics.counter("leaderboard_reads_total",
+            "Leaderboard requests served from memory");
+
+    private final PlayerStore store;
+    private final int size;
+    private final int track;
+    private final long reloadMillis;
+    private final TreeSet<PlayerProfile> tracked = new TreeSet<>(ORDER);
+    private final Map<Long, PlayerProfile> byId = new HashMap<>();
+    // Пока не было загрузки, считаем таблицу пустой: все игроки появятся через update()
+    private int floor = Integer.MIN_VALUE;
+    private long lastReload;
+    private boolean loaded;
+    private volatile List<PlayerProfile> top = List.of();
+    private volatile String payload = "";
+
+    public Leaderboard(PlayerStore store, int size, int track, long reloadMillis) {
+        this.store = store;
+        this.size = Math.max(1, size);
+        this.track = Math.max(this.size, track);
+        this.reloadMillis = reloadMillis;
+    }
+
+    /** Первые size игроков по рейтингу. */
+    public List<PlayerProfile> top() {
+        READS.inc();
+        return top;
+    }
+
+    /** Тот же снимок для сообщения LEADERBOARD: "имя,рейтинг;имя,рейтинг;...". */
+    public String payload() {
+        READS.inc();
+        return payload;
+    }
+
+    /**
+     * Перечитывает кэш из БД. При ошибке остаётся прежний снимок, а если загрузки ещё не было —
+     * пустой: про игроков вне кэша ничего не известно (следующая попытка — из update()).
+     */
+    public synchronized void reload() throws SQLException {
+        lastReload = System.currentTimeMillis();
+        RELOADS.inc();
+        List<PlayerProfile> rows;
+        try {
+            // На один больше: рейтинг лишнего и есть граница для всех, кто в кэш не попал
+            rows = store.top(track + 1);
+        } catch (SQLException e) {
+            if (!loaded) {
+                floor = Integer.MAX_VALUE;
+                publish();
+            }
+            throw e;
+        }
+        loaded = true;
+        tracked.clear();
+        byId.clear();
+        floor = Integer.MIN_VALUE;
+        for (int i = 0; i < rows.size(); i++) {
+            PlayerProfile p = rows.get(i);
+            if (i == track) {
+                floor = p.rating;
+                break;
+            }
+            tracked.add(p);
+            byId.put(p.id, p);
+        }
+        publish();
+    }
+
+    /** Новые рейтинги игроков после закоммиченной пачки матчей. */
+    public synchronized void update(List<PlayerProfile> changed) {
+        if (changed.isEmpty()) return;
+        for (PlayerProfile p : changed) {
+            PlayerProfile old = byId.remove(p.id);
+            if (old != null) tracked.remove(old);
+            // Уже известного держим с любым рейтингом; нового — только если он выше всех вне кэша
+            if (old == null && p.rating <= floor) continue;
+            tracked.add(p);
+            byId.put(p.id, p);
+        }
+        while (tracked.size() > track) {
+            PlayerProfile out = tracked.pollLast();
+            byId.remove(out.id);
+            floor = Math.max(floor, out.rating);
+        }
+        if (publish() < size && floor != Integer.MIN_VALUE
+                && System.currentTimeMillis() - lastReload >= reloadMillis) {
+            try {
+                reload();
+            } catch (SQLException e) {
+                log.warn("reload failed", e);
+            }
+        }
+    }
+
+    /** Пересобирает снимок; возвращает, сколько в нём игроков. */
+    private int publish() {
+        List<PlayerProfile> list = new ArrayList<>(size);
+        StringBuilder sb = new StringBuilder(size * 16);
+        for (PlayerProfile p : tracked) {
+            if (list.size() == size || p.rating < floor) break;
+            if (!list.isEmpty()) sb.append(';');
+            sb.append(p.name).append(',').append(p.rating);
+            list.add(p);
+        }
+        top = Collections.unmodifiableList(list);
+        payload = sb.toString();
+        return list.size();
+    }
+
+    public int size() { return size; }
+}
@@ -0,0 +1,339 @@
+package db;
+
+import util.Histogram;
+import util.Metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Чтение истории матчей: последние матчи игрока, матчи двух игроков друг против друга,
+ * выборка за интервал времени.
+ *
+ * Страницы — keyset, а не OFFSET: следующая страница начинается строго после (timestamp, id)
+ * последней строки предыдущей (Cursor), поэтому глубокая страница стоит столько же, сколько первая.
+ * Каждый запрос — проход по своему составному индексу (см. schema_postgres.sql):
+ *   (player1_id, timestamp DESC, id DESC) и (player2_id, ...) — матчи игрока, обе стороны склеиваются
+ *   UNION ALL, и каждая половина останавливается на LIMIT;
+ *   (LEAST(p1, p2), GREATEST(p1, p2), timestamp DESC, id DESC) — матчи пары.
+ * Полная выгрузка за интервал (forEach) идёт одним запросом с fetch size (db.history.fetch), так что
+ * драйвер держит в памяти одну порцию строк, а не весь результат.
+ *
+ * Первая страница последних матчей кэшируется для горячих игроков (LRU на db.history.cache.size
+ * записей, не дольше db.history.cache.ttl.ms). MatchWriter сбрасывает запись игрока после commit
+ * его матча; TTL — для матчей, записанных другим сервером.
+ */
+public class MatchHistory {
+    private static final String COLUMNS = "id, player1_id, player2_id, player1_damage, player2_damage, result, timestamp";
+    // Половина для одной стороны матча; второй ? — тот же игрок, чтобы матч с самим собой не попал дважды
+    private static final String SIDE1 = "SELECT " + COLUMNS + " FROM matches WHERE player1_id = ? " +
+            "AND (timestamp, id) < (?, ?) AND timestamp >= ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String SIDE2 = "SELECT " + COLUMNS + " FROM matches WHERE player2_id = ? AND player1_id IS DISTINCT FROM ? " +
+            "AND (timestamp, id) < (?, ?) AND timestamp >= ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    static final String SELECT_PLAYER = "SELECT " + COLUMNS + " FROM ((" + SIDE1 + ") UNION ALL (" + SIDE2 + ")) h " +
+            "ORDER BY timestamp DESC, id DESC LIMIT ?";
+    static final String SELECT_PAIR = "SELECT " + COLUMNS + " FROM matches " +
+            "WHERE LEAST(player1_id, player2_id) = ? AND GREATEST(player1_id, player2_id) = ? " +
+            "AND (timestamp, id) < (?, ?) AND timestamp >= ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    static final String SELECT_PAIR_SCORE = "SELECT player1_id, result, count(*) FROM matches " +
+            "WHERE LEAST(player1_id, player2_id) = ? AND GREATEST(player1_id, player2_id) = ? GROUP BY player1_id, result";
+    // Без LIMIT на половинах: выгрузка целиком, порциями fetch size
+    static final String STREAM_PLAYER = "SELECT " + COLUMNS + " FROM matches WHERE player1_id = ? " +
+            "AND timestamp >= ? AND timestamp < ? UNION ALL SELECT " + COLUMNS + " FROM matches " +
+            "WHERE player2_id = ? AND player1_id IS DISTINCT FROM ? AND timestamp >= ? AND timestamp < ? " +
+            "ORDER BY timestamp DESC, id DESC";
+
+    /** Самое раннее время для выборок без нижней границы. */
+    public static final Timestamp BEGINNING = new Timestamp(0);
+
+    private static final Histogram QUERY_TIME = Metrics.histogram("history_query_seconds",
+            "Match history page query time", Metrics.NANOS);
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter("history_cache_hits_total",
+            "Match history first pages served from the cache");
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter("history_cache_misses_total",
+            "Match history first pages read from the database");
+
+    /** Один матч из истории; id игрока 0 — матч без входа (LOGIN). */
+    public static final class Match {
+        public final long id;
+        public final long player1Id;
+        public final long player2Id;
+        public final int damage0;
+        public final int damage1;
+        public final String result;
+        public final Timestamp playedAt;
+
+        Match(long id, long player1Id, long player2Id, int damage0, int damage1, String result, Timestamp playedAt) {
+            this.id = id;
+            this.player1Id = player1Id;
+            this.player2Id = player2Id;
+            this.damage0 = damage0;
+            this.damage1 = damage1;
+            this.result = result;
+            this.playedAt = playedAt;
+        }
+    }
+
+    /**
+     * Позиция в истории: следующая страница — матчи строго раньше (playedAt, id).
+     * Время хранится с точностью БД (микросекунды), иначе на границе страниц строки терялись бы.
+     */
+    public static final class Cursor {
+        /** Начало выборки: позже любого матча. */
+        public static final Cursor LATEST = new Cursor(Timestamp.valueOf("9999-12-31 00:00:00"), 0);
+
+        public final Timestamp playedAt;
+        public final long id;
+
+        public Cursor(Timestamp playedAt, long id) {
+            this.playedAt = playedAt;
+            this.id = id;
+        }
+
+        /** Начало выборки с верхней границей времени: матчи строго раньше before. */
+        public static Cursor before(Timestamp before) {
+            return new Cursor(before, 0);
+        }
+
+        /** Для передачи клиенту (ответ HISTORY): "секунды.наносекунды.id". */
+        @Override
+        public String toString() {
+            return playedAt.getTime() / 1000 + "." + playedAt.getNanos() + "." + id;
+        }
+
+        public static Cursor parse(String s) {
+            String[] f = s.split("\\.");
+            if (f.length != 3) throw new IllegalArgumentException("bad cursor: " + s);
+            Timestamp t = new Timestamp(Long.parseLong(f[0]) * 1000);
+            t.setNanos(Integer.parseInt(f[1]));
+            return new Cursor(t, Long.parseLong(f[2]));
+        }
+    }
+
+    /** Страница истории; next == null — дальше матчей нет. */
+    public static final class Page {
+        public final List<Match> matches;
+        public final Cursor next;
+
+        Page(List<Match> matches, Cursor next) {
+            this.matches = matches;
+            this.next = next;
+        }
+    }
+
+    private static final class Cached {
+        final Page page;
+        final long loadedAt;
+
+        Cached(Page page, long loadedAt) {
+            this.page = page;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /** Поколение кэша одного игрока, пока его первая страница читается из БД (под монитором cache). */
+    private static final class Generation {
+        long value;
+        int readers;
+    }
+
+    private final ConnectionPool pool;
+    private final int pageSize;
+    private final int fetchSize;
+    private final int cacheSize;
+    private final long cacheTtlMillis;
+    // LinkedHashMap в порядке доступа — LRU; под своим монитором, запросы к БД идут вне его
+    private final LinkedHashMap<Long, Cached> cache;
+    // Только игроки, чья страница сейчас читается: invalidate поднимает их поколение, и прочитанная
+    // до commit страница в кэш не попадает. Сброс другого игрока чужие чтения не трогает
+    private final Map<Long, Generation> loading = new HashMap<>();
+
+    public MatchHistory(ConnectionPool pool, int pageSize, int fetchSize, int cacheSize, long cacheTtlMillis) {
+        this.pool = pool;
+        this.pageSize = Math.max(1, pageSize);
+        this.fetchSize = Math.max(1, fetchSize);
+        this.cacheSize = Math.max(0, cacheSize);
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+                return size() > MatchHistory.this.cacheSize;
+            }
+        };
+    }
+
+    public int pageSize() { return pageSize; }
+
+    /** Первая страница последних матчей игрока (размера pageSize); горячие игроки — из кэша. */
+    public Page recent(long playerId) throws SQLException {
+        long now = System.currentTimeMillis();
+        Generation g;
+        long seen;
+        synchronized (cache) {
+            Cached c = cache.get(playerId);
+            if (c != null && now - c.loadedAt < cacheTtlMillis) {
+                CACHE_HITS.inc();
+                return c.page;
+            }
+            g = loading.computeIfAbsent(playerId, id -> new Generation());
+            g.readers++;
+            seen = g.value;
+        }
+        CACHE_MISSES.inc();
+        Page page = null;
+        try {
+            page = recent(playerId, Cursor.LATEST, pageSize);
+            return page;
+        } finally {
+            synchronized (cache) {
+                // Пока читали, мог закоммититься новый матч этого игрока — такую страницу не кладём
+                if (page != null && g.value == seen && cacheSize > 0) cache.put(playerId, new Cached(page, now));
+                if (--g.readers == 0) loading.remove(playerId);
+            }
+        }
+    }
+
+    /** Матчи игрока раньше after, от новых к старым. */
+    public Page recent(long playerId, Cursor after, int limit) throws SQLException {
+        return range(playerId, BEGINNING, after, limit);
+    }
+
+    /** Матчи игрока не раньше from и раньше after (для интервала [from, to) — after = Cursor.before(to)). */
+    public Page range(long playerId, Timestamp from, Cursor after, int limit) throws SQLException {
+        limit = Math.max(1, limit);
+        long t0 = System.nanoTime();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_PLAYER)) {
+            // На строку больше — по ней видно, есть ли следующая страница
+            int n = limit + 1;
+            int i = 1;
+            ps.setLong(i++, playerId);
+            i = setBounds(ps, i, from, after, n);
+            ps.setLong(i++, playerId);
+            ps.setLong(i++, playerId);
+            i = setBounds(ps, i, from, after, n);
+            ps.setInt(i, n);
+            return page(ps, limit);
+        } finally {
+            QUERY_TIME.record(System.nanoTime() - t0);
+        }
+    }
+
+    /** Матчи двух игроков друг против друга раньше after, от новых к старым. */
+    public Page headToHead(long playerA, long playerB, Cursor after, int limit) throws SQLException {
+        limit = Math.max(1, limit);
+        long t0 = System.nanoTime();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_PAIR)) {
+            ps.setLong(1, Math.min(playerA, playerB));
+            ps.setLong(2, Math.max(playerA, playerB));
+            setBounds(ps, 3, BEGINNING, after, limit + 1);
+            return page(ps, limit);
+        } finally {
+            QUERY_TIME.record(System.nanoTime() - t0);
+        }
+    }
+
+    /** Счёт пары за всё время: {победы A, победы B, ничьи}. */
+    public int[] headToHeadScore(long playerA, long playerB) throws SQLException {
+        int[] score = new int[3];
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_PAIR_SCORE)) {
+            ps.setLong(1, Math.min(playerA, playerB));
+            ps.setLong(2, Math.max(playerA, playerB));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    boolean aFirst = rs.getLong(1) == playerA;
+                    String result = rs.getString(2);
+                    int n = rs.getInt(3);
+                    if ("DRAW".equals(result)) score[2] += n;
+                    else if ("P1".equals(result) == aFirst) score[0] += n;
+                    else score[1] += n;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Все матчи игрока за [from, to), от новых к старым, без страниц: строки приходят порциями
+     * по fetchSize. Возвращает, сколько матчей отдано в sink.
+     */
+    public long forEach(long playerId, Timestamp from, Timestamp to, Consumer<Match> sink) throws SQLException {
+        long n = 0;
+        try (Connection conn = pool.getConnection()) {
+            // Драйвер PostgreSQL читает порциями только внутри транзакции
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(STREAM_PLAYER)) {
+                ps.setFetchSize(fetchSize);
+                ps.setLong(1, playerId);
+                ps.setTimestamp(2, from);
+                ps.setTimestamp(3, to);
+                ps.setLong(4, playerId);
+                ps.setLong(5, playerId);
+                ps.setTimestamp(6, from);
+                ps.setTimestamp(7, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        sink.accept(match(rs));
+                        n++;
+                    }
+                }
+            }
+            conn.commit();
+        }
+        return n;
+    }
+
+    /** Новые матчи этих игроков закоммичены: их первые страницы в кэше устарели. Поток MatchWriter. */
+    void invalidate(Collection<Long> playerIds) {
+        if (playerIds.isEmpty()) return;
+        synchronized (cache) {
+            for (Long id : playerIds) {
+                cache.remove(id);
+                Generation g = loading.get(id);
+                if (g != null) g.value++;
+            }
+        }
+    }
+
+    private static int setBounds(PreparedStatement ps, int i, Timestamp from, Cursor after, int limit) throws SQLException {
+        ps.setTimestamp(i++, after.playedAt);
+        ps.setLong(i++, after.id);
+        ps.setTimestamp(i++, from);
+        ps.setInt(i++, limit);
+        return i;
+    }
+
+    private static Page page(PreparedStatement ps, int limit) throws SQLException {
+        List<Match> list = new ArrayList<>(limit);
+        boolean more = false;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                if (list.size() == limit) {
+                    more = true;
+                    break;
+                }
+                list.add(match(rs));
+            }
+        }
+        Match last = more ? list.get(list.size() - 1) : null;
+        return new Page(Collections.unmodifiableList(list), last == null ? null : new Cursor(last.playedAt, last.id));
+    }
+
+    private static Match match(ResultSet rs) throws SQLException {
+        return new Match(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getInt(4), rs.getInt(5),
+                rs.getString(6), rs.getTimestamp(7));
+    }
+}
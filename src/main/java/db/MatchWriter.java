@@ -0,0 +1,325 @@
+package db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Histogram;
+import util.Metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отложенная запись результатов матчей (write-behind).
+ *
+ * Поток тика только кладёт результат в ограниченную очередь и сразу возвращается.
+ * Отдельный поток-писатель забирает накопленное пачками до batchSize и вставляет
+ * одним JDBC batch в одной транзакции. Если Postgres недоступен или тормозит (временная ошибка:
+ * SQLState класса 08 — связь, 40 — откат из-за сериализации или взаимной блокировки), пачка
+ * остаётся в буфере повторов (не больше retryCapacity записей) и повторяется с растущей
+ * паузой до MAX_BACKOFF_MILLIS; всё сверх очереди и буфера теряется и считается в dropped().
+ * Любая другая ошибка от повтора не пройдёт: пачка делится пополам, пока виноватая запись
+ * не останется одна, и тогда она выбрасывается в лог (deadLettered()), а остальные пишутся.
+ *
+ * Если у матча известны оба игрока, в той же транзакции пересчитывается их рейтинг по Эло
+ * (строки ratings берутся FOR UPDATE, так что параллельный писатель другого сервера не потеряет
+ * изменение). Новые рейтинги уходят в Leaderboard, а сброс кэша истории игроков — в MatchHistory,
+ * только после commit.
+ */
+public class MatchWriter implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MatchWriter.class);
+    static final String INSERT =
+            "INSERT INTO matches(player1_id, player2_id, player1_damage, player2_damage, result) VALUES(?,?,?,?,?)";
+    static final String LOCK_RATINGS =
+            "SELECT player_id, rating FROM ratings WHERE player_id IN (?,?) ORDER BY player_id FOR UPDATE";
+    static final String UPDATE_RATING =
+            "INSERT INTO ratings(player_id, rating, games, wins, losses, draws) VALUES(?,?,1,?,?,?) " +
+                    "ON CONFLICT (player_id) DO UPDATE SET rating = EXCLUDED.rating, games = ratings.games + 1, " +
+                    "wins = ratings.wins + EXCLUDED.wins, losses = ratings.losses + EXCLUDED.losses, " +
+                    "draws = ratings.draws + EXCLUDED.draws, updated_at = CURRENT_TIMESTAMP";
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    /** Один результат матча; игроки null, если они не входили (LOGIN). */
+    private static final class Result {
+        final PlayerProfile player0;
+        final PlayerProfile player1;
+        final int damage0;
+        final int damage1;
+
+        Result(PlayerProfile player0, PlayerProfile player1, int damage0, int damage1) {
+            this.player0 = player0;
+            this.player1 = player1;
+            this.damage0 = damage0;
+            this.damage1 = damage1;
+        }
+
+        /** damage — урон, полученный башней игрока, так что побеждает получивший меньше. */
+        String winner() {
+            return damage0 < damage1 ? "P1" : (damage1 < damage0 ? "P2" : "DRAW");
+        }
+
+        /** Очки первого игрока для Эло: 1, 0.5 или 0. */
+        double score0() {
+            return damage0 < damage1 ? 1 : (damage1 < damage0 ? 0 : 0.5);
+        }
+
+        boolean rated() {
+            return player0 != null && player1 != null && player0.id != player1.id;
+        }
+
+        @Override
+        public String toString() {
+            return (player0 == null ? "-" : String.valueOf(player0.id)) + " vs "
+                    + (player1 == null ? "-" : String.valueOf(player1.id)) + ", damage " + damage0 + ":" + damage1;
+        }
+    }
+
+    private static final Histogram SAVE_TIME = Metrics.histogram("db_save_seconds", "Match results batch insert time", Metrics.NANOS);
+    private static final Metrics.Counter SAVED = Metrics.counter("db_saved_total", "Match results written to the database");
+    private static final Metrics.Counter FAILURES = Metrics.counter("db_save_failures_total", "Failed match results batch inserts");
+    private static final Metrics.Counter RATED = Metrics.counter("db_rated_matches_total", "Match results that updated player ratings");
+    private static final Metrics.Counter DROPPED = Metrics.counter("db_dropped_total", "Match results lost because the writer queue was full");
+    private static final Metrics.Counter DEAD_LETTERED = Metrics.counter("db_dead_letter_total",
+            "Match results dropped because the database rejected them with a non-transient error");
+
+    private final ConnectionPool pool;
+    private final Leaderboard leaderboard;
+    private final MatchHistory history;
+    private final int eloK;
+    private final BlockingQueue<Result> queue;
+    private final ArrayDeque<Result> retry = new ArrayDeque<>(); // только поток писателя
+    private final int batchSize;
+    private final int retryCapacity;
+    private final Thread writer;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private volatile boolean running = true;
+
+    public MatchWriter(ConnectionPool pool, Leaderboard leaderboard, MatchHistory history, int eloK,
+                       int queueCapacity, int batchSize, int retryCapacity) {
+        this.pool = pool;
+        this.leaderboard = leaderboard;
+        this.history = history;
+        this.eloK = eloK;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.retryCapacity = Math.max(this.batchSize, retryCapacity);
+        this.writer = new Thread(this::run, "match-writer");
+        writer.setDaemon(true);
+    }
+
+    /** Запускает поток-писатель и регистрирует метрику очереди; вызывается один раз после конструктора. */
+    public MatchWriter start() {
+        writer.start();
+        Metrics.gauge("db_pending", "Match results waiting to be written", this::pending);
+        return this;
+    }
+
+    /** Не блокирует: при переполненной очереди результат теряется и это считается в dropped(). */
+    public void enqueue(int damage0, int damage1) {
+        enqueue(null, null, damage0, damage1);
+    }
+
+    /** То же с игроками: если известны оба, матч меняет их рейтинг. */
+    public void enqueue(PlayerProfile player0, PlayerProfile player1, int damage0, int damage1) {
+        if (!queue.offer(new Result(player0, player1, damage0, damage1))) {
+            long n = dropped.incrementAndGet();
+            DROPPED.inc();
+            if (n == 1 || n % 100 == 0) log.warn("queue full, {} match results dropped so far", n);
+        }
+    }
+
+    private void run() {
+        List<Result> batch = new ArrayList<>(batchSize);
+        long backoff = 100;
+        int limit = batchSize; // уменьшается, пока ищем запись, которую БД не принимает
+        while (running || !queue.isEmpty() || !retry.isEmpty()) {
+            try {
+                if (retry.isEmpty()) {
+                    Result first = queue.poll(500, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    retry.add(first);
+                }
+                // Сначала то, что не удалось записать раньше, затем свежие результаты.
+                // Пока буфер повторов полон, новые результаты копятся в queue, а при её переполнении теряются
+                queue.drainTo(retry, Math.max(0, retryCapacity - retry.size()));
+                batch.clear();
+                for (Result r : retry) {
+                    if (batch.size() == limit) break;
+                    batch.add(r);
+                }
+                long t0 = System.nanoTime();
+                List<PlayerProfile> rated = insert(batch);
+                SAVE_TIME.record(System.nanoTime() - t0);
+                if (!rated.isEmpty()) {
+                    RATED.add(rated.size() / 2);
+                    leaderboard.update(rated);
+                }
+                history.invalidate(playerIds(batch));
+                for (int i = 0; i < batch.size(); i++) retry.poll();
+                if (retry.isEmpty()) limit = batchSize;
+                written.addAndGet(batch.size());
+                SAVED.add(batch.size());
+                batches.incrementAndGet();
+                backoff = 100;
+            } catch (SQLException e) {
+                FAILURES.inc();
+                if (!isTransient(e)) {
+                    // Повтор той же пачки упадёт так же: делим её, пока не останется одна плохая запись
+                    if (batch.size() > 1) {
+                        limit = batch.size() / 2;
+                    } else {
+                        Result bad = retry.poll();
+                        deadLettered.incrementAndGet();
+                        DEAD_LETTERED.inc();
+                        log.error("dropping unwritable result {}", bad, e);
+                        limit = batchSize;
+                    }
+                    continue;
+                }
+                log.warn("insert failed, {} results pending", retry.size(), e);
+                if (!running) break; // при остановке не ждём недоступную БД бесконечно
+                sleep(backoff);
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        if (!retry.isEmpty() || !queue.isEmpty()) {
+            log.error("stopped with {} unsaved results", retry.size() + queue.size());
+        }
+    }
+
+    /**
+     * Пачка матчей и рейтинги по ним — одна транзакция. Возвращает новые рейтинги игроков
+     * (по два на рейтинговый матч, в порядке матчей); откат при ошибке делает пул.
+     */
+    private List<PlayerProfile> insert(List<Result> batch) throws SQLException {
+        List<PlayerProfile> rated = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT)) {
+            conn.setAutoCommit(false);
+            for (Result r : batch) {
+                setPlayer(ps, 1, r.player0);
+                setPlayer(ps, 2, r.player1);
+                ps.setInt(3, r.damage0);
+                ps.setInt(4, r.damage1);
+                ps.setString(5, r.winner());
+                ps.addBatch();
+                if (r.rated()) applyElo(conn, r, rated);
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+        return rated;
+    }
+
+    /**
+     * Ошибка, которая может пройти сама: нет связи (08), откат транзакции из-за сериализации
+     * или взаимной блокировки (40, в том числе 40001 и 40P01). Смотрится вся цепочка исключений.
+     */
+    static boolean isTransient(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            for (SQLException s = t instanceof SQLException se ? se : null; s != null; s = s.getNextException()) {
+                String state = s.getSQLState();
+                if (state != null && (state.startsWith("08") || state.startsWith("40"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Long> playerIds(List<Result> batch) {
+        Set<Long> ids = new HashSet<>();
+        for (Result r : batch) {
+            if (r.player0 != null) ids.add(r.player0.id);
+            if (r.player1 != null) ids.add(r.player1.id);
+        }
+        return ids;
+    }
+
+    private static void setPlayer(PreparedStatement ps, int index, PlayerProfile p) throws SQLException {
+        if (p == null) ps.setNull(index, Types.BIGINT);
+        else ps.setLong(index, p.id);
+    }
+
+    /**
+     * Пересчёт рейтинга пары. Рейтинги читаются из БД под FOR UPDATE, а не берутся из профилей:
+     * профиль снят при входе, а игрок мог с тех пор сыграть ещё (в том числе раньше в этой же пачке).
+     */
+    private void applyElo(Connection conn, Result r, List<PlayerProfile> rated) throws SQLException {
+        int rating0 = PlayerStore.INITIAL_RATING;
+        int rating1 = PlayerStore.INITIAL_RATING;
+        try (PreparedStatement ps = conn.prepareStatement(LOCK_RATINGS)) {
+            ps.setLong(1, r.player0.id);
+            ps.setLong(2, r.player1.id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getLong(1) == r.player0.id) rating0 = rs.getInt(2);
+                    else rating1 = rs.getInt(2);
+                }
+            }
+        }
+        double score0 = r.score0();
+        int delta = PlayerStore.eloDelta(rating0, rating1, score0, eloK);
+        PlayerProfile p0 = r.player0.withRating(rating0 + delta);
+        PlayerProfile p1 = r.player1.withRating(rating1 - delta);
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_RATING)) {
+            addRating(ps, p0, score0);
+            addRating(ps, p1, 1 - score0);
+            ps.executeBatch();
+        }
+        rated.add(p0);
+        rated.add(p1);
+    }
+
+    private static void addRating(PreparedStatement ps, PlayerProfile p, double score) throws SQLException {
+        ps.setLong(1, p.id);
+        ps.setInt(2, p.rating);
+        ps.setInt(3, score == 1 ? 1 : 0);
+        ps.setInt(4, score == 0 ? 1 : 0);
+        ps.setInt(5, score == 0.5 ? 1 : 0);
+        ps.addBatch();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int pending() { return queue.size() + retry.size(); }
+
+    public long written() { return written.get(); }
+
+    public long dropped() { return dropped.get(); }
+
+    public long batches() { return batches.get(); }
+
+    public long deadLettered() { return deadLettered.get(); }
+
+    /** Дописывает очередь (пока БД отвечает) и останавливает писателя. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
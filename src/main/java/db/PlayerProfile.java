@@ -0,0 +1,23 @@
+package db;
+
+/** Игрок, как его знает БД: id из players, имя и рейтинг на момент чтения. Неизменяемый. */
+public final class PlayerProfile {
+    public final long id;
+    public final String name;
+    public final int rating;
+
+    public PlayerProfile(long id, String name, int rating) {
+        this.id = id;
+        this.name = name;
+        this.rating = rating;
+    }
+
+    PlayerProfile withRating(int rating) {
+        return new PlayerProfile(id, name, rating);
+    }
+
+    @Override
+    public String toString() {
+        return name + "#" + id + " (" + rating + ")";
+    }
+}
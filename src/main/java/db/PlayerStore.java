@@ -0,0 +1,90 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Таблицы players и ratings: вход игрока по имени и первичная загрузка лидерборда.
+ * Рейтинги после матчей меняет MatchWriter в той же транзакции, что и вставку матча;
+ * до первого рейтингового матча строки в ratings у игрока нет, и его рейтинг — INITIAL_RATING.
+ */
+public class PlayerStore {
+    /** Начальный рейтинг; совпадает с DEFAULT в схеме и с matchmaking.rating.default. */
+    public static final int INITIAL_RATING = 1000;
+
+    // Имя уходит в текстовые сообщения (PROFILE, LEADERBOARD), поэтому без разделителей протокола
+    private static final Pattern NAME = Pattern.compile("[\\p{L}\\p{N}_.-]{1,32}");
+
+    static final String UPSERT_PLAYER =
+            "INSERT INTO players(name) VALUES(?) ON CONFLICT (name) DO UPDATE SET last_seen = CURRENT_TIMESTAMP RETURNING id";
+    static final String SELECT_RATING = "SELECT rating FROM ratings WHERE player_id = ?";
+    // Идёт по индексу ratings_rating_idx и останавливается на LIMIT — без сортировки всей таблицы.
+    // Только сыгравшие: о строке без матчей (ещё из старого входа) Leaderboard через update() не узнает
+    static final String SELECT_TOP =
+            "SELECT r.player_id, p.name, r.rating FROM ratings r JOIN players p ON p.id = r.player_id " +
+                    "WHERE r.games > 0 ORDER BY r.rating DESC, r.player_id LIMIT ?";
+
+    private final ConnectionPool pool;
+
+    public PlayerStore(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Изменение рейтинга первого игрока по Эло (второй получает столько же с обратным знаком).
+     * score0: 1 — первый выиграл, 0.5 — ничья, 0 — проиграл.
+     */
+    public static int eloDelta(int rating0, int rating1, double score0, int k) {
+        double expected0 = 1 / (1 + Math.pow(10, (rating1 - rating0) / 400.0));
+        return (int) Math.round(k * (score0 - expected0));
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    /** Находит игрока по имени или заводит нового с начальным рейтингом. Ходит в БД — не из тика. */
+    public PlayerProfile login(String name) throws SQLException {
+        if (!isValidName(name)) throw new IllegalArgumentException("bad player name: " + name);
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            long id;
+            try (PreparedStatement ps = conn.prepareStatement(UPSERT_PLAYER)) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    id = rs.getLong(1);
+                }
+            }
+            // Строку ratings заводит первый рейтинговый матч (MatchWriter), а не вход: иначе в таблице
+            // появлялся бы рейтинг, о котором лидерборд из памяти не знает
+            int rating;
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_RATING)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rating = rs.next() ? rs.getInt(1) : INITIAL_RATING;
+                }
+            }
+            conn.commit();
+            return new PlayerProfile(id, name, rating);
+        }
+    }
+
+    /** Первые limit игроков по рейтингу (при равенстве — по id). Только для загрузки Leaderboard. */
+    public List<PlayerProfile> top(int limit) throws SQLException {
+        List<PlayerProfile> top = new ArrayList<>(limit);
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_TOP)) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) top.add(new PlayerProfile(rs.getLong(1), rs.getString(2), rs.getInt(3)));
+            }
+        }
+        return top;
+    }
+}
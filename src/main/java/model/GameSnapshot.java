@@ -0,0 +1,89 @@
+package model;
+
+/**
+ * Неизменяемый снимок GameState после тика. Публикуется через volatile-ссылку
+ * (GameState.published()), поэтому кодирование UPDATE, рассылка, метрики и сохранение
+ * результата читают его без замков, пока симуляция уже идёт дальше.
+ *
+ * Юниты лежат в одном int[] по UNIT_FIELDS значений на юнита, в порядке UnitStore.
+ */
+public final class GameSnapshot {
+    private static final int UNIT_FIELDS = 7;
+    private static final int SLOT = 0, UID = 1, OWNER = 2, CARD = 3, ROW = 4, COL = 5, HP = 6;
+
+    /** Номер тика GameState; растёт монотонно и между матчами. */
+    public final long version;
+    public final int elapsed;
+    public final boolean matchOver;
+    private final int elixir0, elixir1;
+    private final int towerDamage0, towerDamage1;
+    private final int slotCapacity;
+    private final int[] units;
+
+    GameSnapshot(long version, int elapsed, boolean matchOver, Player[] players, UnitStore store) {
+        this.version = version;
+        this.elapsed = elapsed;
+        this.matchOver = matchOver;
+        this.elixir0 = players[0].elixir;
+        this.elixir1 = players[1].elixir;
+        this.towerDamage0 = players[0].towerDamage;
+        this.towerDamage1 = players[1].towerDamage;
+        this.slotCapacity = store.capacity();
+        int n = store.size();
+        this.units = new int[n * UNIT_FIELDS];
+        for (int i = 0, o = 0; i < n; i++, o += UNIT_FIELDS) {
+            int s = store.slot(i);
+            units[o + SLOT] = s;
+            units[o + UID] = store.uid(s);
+            units[o + OWNER] = store.owner(s);
+            units[o + CARD] = store.card(s);
+            units[o + ROW] = store.row(s);
+            units[o + COL] = store.col(s);
+            units[o + HP] = store.hp(s);
+        }
+    }
+
+    public int elixir(int player) { return player == 0 ? elixir0 : elixir1; }
+
+    /** Урон, полученный башней игрока. */
+    public int towerDamage(int player) { return player == 0 ? towerDamage0 : towerDamage1; }
+
+    public int size() { return units.length / UNIT_FIELDS; }
+
+    /** Сколько слотов у UnitStore, из которого снят снимок. */
+    public int slotCapacity() { return slotCapacity; }
+
+    public int slot(int i) { return units[i * UNIT_FIELDS + SLOT]; }
+
+    public int uid(int i) { return units[i * UNIT_FIELDS + UID]; }
+
+    public int owner(int i) { return units[i * UNIT_FIELDS + OWNER]; }
+
+    public int card(int i) { return units[i * UNIT_FIELDS + CARD]; }
+
+    public int row(int i) { return units[i * UNIT_FIELDS + ROW]; }
+
+    public int col(int i) { return units[i * UNIT_FIELDS + COL]; }
+
+    public int hp(int i) { return units[i * UNIT_FIELDS + HP]; }
+
+    /** Результат матча в формате END: "t0/t1". */
+    public String result() {
+        return towerDamage0 + "/" + towerDamage1;
+    }
+
+    /** Полный формат UPDATE: "e0|e1|t0|t1|owner,card,row,col,hp;...". */
+    public String serialize() {
+        StringBuilder sb = new StringBuilder(16 + size() * 14);
+        sb.append(elixir0).append('|').append(elixir1).append('|');
+        sb.append(towerDamage0).append('|').append(towerDamage1).append('|');
+        for (int i = 0; i < size(); i++) {
+            sb.append(owner(i)).append(',')
+                    .append(card(i)).append(',')
+                    .append(row(i)).append(',')
+                    .append(col(i)).append(',')
+                    .append(hp(i)).append(';');
+        }
+        return sb.toString();
+    }
+}
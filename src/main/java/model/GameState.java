@@ -1,14 +1,52 @@
 package model;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class GameState {
+    private static final Logger log = LoggerFactory.getLogger(GameState.class);
+
+    public static final int ROWS = 10;
+    public static final int COLS = 3;
+
     public final Card[] cards = Card.defaultCards();
-    public final List<Unit> units = new ArrayList<>();
+    // Юнитов не больше, чем клеток. Менять только через методы GameState — иначе рассинхронизируется grid
+    public final UnitStore units = new UnitStore(ROWS * COLS);
+    // Индекс занятости поля: grid[row * COLS + col] — слот юнита в клетке или -1
+    private final int[] grid = new int[ROWS * COLS];
     public final Player[] players = { new Player(0), new Player(1) };
     private int matchTimeSeconds = 120;
     private int elapsed = 0;
     private boolean inMatch = false;
+    // Не synchronized: deploy/advanceTick могут идти на виртуальных потоках, а монитор пинит носитель
+    private final ReentrantLock lock = new ReentrantLock();
+    private String tag = "-"; // метка в логах, например "room-12"
+
+    // Рабочие массивы тика. Юнитов не больше, чем клеток, поэтому размер фиксирован
+    // и после создания GameState тик ничего не аллоцирует.
+    private static final byte PLAN_NONE = 0, PLAN_ATTACK_UNIT = 1, PLAN_MOVE = 2, PLAN_ATTACK_TOWER = 3;
+    private final int[] tickSlots = new int[ROWS * COLS];   // слоты юнитов в порядке на начало тика
+    private final byte[] planType = new byte[ROWS * COLS];
+    private final int[] planTarget = new int[ROWS * COLS];  // слот цели
+    private final int[] planDest = new int[ROWS * COLS];    // клетка назначения
+    private final int[] damage = new int[ROWS * COLS];      // накопленный урон по слоту
+    private final int[] attackedBy = new int[ROWS * COLS];  // сколько юнитов целится в слот
+    private final int[] moveClaims = new int[ROWS * COLS];  // сколько юнитов хочет в клетку
+
+    {
+        Arrays.fill(grid, -1);
+    }
+
+    /** Фазы тика для метрик: план (фазы 1-2), урон (3-4), удаление мёртвых (5), движение (6), башни (7). */
+    public static final String[] TICK_PHASES = { "plan", "damage", "remove", "move", "tower" };
+    private final long[] phaseNanos = new long[TICK_PHASES.length];
+    private int lastTickUnits;
+    private long version;
+    // Последний опубликованный снимок: читается без замка (см. GameSnapshot)
+    private volatile GameSnapshot published;
 
     public void setPlayerSelection(int playerIndex, String payload) {
         Player p = players[playerIndex];
@@ -20,12 +58,16 @@ public class GameState {
         }
     }
 
+    /** Метка, которой помечаются все сообщения тика этого состояния в логе. */
+    public void setTag(String tag) { this.tag = tag; }
+
     public void setReady(int playerIndex, boolean r) { players[playerIndex].ready = r; }
     public boolean bothReady() { return players[0].ready && players[1].ready; }
 
     public void startMatch() {
         inMatch = true; elapsed = 0;
         units.clear();
+        Arrays.fill(grid, -1);
         players[0].elixir = 5; players[1].elixir = 5;
         players[0].towerDamage = 0; players[1].towerDamage = 0;
     }
@@ -35,23 +77,31 @@ public class GameState {
         inMatch = false;
         players[0].ready = false; players[1].ready = false;
         units.clear();
+        Arrays.fill(grid, -1);
     }
 
     // deploy: payload "cardId,localRow,col" where localRow is 0..4 for player's half, col 0..2
-    public synchronized void deploy(int playerIndex, String payload) {
+    public boolean deploy(int playerIndex, String payload) {
         String[] p = payload.split(",");
-        if (p.length < 3) return;
+        if (p.length < 3) return false;
         try {
-            int cardId = Integer.parseInt(p[0]);
-            int localRow = Integer.parseInt(p[1]);
-            int col = Integer.parseInt(p[2]);
+            return deploy(playerIndex, Integer.parseInt(p[0]), Integer.parseInt(p[1]), Integer.parseInt(p[2]));
+        } catch (NumberFormatException ignored) {
+            return false;
+        }
+    }
 
+    /** То же без разбора строки — для симуляций. Обе формы возвращают true, если юнит поставлен. */
+    public boolean deploy(int playerIndex, int cardId, int localRow, int col) {
+        lock.lock();
+        try {
             // Проверяем корректность локальных координат
-            if (localRow < 0 || localRow > 4 || col < 0 || col > 2) return;
+            if (localRow < 0 || localRow > 4 || col < 0 || col > 2) return false;
+            if (cardId < 0 || cardId >= cards.length) return false;
 
             Player pl = players[playerIndex];
             Card c = cards[cardId];
-            if (pl.elixir < c.cost) return;
+            if (pl.elixir < c.cost) return false;
 
             // Правильное преобразование координат для каждого игрока
             int globalRow;
@@ -64,102 +114,112 @@ public class GameState {
             }
 
             // Проверяем, нет ли уже юнита на этой клетке
-            for (Unit u : units) {
-                if (u.row == globalRow && u.col == col) {
-                    return;
-                }
-            }
+            if (findAt(globalRow, col) >= 0) return false;
 
-            Unit unit = new Unit(cardId, c.hp, playerIndex, globalRow, col);
-            units.add(unit);
+            grid[globalRow * COLS + col] = units.add(cardId, c.hp, playerIndex, globalRow, col);
             pl.elixir -= c.cost;
-        } catch (Exception ignored) {}
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void advanceTick() {
+        lock.lock();
+        try {
+            tickLocked();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void advanceTick() {
+    private void tickLocked() {
         if (!inMatch) return;
+        long phaseStart = System.nanoTime();
 
         // 1) Тайм/эликсир
+        version++;
         elapsed += 3;
         for (Player p : players) {
             if (p.elixir < 10) p.elixir = Math.min(10, p.elixir + 1);
         }
 
-        // Снимок юнитов для безопасной итерации
-        List<Unit> snapshot = new ArrayList<>(units);
-
-        // Планирование: для каждого юнита одно действие
-        enum ActionType { NONE, ATTACK_UNIT, MOVE, ATTACK_TOWER }
-        class Plan { ActionType type = ActionType.NONE; Unit target = null; util.Vec2i dest = null; }
-        Map<Unit, Plan> plans = new HashMap<>();
-
-        for (Unit u : snapshot) plans.put(u, new Plan());
+        // Снимок порядка юнитов: фазы после удаления мёртвых идут по тем же слотам.
+        // Рабочие массивы индексируются слотом юнита, как и сами данные в UnitStore.
+        // Пошаговый лог тика — только на уровне DEBUG; при выключенном DEBUG это одна проверка на тик
+        final boolean trace = log.isDebugEnabled();
+        final UnitStore u = units;
+        int n = u.size();
+        for (int i = 0; i < n; i++) {
+            int s = u.slot(i);
+            tickSlots[i] = s;
+            planType[s] = PLAN_NONE;
+            planTarget[s] = -1;
+            planDest[s] = -1;
+            damage[s] = 0;
+            attackedBy[s] = 0;
+        }
 
         // Фаза 1 — каждый юнит выбирает действие по приоритету
-        for (Unit u : snapshot) {
-            if (u.hp <= 0) continue;
-            Plan p = plans.get(u);
-            int owner = u.owner;
+        for (int i = 0; i < n; i++) {
+            int s = tickSlots[i];
+            if (u.hp(s) <= 0) continue;
+            int owner = u.owner(s);
+            int row = u.row(s), col = u.col(s);
             // Направление вперед: для игрока 0 (нижняя половина) - вверх (row уменьшается)
             // для игрока 1 (верхняя половина) - вниз (row увеличивается)
             int forwardDir = (owner == 0) ? -1 : 1;
 
             // 1) Проверяем врага СЗАДИ (относительно направления движения)
-            Unit behind = findAt(u.row - forwardDir, u.col);
-            if (behind != null && behind.owner != owner) {
-                p.type = ActionType.ATTACK_UNIT;
-                p.target = behind;
+            int behind = findAt(row - forwardDir, col);
+            if (behind >= 0 && u.owner(behind) != owner) {
+                planAttack(s, behind);
                 continue;
             }
 
             // 2) Проверяем врага СЛЕВА
-            Unit left = findAt(u.row, u.col - 1);
-            if (left != null && left.owner != owner) {
-                p.type = ActionType.ATTACK_UNIT;
-                p.target = left;
+            int left = findAt(row, col - 1);
+            if (left >= 0 && u.owner(left) != owner) {
+                planAttack(s, left);
                 continue;
             }
 
             // 3) Проверяем врага СПЕРЕДИ
-            Unit front = findAt(u.row + forwardDir, u.col);
-            if (front != null && front.owner != owner) {
-                p.type = ActionType.ATTACK_UNIT;
-                p.target = front;
+            int front = findAt(row + forwardDir, col);
+            if (front >= 0 && u.owner(front) != owner) {
+                planAttack(s, front);
                 continue;
             }
 
             // 4) Если спереди ДРУЖЕСТВЕННЫЙ юнит - пытаемся обойти
-            if (front != null && front.owner == owner) {
-                boolean canMoveLeft = (u.col > 0) && (findAt(u.row, u.col - 1) == null);
-                boolean canMoveRight = (u.col < 2) && (findAt(u.row, u.col + 1) == null);
+            if (front >= 0 && u.owner(front) == owner) {
+                boolean canMoveLeft = (col > 0) && (findAt(row, col - 1) < 0);
+                boolean canMoveRight = (col < COLS - 1) && (findAt(row, col + 1) < 0);
 
                 // Пытаемся обойти влево (приоритет для обхода)
                 if (canMoveLeft) {
-                    p.type = ActionType.MOVE;
-                    p.dest = new util.Vec2i(u.row, u.col - 1);
+                    planMove(s, row, col - 1);
                     continue;
                 }
 
                 // Если не можем влево, пробуем вправо
                 if (canMoveRight) {
-                    p.type = ActionType.MOVE;
-                    p.dest = new util.Vec2i(u.row, u.col + 1);
+                    planMove(s, row, col + 1);
                     continue;
                 }
                 // Если не можем обойти, продолжаем дальше проверять другие действия
             }
 
             // 5) Если спереди СВОБОДНО - двигаемся вперед
-            int newRow = u.row + forwardDir;
-            if (newRow >= 0 && newRow <= 9 && findAt(newRow, u.col) == null) {
-                p.type = ActionType.MOVE;
-                p.dest = new util.Vec2i(newRow, u.col);
+            int newRow = row + forwardDir;
+            if (newRow >= 0 && newRow < ROWS && findAt(newRow, col) < 0) {
+                planMove(s, newRow, col);
                 continue;
             }
 
             // 6) Если стоим у вражеской башни - атакуем её
-            if ((owner == 0 && u.row == 0) || (owner == 1 && u.row == 9)) {
-                p.type = ActionType.ATTACK_TOWER;
+            if ((owner == 0 && row == 0) || (owner == 1 && row == ROWS - 1)) {
+                planType[s] = PLAN_ATTACK_TOWER;
                 continue;
             }
 
@@ -167,159 +227,177 @@ public class GameState {
             // (может быть, спереди враг, но мы его уже проверили, или другие условия)
         }
 
-        // Фаза 2 — защитники обязаны отвечать, если на них кто-то нацелился
-        Map<Unit, List<Unit>> attackersByTarget = new HashMap<>();
-        for (Map.Entry<Unit, Plan> e : plans.entrySet()) {
-            Unit attacker = e.getKey();
-            Plan pl = e.getValue();
-            if (pl.type == ActionType.ATTACK_UNIT && pl.target != null) {
-                attackersByTarget.computeIfAbsent(pl.target, k -> new ArrayList<>()).add(attacker);
-            }
-        }
-
-        // Для каждого защитника, на которого целятся, если он не собирался атаковать — принудим его атаковать
-        for (Map.Entry<Unit, List<Unit>> e : attackersByTarget.entrySet()) {
-            Unit defender = e.getKey();
-            List<Unit> attackers = e.getValue();
-            if (defender.hp <= 0) continue;
-            Plan defPlan = plans.get(defender);
-            if (defPlan == null) continue;
-            if (defPlan.type == ActionType.ATTACK_UNIT) continue; // уже планировал атаковать — не трогаем
+        // Фаза 2 — защитники обязаны отвечать, если на них кто-то нацелился.
+        // attackedBy посчитан в фазе 1; принудительная атака меняет только план самого защитника,
+        // а он сам в фазе 1 не атаковал, поэтому проверки "кто целится в меня" ниже не сбиваются.
+        for (int i = 0; i < n; i++) {
+            int d = tickSlots[i];
+            if (attackedBy[d] == 0) continue;
+            if (u.hp(d) <= 0) continue;
+            if (planType[d] == PLAN_ATTACK_UNIT) continue; // уже планировал атаковать — не трогаем
 
             // Выбираем атакующего по приоритету defender'а
-            int fd = (defender.owner == 0) ? -1 : 1;
-            Unit chosen = null;
+            int fd = (u.owner(d) == 0) ? -1 : 1;
+            int row = u.row(d), col = u.col(d);
 
             // 1) Сначала проверяем врага СЗАДИ (относительно defender'а)
-            Unit candBehind = findAt(defender.row - fd, defender.col);
-            if (candBehind != null && attackers.contains(candBehind) && candBehind.owner != defender.owner) {
-                chosen = candBehind;
-            }
+            int chosen = attackerAt(row - fd, col, d);
 
             // 2) Если нет врага сзади, проверяем СЛЕВА
-            if (chosen == null) {
-                Unit candLeft = findAt(defender.row, defender.col - 1);
-                if (candLeft != null && attackers.contains(candLeft) && candLeft.owner != defender.owner) {
-                    chosen = candLeft;
-                }
-            }
+            if (chosen < 0) chosen = attackerAt(row, col - 1, d);
 
             // 3) Если нет врага слева, проверяем СПЕРЕДИ
-            if (chosen == null) {
-                Unit candFront = findAt(defender.row + fd, defender.col);
-                if (candFront != null && attackers.contains(candFront) && candFront.owner != defender.owner) {
-                    chosen = candFront;
-                }
-            }
+            if (chosen < 0) chosen = attackerAt(row + fd, col, d);
 
-            // 4) Если нет подходящего врага, берем первого из списка
-            if (chosen == null && !attackers.isEmpty()) {
-                chosen = attackers.get(0);
+            // 4) Если нет подходящего врага, берем первого из нацелившихся
+            // (по геометрии это может быть только сосед справа)
+            for (int j = 0; chosen < 0 && j < n; j++) {
+                int a = tickSlots[j];
+                if (planType[a] == PLAN_ATTACK_UNIT && planTarget[a] == d) chosen = a;
             }
 
-            if (chosen != null) {
-                defPlan.type = ActionType.ATTACK_UNIT;
-                defPlan.target = chosen;
+            if (chosen >= 0) {
+                planType[d] = PLAN_ATTACK_UNIT;
+                planTarget[d] = chosen;
             }
         }
 
+        phaseStart = markPhase(0, phaseStart);
+
         // Фаза 3 — сбор урона: все атакующие наносят урон своим целям
-        Map<Unit, Integer> damageTaken = new HashMap<>();
-        for (Map.Entry<Unit, Plan> e : plans.entrySet()) {
-            Unit who = e.getKey();
-            Plan pl = e.getValue();
-            if (who.hp <= 0) continue;
-            if (pl.type == ActionType.ATTACK_UNIT && pl.target != null) {
-                Unit tgt = pl.target;
-                int damage = cards[who.id].atk;
-                damageTaken.put(tgt, damageTaken.getOrDefault(tgt, 0) + damage);
+        for (int i = 0; i < n; i++) {
+            int who = tickSlots[i];
+            if (u.hp(who) <= 0) continue;
+            if (planType[who] == PLAN_ATTACK_UNIT && planTarget[who] >= 0) {
+                int t = planTarget[who];
+                int dmg = cards[u.card(who)].atk;
+                damage[t] += dmg;
                 // Отладка
-                System.out.println("[SERVER] Unit " + who.id + " (owner " + who.owner + ") attacks " +
-                        tgt.id + " (owner " + tgt.owner + ") for " + damage + " damage");
+                if (trace) {
+                    log.debug("[{}] Unit {} (owner {}) attacks {} (owner {}) for {} damage",
+                            tag, u.card(who), u.owner(who), u.card(t), u.owner(t), dmg);
+                }
             }
         }
 
         // Фаза 4 — применяем урон одновременно
-        for (Map.Entry<Unit, Integer> e : damageTaken.entrySet()) {
-            Unit target = e.getKey();
-            int dmg = e.getValue();
-            target.hp -= dmg;
-            System.out.println("[SERVER] Unit " + target.id + " (owner " + target.owner +
-                    ") at " + target.row + "," + target.col +
-                    " took " + dmg + " damage, HP now " + target.hp);
+        for (int i = 0; i < n; i++) {
+            int target = tickSlots[i];
+            if (damage[target] == 0) continue;
+            u.damage(target, damage[target]);
+            if (trace) {
+                log.debug("[{}] Unit {} (owner {}) at {},{} took {} damage, HP now {}",
+                        tag, u.card(target), u.owner(target), u.row(target), u.col(target), damage[target], u.hp(target));
+            }
         }
 
-        // Фаза 5 — удаляем мёртвых
-        units.removeIf(u -> u.hp <= 0);
-        System.out.println("[SERVER] After removing dead units, total units: " + units.size());
-
-        // Фаза 6 — применяем движения
-        Map<String, List<Unit>> destToUnits = new HashMap<>();
-        for (Map.Entry<Unit, Plan> e : plans.entrySet()) {
-            Unit u = e.getKey();
-            Plan pl = e.getValue();
-            if (u.hp <= 0) continue;
-            if (pl.type == ActionType.MOVE && pl.dest != null) {
-                util.Vec2i d = pl.dest;
-                // Проверяем, что внутри поля
-                if (d.x < 0 || d.x > 9 || d.y < 0 || d.y > 2) continue;
-                // Если клетка занята после удаления мертвых - отменяем движение
-                if (findAt(d.x, d.y) != null) continue;
-                String key = d.x + ":" + d.y;
-                destToUnits.computeIfAbsent(key, k -> new ArrayList<>()).add(u);
+        phaseStart = markPhase(1, phaseStart);
+
+        // Фаза 5 — удаляем мёртвых (с конца, чтобы сдвиг порядка не задевал ещё не просмотренных)
+        for (int i = u.size() - 1; i >= 0; i--) {
+            int s = u.slot(i);
+            if (u.hp(s) <= 0) {
+                grid[u.row(s) * COLS + u.col(s)] = -1;
+                u.removeAt(i);
             }
         }
+        if (trace) log.debug("[{}] After removing dead units, total units: {}", tag, u.size());
+
+        phaseStart = markPhase(2, phaseStart);
+
+        // Фаза 6 — применяем движения: считаем претендентов на каждую клетку
+        for (int i = 0; i < n; i++) {
+            int s = tickSlots[i];
+            if (u.hp(s) <= 0 || planType[s] != PLAN_MOVE) continue;
+            int dest = planDest[s];
+            // Если клетка занята после удаления мертвых - отменяем движение
+            if (grid[dest] >= 0) {
+                planType[s] = PLAN_NONE;
+                continue;
+            }
+            moveClaims[dest]++;
+        }
 
         // Выполняем только уникальные ходы (по 1 юниту на клетку)
-        for (Map.Entry<String, List<Unit>> de : destToUnits.entrySet()) {
-            List<Unit> want = de.getValue();
-            if (want.size() == 1) {
-                Unit mover = want.get(0);
-                Plan pl = plans.get(mover);
-                if (mover.hp > 0 && pl != null && pl.dest != null) {
-                    // Двойная проверка на занятость
-                    if (findAt(pl.dest.x, pl.dest.y) == null) {
-                        System.out.println("[SERVER] Unit " + mover.id + " (owner " + mover.owner +
-                                ") moves to " + pl.dest.x + "," + pl.dest.y);
-                        mover.row = pl.dest.x;
-                        mover.col = pl.dest.y;
-                    }
+        for (int i = 0; i < n; i++) {
+            int mover = tickSlots[i];
+            if (u.hp(mover) <= 0 || planType[mover] != PLAN_MOVE) continue;
+            int dest = planDest[mover];
+            if (moveClaims[dest] == 1 && grid[dest] < 0) {
+                if (trace) {
+                    log.debug("[{}] Unit {} (owner {}) moves to {},{}",
+                            tag, u.card(mover), u.owner(mover), dest / COLS, dest % COLS);
                 }
+                grid[u.row(mover) * COLS + u.col(mover)] = -1;
+                u.moveTo(mover, dest / COLS, dest % COLS);
+                grid[dest] = mover;
             }
         }
+        for (int i = 0; i < n; i++) {
+            int s = tickSlots[i];
+            if (planDest[s] >= 0) moveClaims[planDest[s]] = 0;
+        }
+
+        phaseStart = markPhase(3, phaseStart);
 
         // Фаза 7 — атака башен
-        for (Map.Entry<Unit, Plan> e : plans.entrySet()) {
-            Unit u = e.getKey();
-            Plan pl = e.getValue();
-            if (u.hp <= 0) continue;
-            if (pl.type == ActionType.ATTACK_TOWER) {
-                if (u.owner == 0 && u.row == 0) {
-                    players[1].towerDamage += cards[u.id].atk;
-                    System.out.println("[SERVER] Player 0 unit " + u.id + " attacks tower of player 1");
-                } else if (u.owner == 1 && u.row == 9) {
-                    players[0].towerDamage += cards[u.id].atk;
-                    System.out.println("[SERVER] Player 1 unit " + u.id + " attacks tower of player 0");
+        for (int i = 0; i < n; i++) {
+            int s = tickSlots[i];
+            if (u.hp(s) <= 0) continue;
+            if (planType[s] == PLAN_ATTACK_TOWER) {
+                if (u.owner(s) == 0 && u.row(s) == 0) {
+                    players[1].towerDamage += cards[u.card(s)].atk;
+                    if (trace) log.debug("[{}] Player 0 unit {} attacks tower of player 1", tag, u.card(s));
+                } else if (u.owner(s) == 1 && u.row(s) == ROWS - 1) {
+                    players[0].towerDamage += cards[u.card(s)].atk;
+                    if (trace) log.debug("[{}] Player 1 unit {} attacks tower of player 0", tag, u.card(s));
                 }
             }
         }
 
-        System.out.println("[SERVER] Tick complete. Elixir: " + players[0].elixir + "/" + players[1].elixir +
-                ", Tower damage: " + players[0].towerDamage + "/" + players[1].towerDamage);
+        markPhase(4, phaseStart);
+        lastTickUnits = n;
+
+        if (trace) {
+            log.debug("[{}] Tick complete. Elixir: {}/{}, Tower damage: {}/{}", tag,
+                    players[0].elixir, players[1].elixir, players[0].towerDamage, players[1].towerDamage);
+        }
     }
 
+    private long markPhase(int phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase] = now - start;
+        return now;
+    }
 
-    private Unit findAt(int row, int col) {
-        if (row < 0 || row > 9 || col < 0 || col > 2) return null;
-        for (Unit u : units)
-            if (u.row == row && u.col == col) return u;
-        return null;
+    /** Длительность фазы последнего тика (индекс в TICK_PHASES), нс. */
+    public long tickPhaseNanos(int phase) { return phaseNanos[phase]; }
+
+    /** Сколько юнитов участвовало в последнем тике. */
+    public int lastTickUnits() { return lastTickUnits; }
+
+    private void planAttack(int slot, int target) {
+        planType[slot] = PLAN_ATTACK_UNIT;
+        planTarget[slot] = target;
+        attackedBy[target]++;
+    }
+
+    private void planMove(int slot, int row, int col) {
+        planType[slot] = PLAN_MOVE;
+        planDest[slot] = row * COLS + col;
+    }
+
+    /** Слот врага в клетке, если он в фазе 1 нацелился на defenderSlot, иначе -1. */
+    private int attackerAt(int row, int col, int defenderSlot) {
+        int s = findAt(row, col);
+        if (s < 0 || units.owner(s) == units.owner(defenderSlot)) return -1;
+        return (planType[s] == PLAN_ATTACK_UNIT && planTarget[s] == defenderSlot) ? s : -1;
     }
 
-    private Unit findByRef(Unit sample) {
-        for (Unit u : units)
-            if (u == sample) return u;
-        return null;
+    /** O(1): слот юнита в клетке из grid или -1. */
+    private int findAt(int row, int col) {
+        if (row < 0 || row >= ROWS || col < 0 || col >= COLS) return -1;
+        return grid[row * COLS + col];
     }
 
     public boolean isMatchOver() {
@@ -331,16 +409,29 @@ public class GameState {
     }
 
     public String serializeForClients() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(players[0].elixir).append('|').append(players[1].elixir).append('|');
-        sb.append(players[0].towerDamage).append('|').append(players[1].towerDamage).append('|');
-        for (Unit u : units) {
-            sb.append(u.owner).append(',')
-                    .append(u.id).append(',')
-                    .append(u.row).append(',')
-                    .append(u.col).append(',')
-                    .append(u.hp).append(';');
+        return capture().serialize();
+    }
+
+    /** Неизменяемый снимок текущего состояния (без публикации). */
+    public GameSnapshot capture() {
+        lock.lock();
+        try {
+            return new GameSnapshot(version, elapsed, isMatchOver(), players, units);
+        } finally {
+            lock.unlock();
         }
-        return sb.toString();
     }
+
+    /**
+     * Снимает и публикует снимок; вызывается владельцем состояния в конце тика.
+     * Сам advanceTick снимок не строит — так шаг симуляции остаётся без аллокаций.
+     */
+    public GameSnapshot publish() {
+        GameSnapshot snap = capture();
+        published = snap;
+        return snap;
+    }
+
+    /** Последний опубликованный снимок или null, если тиков ещё не было. Без замков. */
+    public GameSnapshot published() { return published; }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Юниты поля в виде структуры массивов: у каждого юнита свой слот, а карта, hp, владелец,
+ * строка и столбец лежат в параллельных примитивных массивах по индексу слота.
+ *
+ * Слот закреплён за юнитом на всю его жизнь (освободившиеся слоты переиспользуются через
+ * free-list), uid уникален в пределах хранилища и не переиспользуется. Порядок юнитов —
+ * порядок появления, как был у ArrayList: на нём держатся приоритеты тика и порядок в UPDATE.
+ *
+ * Обход:
+ *   for (int i = 0; i < units.size(); i++) { int s = units.slot(i); ... units.hp(s) ... }
+ * Изменять юнитов может только GameState.
+ */
+public final class UnitStore {
+    private final int[] uid;
+    private final int[] card;
+    private final int[] hp;
+    private final byte[] owner;
+    private final byte[] row;
+    private final byte[] col;
+    private final int[] nextFree; // следующий свободный слот или -1
+    private final int[] order;    // слоты живых юнитов в порядке появления
+    private int freeHead;
+    private int size;
+    private int nextUid = 1;
+
+    public UnitStore(int capacity) {
+        uid = new int[capacity];
+        card = new int[capacity];
+        hp = new int[capacity];
+        owner = new byte[capacity];
+        row = new byte[capacity];
+        col = new byte[capacity];
+        nextFree = new int[capacity];
+        order = new int[capacity];
+        clear();
+    }
+
+    public int size() { return size; }
+
+    public int capacity() { return uid.length; }
+
+    /** Слот i-го юнита в порядке появления, 0 <= i < size(). */
+    public int slot(int i) { return order[i]; }
+
+    /** Занят ли слот живым юнитом. */
+    public boolean alive(int slot) { return uid[slot] != 0; }
+
+    public int uid(int slot) { return uid[slot]; }
+
+    public int card(int slot) { return card[slot]; }
+
+    public int hp(int slot) { return hp[slot]; }
+
+    public int owner(int slot) { return owner[slot]; }
+
+    public int row(int slot) { return row[slot]; }
+
+    public int col(int slot) { return col[slot]; }
+
+    /** Новый юнит в конце порядка; возвращает слот или -1, если места нет. */
+    int add(int cardId, int hitPoints, int ownerIndex, int r, int c) {
+        if (freeHead < 0) return -1;
+        int s = freeHead;
+        freeHead = nextFree[s];
+        uid[s] = nextUid++;
+        card[s] = cardId;
+        hp[s] = hitPoints;
+        owner[s] = (byte) ownerIndex;
+        row[s] = (byte) r;
+        col[s] = (byte) c;
+        order[size++] = s;
+        return s;
+    }
+
+    /** Убирает i-го по порядку юнита; остальные сдвигаются, их слоты не меняются. */
+    void removeAt(int i) {
+        int s = order[i];
+        System.arraycopy(order, i + 1, order, i, size - i - 1);
+        size--;
+        // hp не трогаем: рабочие массивы тика ещё могут смотреть на слот до конца тика
+        uid[s] = 0;
+        nextFree[s] = freeHead;
+        freeHead = s;
+    }
+
+    void damage(int slot, int amount) { hp[slot] -= amount; }
+
+    void moveTo(int slot, int r, int c) {
+        row[slot] = (byte) r;
+        col[slot] = (byte) c;
+    }
+
+    /** Убирает всех; uid продолжают расти, чтобы клиент не спутал новых юнитов со старыми. */
+    void clear() {
+        size = 0;
+        Arrays.fill(uid, 0);
+        for (int s = 0; s < nextFree.length; s++) nextFree[s] = s + 1 < nextFree.length ? s + 1 : -1;
+        freeHead = nextFree.length > 0 ? 0 : -1;
+    }
+}
@@ -0,0 +1,122 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Кодирует полезную нагрузку UPDATE для одной комнаты.
+ *
+ * FULL  — старый формат: "e0|e1|t0|t1|owner,card,row,col,hp;..." (всё поле каждый тик).
+ * DELTA — с номером тика и ключевыми кадрами:
+ *   "K|seq|e0|e1|t0|t1|uid,owner,card,row,col,hp;..."           — полный кадр;
+ *   "D|seq|e0|e1|t0|t1|uid,owner,card,row,col,hp;...|uid;uid;"  — только новые/изменённые юниты и удалённые uid.
+ * Клиент применяет D только поверх кадра seq-1, иначе просит RESYNC.
+ */
+public class UpdateEncoder {
+    public enum Mode { FULL, DELTA }
+
+    private final Mode mode;
+    private final int keyframeInterval;
+    // Последнее отправленное по слоту UnitStore: uid (0 — пусто) и упакованные row, col, hp
+    private int[] sentUid = new int[0];
+    private long[] sentState = new long[0];
+    private int[] alive = new int[0];
+    private long seq = 0;
+    private int sinceKeyframe = 0;
+    // volatile: запрос приходит из разбора команд, а кодирует поток тика уже вне замка комнаты
+    private volatile boolean keyframeRequested = true;
+
+    public UpdateEncoder(Mode mode, int keyframeInterval) {
+        this.mode = mode;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+    }
+
+    public Mode mode() { return mode; }
+
+    /** Следующий encode() выдаст полный кадр (новый матч, новый зритель, клиент потерял кадр). */
+    public void requestKeyframe() { keyframeRequested = true; }
+
+    public String encode(GameState state) {
+        return encode(state.capture());
+    }
+
+    /**
+     * Кодирует опубликованный снимок. Вызывать из одного потока (тика комнаты): энкодер помнит,
+     * что уже отправлено; requestKeyframe() можно звать откуда угодно.
+     */
+    public String encode(GameSnapshot snap) {
+        if (mode == Mode.FULL) return snap.serialize();
+        if (sentUid.length != snap.slotCapacity()) {
+            sentUid = new int[snap.slotCapacity()];
+            sentState = new long[snap.slotCapacity()];
+            keyframeRequested = true;
+        }
+        seq++;
+        boolean keyframe = keyframeRequested || ++sinceKeyframe >= keyframeInterval;
+        StringBuilder sb = new StringBuilder(keyframe ? 32 + snap.size() * 20 : 64);
+        sb.append(keyframe ? 'K' : 'D').append('|').append(seq).append('|');
+        sb.append(snap.elixir(0)).append('|').append(snap.elixir(1)).append('|');
+        sb.append(snap.towerDamage(0)).append('|').append(snap.towerDamage(1)).append('|');
+
+        if (keyframe) {
+            keyframeRequested = false;
+            sinceKeyframe = 0;
+            Arrays.fill(sentUid, 0);
+            for (int i = 0; i < snap.size(); i++) {
+                appendUnit(sb, snap, i);
+                sentUid[snap.slot(i)] = snap.uid(i);
+                sentState[snap.slot(i)] = pack(snap, i);
+            }
+            return sb.toString();
+        }
+
+        for (int i = 0; i < snap.size(); i++) {
+            int slot = snap.slot(i);
+            long now = pack(snap, i);
+            if (sentUid[slot] != snap.uid(i) || sentState[slot] != now) appendUnit(sb, snap, i);
+        }
+        sb.append('|');
+        // Слот освободился или занят уже другим юнитом — прежний погиб
+        int[] aliveUid = aliveScratch(snap);
+        for (int slot = 0; slot < sentUid.length; slot++) {
+            if (sentUid[slot] != 0 && sentUid[slot] != aliveUid[slot]) sb.append(sentUid[slot]).append(';');
+            sentUid[slot] = aliveUid[slot];
+        }
+        for (int i = 0; i < snap.size(); i++) sentState[snap.slot(i)] = pack(snap, i);
+        return sb.toString();
+    }
+
+    /**
+     * Полный кадр снимка под текущим seq, не меняя состояния энкодера: для клиента,
+     * который подключился к уже идущему потоку. Следующий encode() продолжит с seq + 1.
+     */
+    public String keyframe(GameSnapshot snap) {
+        if (mode == Mode.FULL) return snap.serialize();
+        StringBuilder sb = new StringBuilder(32 + snap.size() * 20);
+        sb.append('K').append('|').append(seq).append('|');
+        sb.append(snap.elixir(0)).append('|').append(snap.elixir(1)).append('|');
+        sb.append(snap.towerDamage(0)).append('|').append(snap.towerDamage(1)).append('|');
+        for (int i = 0; i < snap.size(); i++) appendUnit(sb, snap, i);
+        return sb.toString();
+    }
+
+    /** uid живого юнита по слоту (0 — пусто); массив переиспользуется между вызовами. */
+    private int[] aliveScratch(GameSnapshot snap) {
+        if (alive.length != sentUid.length) alive = new int[sentUid.length];
+        Arrays.fill(alive, 0);
+        for (int i = 0; i < snap.size(); i++) alive[snap.slot(i)] = snap.uid(i);
+        return alive;
+    }
+
+    private static void appendUnit(StringBuilder sb, GameSnapshot snap, int i) {
+        sb.append(snap.uid(i)).append(',')
+                .append(snap.owner(i)).append(',')
+                .append(snap.card(i)).append(',')
+                .append(snap.row(i)).append(',')
+                .append(snap.col(i)).append(',')
+                .append(snap.hp(i)).append(';');
+    }
+
+    private static long pack(GameSnapshot snap, int i) {
+        return ((long) snap.row(i) << 48) | ((long) snap.col(i) << 32) | (snap.hp(i) & 0xFFFFFFFFL);
+    }
+}
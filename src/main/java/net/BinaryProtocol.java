@@ -0,0 +1,277 @@
+package net;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Компактная бинарная форма тех же сообщений, что и в текстовом Protocol.
+ *
+ * Кадр: MAGIC(0xB1) | varint длина тела | тело.
+ * Тело: байт типа сообщения | токены полезной нагрузки.
+ *
+ * Полезная нагрузка режется на поля по разделителям , ; | : / и каждое поле кодируется токеном.
+ * Заголовок токена — один байт:
+ *   биты 0-2 — разделитель после поля (0 — конец, 1 ',', 2 ';', 3 '|', 4 ':', 5 '/');
+ *   бит 3    — вид поля: 0 — неотрицательное целое, 1 — строка UTF-8;
+ *   биты 4-7 — само число (0..14) или длина строки (0..14); 15 — дальше идёт varint.
+ * Так юнит "12,0,5,1,1,100;" занимает 7 байт вместо 15, а декодирование даёт ровно исходный текст.
+ * Первый байт кадра не ASCII, поэтому на одном потоке могут чередоваться текстовые строки и кадры.
+ */
+public final class BinaryProtocol {
+    public static final int VERSION = 1;
+    public static final byte MAGIC = (byte) 0xB1;
+    /**
+     * Предел длины одного сообщения для обоих транспортов (FrameReader и FrameDecoder): тело бинарного
+     * кадра или текстовая строка без '\n'. Защита от клиента, который шлёт огромный кадр или бесконечную строку.
+     */
+    public static final int MAX_FRAME = 64 * 1024;
+
+    private static final String[] TYPES = {
+            null, "ASSIGN", "INFO", "SELECT", "READY", "NOTREADY", "START_GAME",
+            "DEPLOY", "UPDATE", "END", "RESYNC", "HELLO"
+    };
+    private static final String DELIMS = "\0,;|:/";
+    private static final int HEADER_RESERVE = 6; // MAGIC + varint длины до 5 байт
+    private static final int MAX_VARINT = 9;     // 63 бита: число токена всегда неотрицательное
+
+    private BinaryProtocol() {}
+
+    /** Полный кадр сообщения, готовый к записи в сокет. */
+    public static byte[] encode(String type, String payload) {
+        // Тело пишем с отступом HEADER_RESERVE, потом вписываем MAGIC и длину прямо перед ним
+        Sink body = new Sink(HEADER_RESERVE + 16 + (payload == null ? 0 : payload.length()));
+        body.len = HEADER_RESERVE;
+        int code = typeCode(type);
+        body.put(code);
+        if (code == 0) putString(body, type, 0);
+        if (payload != null && !payload.isEmpty()) encodePayload(payload, body);
+
+        int bodyLen = body.len - HEADER_RESERVE;
+        int start = HEADER_RESERVE - 1 - varintSize(bodyLen);
+        body.buf[start] = MAGIC;
+        int pos = start + 1;
+        for (int v = bodyLen; ; v >>>= 7) {
+            if ((v & ~0x7F) == 0) {
+                body.buf[pos] = (byte) v;
+                break;
+            }
+            body.buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+        }
+        return Arrays.copyOfRange(body.buf, start, body.len);
+    }
+
+    private static int varintSize(int v) {
+        int n = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Декодирует тело кадра (без MAGIC и длины). Каждый varint и каждая длина строки проверяются
+     * по границе кадра: за неё разбор не выходит, даже если за телом в буфере лежат старые байты.
+     */
+    public static Protocol.Parsed decodeBody(byte[] buf, int off, int len) throws ProtocolException {
+        if (len <= 0 || len > MAX_FRAME || off < 0 || off + len > buf.length) {
+            throw new ProtocolException("bad frame length " + len);
+        }
+        int end = off + len;
+        int pos = off;
+        int code = buf[pos++] & 0xFF;
+        String type;
+        // Текст не длиннее ~20 символов на байт кадра (varint 10 байт -> 19 цифр)
+        Chars sb = new Chars(len * 4 + 16);
+        if (code == 0) {
+            if (pos == end) throw new ProtocolException("missing message type");
+            pos = readToken(buf, pos, end, sb);
+            // разделитель после имени типа не пишется
+            type = sb.toString();
+            sb.len = 0;
+        } else if (code < TYPES.length) {
+            type = TYPES[code];
+        } else {
+            throw new ProtocolException("unknown message type " + code);
+        }
+        while (pos < end) pos = readToken(buf, pos, end, sb);
+        return new Protocol.Parsed(type, sb.toString());
+    }
+
+    private static int typeCode(String type) {
+        for (int i = 1; i < TYPES.length; i++) if (TYPES[i].equals(type)) return i;
+        return 0;
+    }
+
+    /**
+     * Один проход по UTF-8 байтам: по ходу поля сразу копим его значение, если оно похоже на число.
+     * Разделители — ASCII, поэтому внутри многобайтных символов они не встречаются.
+     */
+    private static void encodePayload(String payload, Sink out) {
+        byte[] src = payload.getBytes(StandardCharsets.UTF_8);
+        int start = 0;
+        int n = src.length;
+        long value = 0;
+        boolean numeric = true;
+        for (int i = 0; i <= n; i++) {
+            int delim = 0;
+            if (i < n) {
+                byte c = src[i];
+                delim = delimCode(c);
+                if (delim < 0) {
+                    if (numeric) {
+                        if (c >= '0' && c <= '9' && i - start < 18 && !(i > start && value == 0)) {
+                            value = value * 10 + (c - '0');
+                        } else {
+                            numeric = false; // буква, ведущий ноль или слишком длинное
+                        }
+                    }
+                    continue;
+                }
+            }
+            if (numeric && i > start) {
+                putNumber(out, value, delim);
+            } else {
+                putStringHeader(out, i - start, delim);
+                out.put(src, start, i - start);
+            }
+            start = i + 1;
+            value = 0;
+            numeric = true;
+        }
+    }
+
+    private static int delimCode(byte c) {
+        switch (c) {
+            case ',': return 1;
+            case ';': return 2;
+            case '|': return 3;
+            case ':': return 4;
+            case '/': return 5;
+            default: return -1;
+        }
+    }
+
+    private static void putNumber(Sink out, long v, int delim) {
+        if (v < 15) {
+            out.put((int) (v << 4) | delim);
+        } else {
+            out.put(0xF0 | delim);
+            out.putVarint(v);
+        }
+    }
+
+    private static void putString(Sink out, String s, int delim) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        putStringHeader(out, b.length, delim);
+        out.put(b, 0, b.length);
+    }
+
+    private static void putStringHeader(Sink out, int length, int delim) {
+        if (length < 15) {
+            out.put((length << 4) | 0x08 | delim);
+        } else {
+            out.put(0xF8 | delim);
+            out.putVarint(length);
+        }
+    }
+
+    /** Один токен из buf[pos, end); возвращает позицию следующего. */
+    private static int readToken(byte[] buf, int pos, int end, Chars sb) throws ProtocolException {
+        int h = buf[pos++] & 0xFF;
+        int delim = h & 0x07;
+        boolean str = (h & 0x08) != 0;
+        if (delim >= DELIMS.length()) throw new ProtocolException("bad delimiter " + delim);
+        long v = h >>> 4;
+        if (v == 15) {
+            long r = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (pos == end) throw new ProtocolException("varint past frame end");
+                if (shift == MAX_VARINT * 7) throw new ProtocolException("varint too long");
+                b = buf[pos++] & 0xFF;
+                r |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            v = r;
+        }
+        if (str) {
+            if (v > end - pos) throw new ProtocolException("string of " + v + " bytes past frame end");
+            end = pos + (int) v;
+            boolean ascii = true;
+            for (int i = pos; i < end && ascii; i++) ascii = buf[i] >= 0;
+            if (ascii) {
+                for (int i = pos; i < end; i++) sb.append((char) buf[i]);
+            } else {
+                sb.append(new String(buf, pos, (int) v, StandardCharsets.UTF_8));
+            }
+            pos = end;
+        } else {
+            sb.appendNumber(v);
+        }
+        if (delim != 0) sb.append(DELIMS.charAt(delim));
+        return pos;
+    }
+
+    /** Растущий буфер символов для сборки payload при декодировании. */
+    static final class Chars {
+        char[] buf;
+        int len;
+
+        Chars(int capacity) { buf = new char[capacity]; }
+
+        void append(char c) {
+            if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+            buf[len++] = c;
+        }
+
+        void append(String s) {
+            for (int i = 0; i < s.length(); i++) append(s.charAt(i));
+        }
+
+        void appendNumber(long v) {
+            if (len + 20 > buf.length) buf = Arrays.copyOf(buf, Math.max(len + 20, len * 2));
+            if (v == 0) {
+                buf[len++] = '0';
+                return;
+            }
+            int digits = 0;
+            for (long t = v; t != 0; t /= 10) digits++;
+            int p = len + digits;
+            for (long t = v; t != 0; t /= 10) buf[--p] = (char) ('0' + t % 10);
+            len += digits;
+        }
+
+        @Override
+        public String toString() { return new String(buf, 0, len); }
+    }
+
+    /** Минимальный растущий буфер байтов. */
+    static final class Sink {
+        byte[] buf;
+        int len;
+
+        Sink(int capacity) { buf = new byte[Math.max(8, capacity)]; }
+
+        void put(int b) {
+            if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+            buf[len++] = (byte) b;
+        }
+
+        void put(byte[] b, int off, int n) {
+            if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(len + n, len * 2));
+            System.arraycopy(b, off, buf, len, n);
+            len += n;
+        }
+
+        void putVarint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                put((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((int) v);
+        }
+
+    }
+}
@@ -0,0 +1,87 @@
+package net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Инкрементальная нарезка входящих байтов на сообщения для NIO: текстовые строки "TYPE:payload\n"
+ * и бинарные кадры BinaryProtocol вперемешку. Недочитанный хвост копится между вызовами,
+ * поэтому сообщение может прийти любыми кусками.
+ */
+public class FrameDecoder {
+    private static final int START = 0, TEXT = 1, LENGTH = 2, BODY = 3;
+
+    private byte[] acc = new byte[256];
+    private int len = 0;
+    private int state = START;
+    private int frameLen, shift;
+
+    /** Разбирает всё, что есть в буфере (в режиме чтения), и отдаёт готовые сообщения в sink. */
+    public void decode(ByteBuffer in, Consumer<Protocol.Parsed> sink) throws ProtocolException {
+        while (in.hasRemaining()) {
+            switch (state) {
+                case START: {
+                    if (in.get(in.position()) == BinaryProtocol.MAGIC) {
+                        in.get();
+                        state = LENGTH;
+                        frameLen = 0;
+                        shift = 0;
+                    } else {
+                        state = TEXT;
+                    }
+                    break;
+                }
+                case TEXT: {
+                    // Копируем кусок до '\n' целиком, а не по байту
+                    int from = in.position(), limit = in.limit(), nl = -1;
+                    for (int i = from; i < limit; i++) {
+                        if (in.get(i) == '\n') { nl = i; break; }
+                    }
+                    appendFrom(in, (nl < 0 ? limit : nl) - from);
+                    if (nl >= 0) {
+                        in.get(); // сам '\n'
+                        int end = len;
+                        if (end > 0 && acc[end - 1] == '\r') end--;
+                        sink.accept(Protocol.parse(new String(acc, 0, end, StandardCharsets.UTF_8)));
+                        len = 0;
+                        state = START;
+                    }
+                    break;
+                }
+                case LENGTH: {
+                    byte b = in.get();
+                    frameLen |= (b & 0x7F) << shift;
+                    shift += 7;
+                    if ((b & 0x80) == 0) {
+                        if (frameLen <= 0 || frameLen > BinaryProtocol.MAX_FRAME) throw new ProtocolException("bad frame length");
+                        state = BODY;
+                    } else if (shift > 28) {
+                        throw new ProtocolException("bad frame length");
+                    }
+                    break;
+                }
+                case BODY: {
+                    appendFrom(in, Math.min(in.remaining(), frameLen - len));
+                    if (len == frameLen) {
+                        sink.accept(BinaryProtocol.decodeBody(acc, 0, len));
+                        len = 0;
+                        state = START;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private void appendFrom(ByteBuffer in, int n) throws ProtocolException {
+        if (len + n > acc.length) {
+            if (len + n > BinaryProtocol.MAX_FRAME) throw new ProtocolException("message too long");
+            byte[] bigger = new byte[Math.min(BinaryProtocol.MAX_FRAME, Math.max(len + n, acc.length * 2))];
+            System.arraycopy(acc, 0, bigger, 0, len);
+            acc = bigger;
+        }
+        in.get(acc, len, n);
+        len += n;
+    }
+}
@@ -0,0 +1,64 @@
+package net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Блокирующее чтение сообщений из потока, где могут идти и текстовые строки, и бинарные кадры
+ * (их отличает первый байт BinaryProtocol.MAGIC). Заменяет BufferedReader.readLine().
+ */
+public class FrameReader {
+    private final InputStream in;
+    private byte[] buf = new byte[256];
+
+    public FrameReader(InputStream in) {
+        this.in = in;
+    }
+
+    /** Следующее сообщение или null, если собеседник закрыл соединение. */
+    public Protocol.Parsed read() throws IOException {
+        int first = in.read();
+        if (first < 0) return null;
+        if ((byte) first == BinaryProtocol.MAGIC) {
+            int len = readVarint();
+            if (len <= 0 || len > BinaryProtocol.MAX_FRAME) throw new ProtocolException("bad frame length " + len);
+            ensure(len);
+            int off = 0;
+            while (off < len) {
+                int n = in.read(buf, off, len - off);
+                if (n < 0) throw new EOFException();
+                off += n;
+            }
+            return BinaryProtocol.decodeBody(buf, 0, len);
+        }
+        int len = 0;
+        int b = first;
+        while (b != '\n') {
+            ensure(len + 1);
+            buf[len++] = (byte) b;
+            b = in.read();
+            if (b < 0) break;
+        }
+        if (len > 0 && buf[len - 1] == '\r') len--;
+        return Protocol.parse(new String(buf, 0, len, StandardCharsets.UTF_8));
+    }
+
+    private int readVarint() throws IOException {
+        int r = 0, shift = 0, b;
+        do {
+            b = in.read();
+            if (b < 0) throw new EOFException();
+            r |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return r;
+    }
+
+    private void ensure(int size) throws IOException {
+        if (size > BinaryProtocol.MAX_FRAME) throw new ProtocolException("message too long");
+        if (size > buf.length) buf = Arrays.copyOf(buf, Math.max(size, buf.length * 2));
+    }
+}
@@ -6,31 +6,50 @@ import java.util.function.Consumer;
 
 /**
  * Лёгкий сетевой клиент-обёртка для GameClient.
+ * Сразу после подключения предлагает серверу формат через HELLO; до ответа пишет текстом.
  */
 public class NetClient {
+    private final Protocol.Format preferred;
+    private volatile Protocol.Format format = Protocol.Format.TEXT;
     private Socket socket;
-    private BufferedReader in;
-    private PrintWriter out;
+    private OutputStream out;
     private Thread reader;
 
-    public void connect(String host, int port, Consumer<String> onMessage) throws IOException {
+    public NetClient() {
+        this(Protocol.Format.BINARY);
+    }
+
+    public NetClient(Protocol.Format preferred) {
+        this.preferred = preferred;
+    }
+
+    public void connect(String host, int port, Consumer<Protocol.Parsed> onMessage) throws IOException {
         socket = new Socket(host, port);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
-        reader = new Thread(() -> {
+        FrameReader in = new FrameReader(new BufferedInputStream(socket.getInputStream()));
+        out = new BufferedOutputStream(socket.getOutputStream());
+        if (preferred == Protocol.Format.BINARY) send("HELLO", Protocol.helloPayload(preferred));
+        // Виртуальный поток всегда daemon и почти ничего не стоит, пока ждёт сокет
+        reader = Thread.ofVirtual().name("net-reader").start(() -> {
             try {
-                String line;
-                while ((line = in.readLine()) != null) onMessage.accept(line);
+                Protocol.Parsed msg;
+                while ((msg = in.read()) != null) {
+                    if ("HELLO".equals(msg.type)) {
+                        format = Protocol.negotiate(msg.payload);
+                        continue;
+                    }
+                    onMessage.accept(msg);
+                }
             } catch (IOException e) { /*disconnected*/ }
         });
-        reader.setDaemon(true);
-        reader.start();
     }
 
-    public void send(String msg) {
-        if (out != null) {
-            out.print(msg);
+    public synchronized void send(String type, String payload) {
+        if (out == null) return;
+        try {
+            out.write(Protocol.encode(format, type, payload));
             out.flush();
+        } catch (IOException ignored) {
+            // соединение разорвано — reader увидит это и завершится
         }
     }
 
@@ -1,11 +1,22 @@
 package net;
 
+import java.nio.charset.StandardCharsets;
+
 public class Protocol {
+    /** Формат кадров на проводе: текст "TYPE:payload\n" или BinaryProtocol. */
+    public enum Format { TEXT, BINARY }
+
     public static String make(String type, String payload) {
         if (payload == null) payload = "";
         return type + ':' + payload + "\n";
     }
 
+    /** Готовые байты сообщения в нужном формате. */
+    public static byte[] encode(Format format, String type, String payload) {
+        if (format == Format.BINARY) return BinaryProtocol.encode(type, payload);
+        return make(type, payload).getBytes(StandardCharsets.UTF_8);
+    }
+
     public static Parsed parse(String line) {
         if (line == null) return null;
         int idx = line.indexOf(':');
@@ -15,6 +26,22 @@ public class Protocol {
         return new Parsed(t, p);
     }
 
+    // Рукопожатие: клиент шлёт текстом HELLO:<версия>,<bin|text>, сервер отвечает тем же сообщением
+    // с выбранным форматом и после ответа пишет в этом формате. Старый сервер HELLO просто не узнает,
+    // и клиент останется на тексте.
+
+    public static String helloPayload(Format format) {
+        return BinaryProtocol.VERSION + "," + (format == Format.BINARY ? "bin" : "text");
+    }
+
+    /** Какой формат принять по HELLO от собеседника. */
+    public static Format negotiate(String helloPayload) {
+        String[] p = helloPayload == null ? new String[0] : helloPayload.split(",");
+        if (p.length == 2 && p[0].trim().equals(String.valueOf(BinaryProtocol.VERSION)) && p[1].trim().equals("bin"))
+            return Format.BINARY;
+        return Format.TEXT;
+    }
+
     public static class Parsed {
         public final String type;
         public final String payload;
@@ -0,0 +1,18 @@
+package net;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Собеседник прислал то, что не является корректным сообщением: кадр с неверной длиной,
+ * токен за границей кадра, неизвестный тип. Соединение после этого закрывается — продолжать
+ * разбор потока с середины кадра нельзя.
+ */
+public class ProtocolException extends IOException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,41 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул direct ByteBuffer одинакового размера для чтения из каналов.
+ * Буфер берётся только на время одного read(), поэтому пул остаётся маленьким
+ * даже при тысячах подключений.
+ */
+public class BufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    // Сколько буферов в free: size() у ConcurrentLinkedQueue — обход всей очереди
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxPooled;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer b = free.poll();
+        if (b == null) return ByteBuffer.allocateDirect(bufferSize);
+        pooled.decrementAndGet();
+        return b;
+    }
+
+    public void release(ByteBuffer b) {
+        b.clear();
+        if (b.capacity() != bufferSize) return;
+        // Место в пуле занимаем до offer, так что больше maxPooled буферов там не окажется
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(b);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
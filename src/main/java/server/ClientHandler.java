@@ -1,43 +1,149 @@
 package server;
 
+import net.FrameReader;
 import net.Protocol;
+import net.ProtocolException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
 
-public class ClientHandler implements Runnable {
+/**
+ * Блокирующий транспорт: один поток на клиента, чтение через FrameReader
+ * (текстовые строки и бинарные кадры после рукопожатия HELLO).
+ * Запись идёт отдельным писателем из OutboundQueue, так что медленный клиент не держит тик комнаты.
+ */
+public class ClientHandler implements Runnable, Connection {
+    private static final Logger log = LoggerFactory.getLogger(ClientHandler.class);
     private final Socket socket;
     private final GameServer server;
-    public final int playerIndex;
-    private BufferedReader in;
-    private PrintWriter out;
+    private volatile int playerIndex = -1;
+    private volatile Room room;
+    private volatile Protocol.Format format = Protocol.Format.TEXT;
+    private final OutboundQueue outbound = OutboundQueue.fromConfig();
+    private final ConnectionStats stats = new ConnectionStats();
 
-    public ClientHandler(Socket socket, GameServer server, int playerIndex) {
+    public ClientHandler(Socket socket, GameServer server) {
         this.socket = socket;
         this.server = server;
+    }
+
+    @Override
+    public void attach(Room room, int playerIndex) {
+        this.room = room;
         this.playerIndex = playerIndex;
+        // В очередь до INFO MATCH_START, даже если поток клиента ещё не запущен
+        if (playerIndex == Room.SPECTATOR) send("SPECTATE", String.valueOf(room.id));
+        else send("ASSIGN", String.valueOf(playerIndex));
+    }
+
+    @Override
+    public int playerIndex() { return playerIndex; }
+
+    @Override
+    public Room room() { return room; }
+
+    @Override
+    public void send(String type, String payload) {
+        sendEncoded(Protocol.encode(format, type, payload), "UPDATE".equals(type));
     }
 
-    public void send(String msg) {
-        if (out != null) {
-            out.print(msg);
-            out.flush();
+    @Override
+    public Protocol.Format format() { return format; }
+
+    @Override
+    public void sendEncoded(byte[] frame, boolean update) {
+        if (!outbound.offer(frame, update)) {
+            log.warn("client too slow, disconnecting: {}", socket.getRemoteSocketAddress());
+            close(); // поток чтения получит ошибку и сам вызовет onDisconnect
+        }
+    }
+
+    @Override
+    public OutboundQueue outbound() { return outbound; }
+
+    @Override
+    public ConnectionStats stats() { return stats; }
+
+    @Override
+    public void close() {
+        outbound.close();
+        try { socket.close(); } catch (IOException ignored) {}
+    }
+
+    @Override
+    public boolean isClosed() { return socket.isClosed(); }
+
+    /** Писатель: забирает всё, что накопилось, и отправляет одним flush. */
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            while (outbound.awaitAndDrain(batch)) {
+                long bytes = 0;
+                for (byte[] b : batch) {
+                    out.write(b);
+                    bytes += b.length;
+                }
+                out.flush();
+                stats.sent(batch.size(), bytes);
+                batch.clear();
+            }
+        } catch (IOException | InterruptedException e) {
+            close();
         }
     }
 
     @Override
     public void run() {
         try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
-            send(Protocol.make("ASSIGN", String.valueOf(playerIndex)));
-            String line;
-            while ((line = in.readLine()) != null) {
-                server.handleClientMessage(this, line);
+            FrameReader in = new FrameReader(new BufferedInputStream(new CountingInput(socket.getInputStream(), stats)));
+            server.execute(this::writeLoop);
+            Protocol.Parsed msg;
+            while ((msg = in.read()) != null) {
+                stats.receivedMessage();
+                if ("HELLO".equals(msg.type)) {
+                    // Ответ уходит ещё в старом формате, всё после него — в согласованном
+                    Protocol.Format agreed = Protocol.negotiate(msg.payload);
+                    send("HELLO", Protocol.helloPayload(agreed));
+                    format = agreed;
+                    continue;
+                }
+                server.handleClientMessage(this, msg);
             }
+        } catch (ProtocolException e) {
+            log.warn("closing client {} after a bad frame", socket.getRemoteSocketAddress(), e);
         } catch (IOException e) {
-            System.err.println("Client disconnected: " + e.getMessage());
+            log.info("client disconnected: {}", e.toString());
         } finally {
-            try { socket.close(); } catch (IOException ignored) {}
+            close();
+            server.onDisconnect(this);
+        }
+    }
+
+    /** Считает прочитанные из сокета байты. */
+    private static final class CountingInput extends FilterInputStream {
+        private final ConnectionStats stats;
+
+        CountingInput(InputStream in, ConnectionStats stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) stats.receivedBytes(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) stats.receivedBytes(n);
+            return n;
         }
     }
 }
@@ -5,6 +5,8 @@ import java.io.IOException;
 import java.util.Properties;
 
 public class ConfigLoader {
+    private static Properties cached;
+
     public static String getServerIp() {
         Properties prop = new Properties();
         try (FileInputStream fis = new FileInputStream("config.properties")) {
@@ -15,4 +17,27 @@ public class ConfigLoader {
             return "127.0.0.1";
         }
     }
-}
\ No newline at end of file
+
+    /** Любой параметр из config.properties; системное свойство -Dkey=... имеет приоритет. */
+    public static synchronized String get(String key, String def) {
+        String sys = System.getProperty(key);
+        if (sys != null) return sys;
+        if (cached == null) {
+            cached = new Properties();
+            try (FileInputStream fis = new FileInputStream("config.properties")) {
+                cached.load(fis);
+            } catch (IOException ignored) {
+                // нет файла — работаем на значениях по умолчанию
+            }
+        }
+        return cached.getProperty(key, def);
+    }
+
+    public static int getInt(String key, int def) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(def)).trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package server;
+
+import net.Protocol;
+
+/**
+ * Одно клиентское подключение независимо от транспорта (блокирующий сокет или NIO).
+ * Комната работает только через этот интерфейс.
+ */
+public interface Connection {
+    int playerIndex();
+
+    Room room();
+
+    /** Вызывается комнатой при посадке клиента на место или в зрители (playerIndex = Room.SPECTATOR). */
+    void attach(Room room, int playerIndex);
+
+    /** Отправка в формате, согласованном с этим клиентом (текст или бинарный). */
+    void send(String type, String payload);
+
+    /** Формат, в котором этот клиент ждёт кадры. */
+    Protocol.Format format();
+
+    /**
+     * Отправка кадра, уже закодированного в format(). Массив общий для многих получателей
+     * (см. EncodedMessage) и после кодирования не меняется никем.
+     */
+    void sendEncoded(byte[] frame, boolean update);
+
+    /** Очередь исходящих кадров: глубина и число выброшенных UPDATE для наблюдения за отстающими. */
+    OutboundQueue outbound();
+
+    /** Байты и сообщения в обе стороны. */
+    ConnectionStats stats();
+
+    void close();
+
+    /** true после close(): клиент уже не вернётся, даже если onDisconnect ещё не дошёл. */
+    boolean isClosed();
+}
@@ -0,0 +1,50 @@
+package server;
+
+import util.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики трафика одного подключения. Заодно пополняют общие счётчики процесса,
+ * так что в /metrics есть и итог по серверу, и разбивка по клиентам.
+ */
+public final class ConnectionStats {
+    private static final Metrics.Counter BYTES_SENT = Metrics.counter("net_sent_bytes_total", "Bytes written to client sockets");
+    private static final Metrics.Counter MESSAGES_SENT = Metrics.counter("net_sent_messages_total", "Messages written to client sockets");
+    private static final Metrics.Counter BYTES_RECEIVED = Metrics.counter("net_received_bytes_total", "Bytes read from client sockets");
+    private static final Metrics.Counter MESSAGES_RECEIVED = Metrics.counter("net_received_messages_total", "Messages read from client sockets");
+
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /** Номер подключения в процессе — метка client в метриках по клиентам. */
+    private final long id = IDS.incrementAndGet();
+    // У каждого счётчика один пишущий поток (писатель или читатель подключения)
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+
+    void sent(int messages, long bytes) {
+        messagesSent.addAndGet(messages);
+        bytesSent.addAndGet(bytes);
+        MESSAGES_SENT.add(messages);
+        BYTES_SENT.add(bytes);
+    }
+
+    void receivedBytes(long bytes) {
+        bytesReceived.addAndGet(bytes);
+        BYTES_RECEIVED.add(bytes);
+    }
+
+    void receivedMessage() {
+        messagesReceived.incrementAndGet();
+        MESSAGES_RECEIVED.inc();
+    }
+
+    public long id() { return id; }
+
+    public long bytesSent() { return bytesSent.get(); }
+    public long messagesSent() { return messagesSent.get(); }
+    public long bytesReceived() { return bytesReceived.get(); }
+    public long messagesReceived() { return messagesReceived.get(); }
+}
@@ -0,0 +1,28 @@
+package server;
+
+import net.Protocol;
+
+/**
+ * Одно сообщение для многих получателей: кодируется не больше одного раза на формат,
+ * а готовые байты кладутся в очереди всех получателей без копирования.
+ * Не потокобезопасен — рассылка идёт из одного потока.
+ */
+final class EncodedMessage {
+    private final String type;
+    private final String payload;
+    private final boolean update;
+    private final byte[][] frames = new byte[Protocol.Format.values().length][];
+
+    EncodedMessage(String type, String payload) {
+        this.type = type;
+        this.payload = payload;
+        this.update = "UPDATE".equals(type);
+    }
+
+    void sendTo(Connection c) {
+        Protocol.Format format = c.format();
+        byte[] frame = frames[format.ordinal()];
+        if (frame == null) frame = frames[format.ordinal()] = Protocol.encode(format, type, payload);
+        c.sendEncoded(frame, update);
+    }
+}
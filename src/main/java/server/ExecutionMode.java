@@ -0,0 +1,34 @@
+package server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * На каких потоках сервер выполняет клиентов, тики комнат и запись в БД.
+ * Задаётся параметром server.threads: platform (по умолчанию) или virtual.
+ */
+public enum ExecutionMode {
+    PLATFORM, VIRTUAL;
+
+    public static ExecutionMode fromConfig() {
+        return valueOf(ConfigLoader.get("server.threads", "platform").trim().toUpperCase());
+    }
+
+    public ThreadFactory threadFactory(String prefix) {
+        if (this == VIRTUAL) return Thread.ofVirtual().name(prefix + "-", 0).factory();
+        return Thread.ofPlatform().name(prefix + "-", 0).daemon(true).factory();
+    }
+
+    /** Исполнитель "задача на поток": для обработчиков клиентов и фоновой записи. */
+    public ExecutorService newTaskExecutor(String prefix) {
+        if (this == VIRTUAL) return Executors.newThreadPerTaskExecutor(threadFactory(prefix));
+        return Executors.newCachedThreadPool(threadFactory(prefix));
+    }
+
+    /** Планировщик тиков комнат. */
+    public ScheduledExecutorService newScheduler(String prefix, int threads) {
+        return Executors.newScheduledThreadPool(threads, threadFactory(prefix));
+    }
+}
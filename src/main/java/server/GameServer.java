@@ -1,103 +1,118 @@
 package server;
 
-import model.*;
-import net.Protocol;
 import db.DatabaseManager;
+import net.Protocol;
 
 import java.io.*;
 import java.net.*;
-import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.ExecutorService;
 
 /**
- * Простой сервер: ждёт 2 клиента, держит authoritative GameState и шлёт UPDATE каждые 3 секунды.
+ * Сервер комнат: принимает клиентов без ограничения по числу, подбирает им соперников (server.matchmaking,
+ * см. RoomManager), рассаживает парами по комнатам (у каждой свой authoritative GameState)
+ * и тикает каждую комнату раз в 3 секунды.
+ *
+ * Транспорт выбирается параметром server.transport: blocking (поток на клиента) или nio (селекторы),
+ * потоки — параметром server.threads: platform или virtual (см. ExecutionMode).
  */
 public class GameServer {
+    public enum Transport { BLOCKING, NIO }
+
     public static final int PORT = 23456;
-    private final ServerSocket serverSocket;
-    private final List<ClientHandler> clients = Collections.synchronizedList(new ArrayList<>());
-    private final GameState state = new GameState();
-    private final ScheduledExecutorService ticks = Executors.newSingleThreadScheduledExecutor();
-    private final DatabaseManager db;
+    private final Transport transport;
+    private final ExecutionMode mode;
+    private final RoomManager rooms;
+    private final ExecutorService clientThreads;
+    // Открываются в start(); stop() может прийти из другого потока
+    private volatile ServerSocket serverSocket;
+    private volatile NioTransport nio;
+    private MetricsEndpoint metrics;
 
     public GameServer() throws IOException {
-        serverSocket = new ServerSocket(PORT);
-        db = DatabaseManager.getInstance();
+        this(Transport.valueOf(ConfigLoader.get("server.transport", "blocking").trim().toUpperCase()),
+                ExecutionMode.fromConfig());
     }
 
-    public void start() throws IOException {
-        System.out.println("Server started on port " + PORT + ". Waiting for 2 clients...");
-        while (clients.size() < 2) {
-            Socket s = serverSocket.accept();
-            ClientHandler h = new ClientHandler(s, this, clients.size());
-            clients.add(h);
-
-            // 🔹 Отправляем клиенту его индекс
-            h.send(Protocol.make("ASSIGN", String.valueOf(clients.size() - 1)));
+    public GameServer(Transport transport, ExecutionMode mode) throws IOException {
+        this.transport = transport;
+        this.mode = mode;
+        rooms = new RoomManager(DatabaseManager.getInstance(), mode);
+        clientThreads = mode.newTaskExecutor("client");
+        ServerMetrics.register(rooms);
+        metrics = MetricsEndpoint.fromConfig();
+    }
 
-            new Thread(h).start();
-            System.out.println("Client connected: " + s.getRemoteSocketAddress());
+    /** Запускает комнаты, открывает порт и принимает клиентов; возвращается после stop(). */
+    public void start() throws IOException {
+        rooms.start();
+        if (transport == Transport.NIO) {
+            int loops = ConfigLoader.getInt("server.nio.loops",
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+            nio = new NioTransport(this, PORT, loops);
+        } else {
+            serverSocket = new ServerSocket(PORT);
+        }
+        System.out.println("Server started on port " + PORT + " (" + transport + ", " + mode + " threads). Waiting for clients...");
+        if (metrics != null) System.out.println("Metrics: http://127.0.0.1:" + metrics.port() + "/metrics, JMX clashroyale:type=Server");
+        if (transport == Transport.NIO) {
+            nio.serve();
+            return;
+        }
+        while (!serverSocket.isClosed()) {
+            Socket s;
+            try {
+                s = serverSocket.accept();
+            } catch (SocketException e) {
+                break; // сокет закрыт через stop()
+            }
+            ClientHandler h = new ClientHandler(s, this);
+            Room room = rooms.admit(h);
+            clientThreads.execute(h);
+            System.out.println("Client connected: " + s.getRemoteSocketAddress()
+                    + (room == null ? " -> matchmaking queue" : " -> room " + room.id + " as player " + h.playerIndex()));
         }
-        broadcast(Protocol.make("INFO","MATCH_START"));
-        ticks.scheduleAtFixedRate(this::gameTick, 3000, 3000, TimeUnit.MILLISECONDS);
     }
 
     public void stop() throws IOException {
-        ticks.shutdownNow();
-        serverSocket.close();
+        if (serverSocket != null) serverSocket.close();
+        if (nio != null) nio.close();
+        rooms.shutdown();
+        clientThreads.shutdownNow();
+        if (metrics != null) metrics.close();
+        ServerMetrics.unregister();
     }
 
-    public synchronized void broadcast(String msg) {
-        for (ClientHandler c : clients) c.send(msg);
-    }
+    public RoomManager rooms() { return rooms; }
 
-    public synchronized void sendTo(int playerIndex, String msg) {
-        if (playerIndex >= 0 && playerIndex < clients.size()) clients.get(playerIndex).send(msg);
-    }
+    /** Запуск вспомогательных задач клиента (писатель блокирующего транспорта) в том же режиме потоков. */
+    void execute(Runnable task) { clientThreads.execute(task); }
 
-    public synchronized void handleClientMessage(ClientHandler from, String line) {
-        Protocol.Parsed p = Protocol.parse(line);
-        if (p == null) return;
-        switch (p.type) {
-            case "SELECT":
-                state.setPlayerSelection(from.playerIndex, p.payload);
-                broadcast(Protocol.make("SELECT", from.playerIndex + ":" + p.payload));
-                break;
-            case "READY":
-                state.setReady(from.playerIndex, true);
-                broadcast(Protocol.make("READY", String.valueOf(from.playerIndex)));
-                if (state.bothReady()) {
-                    state.startMatch();
-                    broadcast(Protocol.make("START_GAME",""));
-                }
-                break;
-            case "NOTREADY":
-                state.setReady(from.playerIndex, false);
-                broadcast(Protocol.make("NOTREADY", String.valueOf(from.playerIndex)));
-                break;
-            case "DEPLOY":
-                state.deploy(from.playerIndex, p.payload);
-                broadcast(Protocol.make("DEPLOY", from.playerIndex + ":" + p.payload));
-                break;
-            default:
-                System.out.println("[Server] unknown message: " + line);
+    public void handleClientMessage(Connection from, Protocol.Parsed msg) {
+        switch (msg.type) {
+            case "SPECTATE":
+                rooms.spectate(from, msg.payload);
+                return;
+            case "LOGIN":
+                rooms.login(from, msg.payload);
+                return;
+            case "HISTORY":
+                rooms.history(from, msg.payload);
+                return;
+            case "LEADERBOARD":
+                // Из памяти: в БД не ходит
+                from.send("LEADERBOARD", rooms.db().leaderboard().payload());
+                return;
         }
+        Room room = from.room();
+        if (room != null) room.handleMessage(from, msg);
     }
 
-    private synchronized void gameTick() {
-        if (!state.inMatch()) return;
-        state.advanceTick();
-        String payload = state.serializeForClients();
-        broadcast(Protocol.make("UPDATE", payload));
-        if (state.isMatchOver()) {
-            String result = state.computeResult();
-            broadcast(Protocol.make("END", result));
-            db.saveResult(state);
-            state.resetToMenu();
-        }
+    void onDisconnect(Connection c) {
+        rooms.disconnected(c);
     }
 
     public static void main(String[] args) throws Exception {
+        util.AsyncConsole.install();
         GameServer s = new GameServer();
         s.start();
     }
@@ -0,0 +1,147 @@
+package server;
+
+import model.GameState;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Чтение журнала MatchJournal и воспроизведение матчей для отладки.
+ *
+ * Команды комнаты применяются к свежему GameState в том же порядке, что и на сервере,
+ * поэтому после каждого TICK состояние совпадает с тем, что видели клиенты,
+ * а на END проверяется, что результат сошёлся с записанным.
+ *
+ * Запуск: java server.JournalReader [dir] [room [match]]
+ *   без room — список матчей последнего запуска сервера;
+ *   с room   — воспроизведение match-го матча комнаты (по умолчанию первого) с выводом каждого тика.
+ * Другой запуск сервера: -Djournal.run=<runId>.
+ */
+public class JournalReader {
+    public static final class Event {
+        public final byte type;
+        public final int room;
+        public final int player;
+        public final long time;
+        public final String payload;
+
+        Event(byte type, int room, int player, long time, String payload) {
+            this.type = type;
+            this.room = room;
+            this.player = player;
+            this.time = time;
+            this.payload = payload;
+        }
+    }
+
+    /** Сегменты одного запуска по порядку; runId <= 0 — последний запуск в каталоге. */
+    public static List<File> segments(File dir, long runId) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("match-") && name.endsWith(".jrnl"));
+        if (files == null || files.length == 0) return List.of();
+        if (runId <= 0) {
+            for (File f : files) runId = Math.max(runId, runIdOf(f));
+        }
+        List<File> out = new ArrayList<>();
+        for (File f : files) if (runIdOf(f) == runId) out.add(f);
+        out.sort((a, b) -> a.getName().compareTo(b.getName())); // номер сегмента с ведущими нулями
+        return out;
+    }
+
+    private static long runIdOf(File f) {
+        String[] parts = f.getName().split("-");
+        return Long.parseLong(parts[1]);
+    }
+
+    public static void forEach(List<File> segments, Consumer<Event> sink) throws IOException {
+        for (File f : segments) {
+            MappedByteBuffer b;
+            try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+                b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            while (b.remaining() >= MatchJournal.HEADER) {
+                int len = b.getShort() & 0xFFFF;
+                if (len == 0) break; // дальше ничего не записано
+                byte type = b.get();
+                int room = b.getInt();
+                int player = b.get();
+                long time = b.getLong();
+                byte[] payload = new byte[len - MatchJournal.BODY_FIXED];
+                b.get(payload);
+                sink.accept(new Event(type, room, player, time, new String(payload, StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    /**
+     * Прогоняет историю комнаты через новый GameState до конца match-го матча (с 1).
+     * В onTick получает номер тика и состояние после него. Возвращает true, если результат совпал с END.
+     */
+    public static boolean replay(List<File> segments, int room, int match, TickListener onTick) throws IOException {
+        GameState state = new GameState();
+        int[] current = { 0 };
+        int[] tick = { 0 };
+        Boolean[] verdict = { null };
+        forEach(segments, e -> {
+            if (e.room != room || verdict[0] != null) return;
+            switch (e.type) {
+                case MatchJournal.SELECT: state.setPlayerSelection(e.player, e.payload); break;
+                case MatchJournal.READY: state.setReady(e.player, true); break;
+                case MatchJournal.NOTREADY: state.setReady(e.player, false); break;
+                case MatchJournal.DEPLOY: state.deploy(e.player, e.payload); break;
+                case MatchJournal.MATCH_START:
+                    state.startMatch();
+                    current[0]++;
+                    tick[0] = 0;
+                    break;
+                case MatchJournal.TICK:
+                    state.advanceTick();
+                    tick[0]++;
+                    if (current[0] == match && onTick != null) onTick.onTick(tick[0], state);
+                    break;
+                case MatchJournal.END:
+                    boolean same = state.isMatchOver() && state.computeResult().equals(e.payload);
+                    if (current[0] == match) verdict[0] = same;
+                    state.resetToMenu();
+                    break;
+                default:
+                    break;
+            }
+        });
+        return verdict[0] != null && verdict[0];
+    }
+
+    public interface TickListener {
+        void onTick(int tick, GameState state);
+    }
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : ConfigLoader.get("journal.dir", "journal"));
+        List<File> segs = segments(dir, Long.parseLong(ConfigLoader.get("journal.run", "0").trim()));
+        if (segs.isEmpty()) {
+            System.out.println("no journal segments in " + dir.getAbsolutePath());
+            return;
+        }
+        if (args.length < 2) {
+            long[] counts = new long[MatchJournal.END + 1];
+            forEach(segs, e -> {
+                if (e.type > 0 && e.type < counts.length) counts[e.type]++;
+                if (e.type == MatchJournal.END) System.out.println("room " + e.room + ": match ended " + e.payload);
+            });
+            System.out.println(segs.size() + " segment(s), events by type " + Arrays.toString(counts));
+            return;
+        }
+        int room = Integer.parseInt(args[1]);
+        int match = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        boolean ok = replay(segs, room, match,
+                (tick, state) -> System.out.println("tick " + tick + ": " + state.serializeForClients()));
+        System.out.println(ok ? "replay matches recorded result" : "replay DIVERGED or match not finished");
+    }
+}
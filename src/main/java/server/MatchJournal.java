@@ -0,0 +1,211 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Журнал событий матчей: append-only, сегменты в memory-mapped файлах.
+ *
+ * Пишутся принятые команды игроков (SELECT / READY / NOTREADY / DEPLOY) и границы матча и тиков,
+ * этого достаточно, чтобы JournalReader воспроизвёл любой матч на свежем GameState.
+ *
+ * Файлы: {journal.dir}/match-{runId}-{NNNNN}.jrnl, runId — время старта сервера (id комнат
+ * начинаются заново в каждом запуске). Сегмент размером journal.segment.mb заполняется
+ * записями, потом открывается следующий.
+ *
+ * Запись: u16 длина тела | тело. Тело: тип(1) | комната(4) | игрок(1) | время ms(8) | payload UTF-8.
+ * Длину пишем последней, поэтому нулевая длина означает конец записанного (файл изначально в нулях),
+ * и недописанная при падении запись просто не видна читателю.
+ * На диск сегмент сбрасывается пачкой раз в journal.flush.ms фоновым потоком, а не на каждую запись.
+ *
+ * По умолчанию выключен (journal.enabled=false). Старые сегменты любых запусков удаляются при открытии
+ * нового: сверх journal.retain.mb суммарно и старше journal.retain.hours (0 — без ограничения).
+ *
+ * Замок один на процесс, append зовётся под замком комнаты. Под ним только копирование пары десятков
+ * байт в отображённую память, поэтому буферов по комнатам нет; сколько захватов пришлось ждать,
+ * видно по contended() (JournalBench печатает долю).
+ */
+public class MatchJournal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MatchJournal.class);
+    public static final byte MATCH_START = 1;
+    public static final byte SELECT = 2;
+    public static final byte READY = 3;
+    public static final byte NOTREADY = 4;
+    public static final byte DEPLOY = 5;
+    public static final byte TICK = 6;
+    public static final byte END = 7;
+
+    static final int HEADER = 2;
+    static final int BODY_FIXED = 1 + 4 + 1 + 8;
+    static final int MAX_PAYLOAD = 0xFFFF - BODY_FIXED;
+    // Самая длинная запись с терминатором (HEADER + 0xFFFF + HEADER) должна влезать в пустой сегмент
+    static final int MIN_SEGMENT = 128 * 1024;
+
+    private final File dir;
+    private final long runId;
+    private final int segmentBytes;
+    private final long retainBytes;
+    private final long retainMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private MappedByteBuffer segment;
+    private int segmentNo;
+    private volatile boolean dirty;
+    private boolean closed;
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+
+    public static MatchJournal open(File dir, int segmentBytes, long flushMillis) throws IOException {
+        return open(dir, segmentBytes, flushMillis, 0, 0);
+    }
+
+    /**
+     * Открывает первый сегмент и запускает фоновый сброс.
+     * retainBytes / retainMillis: предел для старых сегментов по размеру и возрасту, 0 — без предела.
+     */
+    public static MatchJournal open(File dir, int segmentBytes, long flushMillis, long retainBytes, long retainMillis) throws IOException {
+        MatchJournal journal = new MatchJournal(dir, segmentBytes, retainBytes, retainMillis);
+        journal.flusher.scheduleWithFixedDelay(journal::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        return journal;
+    }
+
+    private MatchJournal(File dir, int segmentBytes, long retainBytes, long retainMillis) throws IOException {
+        this.dir = dir;
+        this.runId = System.currentTimeMillis();
+        this.segmentBytes = Math.max(MIN_SEGMENT, segmentBytes);
+        this.retainBytes = retainBytes;
+        this.retainMillis = retainMillis;
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        openSegment();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-flush");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Журнал по config.properties или null, если journal.enabled=false или открыть не удалось. */
+    public static MatchJournal fromConfig() {
+        if (!Boolean.parseBoolean(ConfigLoader.get("journal.enabled", "false").trim())) return null;
+        try {
+            return open(new File(ConfigLoader.get("journal.dir", "journal")),
+                    ConfigLoader.getInt("journal.segment.mb", 64) * 1024 * 1024,
+                    ConfigLoader.getInt("journal.flush.ms", 50),
+                    ConfigLoader.getInt("journal.retain.mb", 1024) * 1024L * 1024,
+                    ConfigLoader.getInt("journal.retain.hours", 72) * 3_600_000L);
+        } catch (IOException e) {
+            log.error("cannot open journal, journal disabled", e);
+            return null;
+        }
+    }
+
+    static String segmentName(long runId, int n) {
+        return String.format("match-%d-%05d.jrnl", runId, n);
+    }
+
+    private void openSegment() throws IOException {
+        File f = new File(dir, segmentName(runId, segmentNo));
+        // Отображение живёт и после закрытия файла
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        prune(f);
+    }
+
+    /** Удаляет самые старые сегменты сверх лимитов; текущий не трогает. runId одной длины — имена сортируются по времени. */
+    private void prune(File current) {
+        if (retainBytes <= 0 && retainMillis <= 0) return;
+        File[] files = dir.listFiles((d, name) -> name.startsWith("match-") && name.endsWith(".jrnl"));
+        if (files == null) return;
+        Arrays.sort(files);
+        long total = 0;
+        for (File f : files) total += f.length();
+        long cutoff = retainMillis > 0 ? System.currentTimeMillis() - retainMillis : Long.MIN_VALUE;
+        for (File f : files) {
+            if (f.equals(current)) continue;
+            boolean overSize = retainBytes > 0 && total > retainBytes;
+            if (!overSize && f.lastModified() >= cutoff) continue;
+            long len = f.length();
+            if (f.delete()) total -= len;
+        }
+    }
+
+    public void append(byte type, int room, int player, String payload) {
+        byte[] data = payload == null || payload.isEmpty() ? null : payload.getBytes(StandardCharsets.UTF_8);
+        int payloadLen = data == null ? 0 : Math.min(data.length, MAX_PAYLOAD);
+        int body = BODY_FIXED + payloadLen;
+        long now = System.currentTimeMillis();
+        if (!lock.tryLock()) {
+            contended.increment();
+            lock.lock();
+        }
+        appends.increment();
+        try {
+            if (closed) return;
+            // +HEADER: после записи всегда остаётся место под нулевую длину-терминатор
+            if (segment.position() + HEADER + body + HEADER > segmentBytes) roll();
+            int start = segment.position();
+            segment.position(start + HEADER);
+            segment.put(type).putInt(room).put((byte) player).putLong(now);
+            if (payloadLen > 0) segment.put(data, 0, payloadLen);
+            segment.putShort(start, (short) body);
+            dirty = true;
+        } catch (IOException e) {
+            log.error("append failed, journal closed", e);
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Вызовов append и сколько из них ждали замок, занятый другим потоком. */
+    public long appends() { return appends.sum(); }
+    public long contended() { return contended.sum(); }
+
+    private void roll() throws IOException {
+        segment.force();
+        segmentNo++;
+        openSegment();
+    }
+
+    /** Групповой сброс: один force() на всё, что накопилось с прошлого раза. Пишущих не блокирует. */
+    void flush() {
+        if (!dirty) return;
+        MappedByteBuffer s;
+        lock.lock();
+        try {
+            if (closed) return;
+            dirty = false;
+            s = segment;
+        } finally {
+            lock.unlock();
+        }
+        s.force();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        lock.lock();
+        try {
+            if (closed) return;
+            segment.force();
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Histogram;
+import util.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+
+/**
+ * Очередь подбора соперников по рейтингу.
+ *
+ * Игроки раскладываются по корзинам шириной matchmaking.bucket.width очков рейтинга; внутри
+ * корзины — по времени входа. Фоновый проход (раз в matchmaking.interval.ms) сводит пары сначала
+ * внутри корзины, а ждущему дольше разрешает соседние корзины: радиус поиска растёт на одну корзину
+ * каждые matchmaking.widen.ms, но не больше matchmaking.widen.max. Проход стоит
+ * O(корзины × радиус + пары) и не зависит от длины очереди.
+ *
+ * Вход в очередь lock-free (inbox разбирает проход), корзины трогает только поток прохода.
+ * Пара забирается из очереди и отменяется (отключение) под общим замком claimLock — у RoomManager
+ * это seatLock, поэтому клиент либо уже сидит в комнате, либо ещё в очереди, третьего нет.
+ */
+public class Matchmaker<P> {
+    private static final Logger log = LoggerFactory.getLogger(Matchmaker.class);
+
+    private static final Histogram WAIT = Metrics.histogram("matchmaking_wait_seconds",
+            "Time from entering the matchmaking queue to being paired", Metrics.NANOS);
+    private static final Histogram GAP = Metrics.histogram("matchmaking_rating_gap",
+            "Rating difference within a matched pair", Metrics.UNITS);
+    private static final Histogram PASS = Metrics.histogram("matchmaking_pass_seconds",
+            "Duration of one matchmaking pass", Metrics.NANOS);
+    private static final Metrics.Counter MATCHES = Metrics.counter("matchmaking_matches_total",
+            "Pairs formed by the matchmaker");
+
+    private static final class Ticket<P> {
+        final P player;
+        final int rating;
+        final int bucket;
+        final long enqueuedNanos;
+        volatile boolean cancelled;
+
+        Ticket(P player, int rating, int bucket, long enqueuedNanos) {
+            this.player = player;
+            this.rating = rating;
+            this.bucket = bucket;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private final int bucketWidth;
+    private final int maxRating;
+    private final long widenNanos;
+    private final int widenMax;
+    private final Lock claimLock;
+    private final BiConsumer<P, P> onMatch;
+    private final Map<P, Ticket<P>> tickets = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Ticket<P>> inbox = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Ticket<P>>[] buckets;
+    private ScheduledFuture<?> task;
+
+    /**
+     * onMatch вызывается потоком прохода под claimLock, когда оба игрока уже сняты с очереди;
+     * он должен посадить их в комнату.
+     */
+    @SuppressWarnings("unchecked")
+    public Matchmaker(int bucketWidth, int maxRating, long widenMillis, int widenMax, Lock claimLock, BiConsumer<P, P> onMatch) {
+        this.bucketWidth = Math.max(1, bucketWidth);
+        this.maxRating = Math.max(0, maxRating);
+        this.widenNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, widenMillis));
+        this.widenMax = Math.max(0, widenMax);
+        this.claimLock = claimLock;
+        this.onMatch = onMatch;
+        this.buckets = (ArrayDeque<Ticket<P>>[]) new ArrayDeque<?>[this.maxRating / this.bucketWidth + 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new ArrayDeque<>();
+        Metrics.gauge("matchmaking_queued", "Players waiting in the matchmaking queue", tickets::size);
+    }
+
+    public static <P> Matchmaker<P> fromConfig(Lock claimLock, BiConsumer<P, P> onMatch) {
+        return new Matchmaker<>(ConfigLoader.getInt("matchmaking.bucket.width", 100),
+                ConfigLoader.getInt("matchmaking.rating.max", 4000),
+                ConfigLoader.getInt("matchmaking.widen.ms", 5000),
+                ConfigLoader.getInt("matchmaking.widen.max", 10),
+                claimLock, onMatch);
+    }
+
+    /** Запускает проходы на планировщике (проходы одного Matchmaker не пересекаются). */
+    public void start(ScheduledExecutorService scheduler, long intervalMillis) {
+        task = scheduler.scheduleWithFixedDelay(this::passSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (task != null) task.cancel(false);
+    }
+
+    /** Ставит игрока в очередь. false — он уже в ней. Из любого потока. */
+    public boolean enqueue(P player, int rating) {
+        int r = Math.max(0, Math.min(maxRating, rating));
+        Ticket<P> t = new Ticket<>(player, rating, r / bucketWidth, System.nanoTime());
+        if (tickets.putIfAbsent(player, t) != null) return false;
+        inbox.add(t);
+        return true;
+    }
+
+    /** Снимает игрока с очереди. Вызывать под claimLock. false — его там нет (уже в паре или не стоял). */
+    public boolean cancel(P player) {
+        Ticket<P> t = tickets.remove(player);
+        if (t == null) return false;
+        t.cancelled = true; // из корзины уберёт проход
+        return true;
+    }
+
+    public boolean isQueued(P player) { return tickets.containsKey(player); }
+
+    public int queued() { return tickets.size(); }
+
+    /** Кто сейчас ждёт пары (живое представление, только для чтения). */
+    public Set<P> queuedPlayers() { return Collections.unmodifiableSet(tickets.keySet()); }
+
+    private void passSafely() {
+        try {
+            pass();
+        } catch (RuntimeException e) {
+            log.error("matchmaking pass failed", e);
+        }
+    }
+
+    /** Один проход: разбирает inbox и сводит все возможные пары. Возвращает число пар. */
+    public int pass() {
+        long now = System.nanoTime();
+        Ticket<P> in;
+        while ((in = inbox.poll()) != null) {
+            if (!in.cancelled) buckets[in.bucket].add(in);
+        }
+        int pairs = 0;
+        for (int b = 0; b < buckets.length; b++) {
+            ArrayDeque<Ticket<P>> q = buckets[b];
+            while (true) {
+                Ticket<P> t = pollLive(q);
+                if (t == null) break;
+                Ticket<P> u = pollLive(q);
+                if (u == null) u = pollNearest(b, radius(t, now));
+                if (u == null) {
+                    q.addFirst(t); // ждёт дальше, пока радиус не вырастет
+                    break;
+                }
+                if (claim(t, u, now)) {
+                    pairs++;
+                } else {
+                    // Кто-то из двоих успел отключиться; оставшийся возвращается на своё место в очереди
+                    if (!u.cancelled) buckets[u.bucket].addFirst(u);
+                    if (!t.cancelled) q.addFirst(t);
+                }
+            }
+        }
+        PASS.record(System.nanoTime() - now);
+        return pairs;
+    }
+
+    private int radius(Ticket<P> t, long now) {
+        return (int) Math.min(widenMax, (now - t.enqueuedNanos) / widenNanos);
+    }
+
+    /** Ближайшая непустая корзина в пределах радиуса; из двух равноудалённых — с более старым игроком. */
+    private Ticket<P> pollNearest(int b, int radius) {
+        for (int d = 1; d <= radius; d++) {
+            Ticket<P> lo = b - d >= 0 ? peekLive(buckets[b - d]) : null;
+            Ticket<P> hi = b + d < buckets.length ? peekLive(buckets[b + d]) : null;
+            if (lo == null && hi == null) continue;
+            if (hi == null || lo != null && lo.enqueuedNanos <= hi.enqueuedNanos) return buckets[b - d].poll();
+            return buckets[b + d].poll();
+        }
+        return null;
+    }
+
+    private Ticket<P> peekLive(ArrayDeque<Ticket<P>> q) {
+        Ticket<P> t;
+        while ((t = q.peek()) != null && t.cancelled) q.poll();
+        return t;
+    }
+
+    private Ticket<P> pollLive(ArrayDeque<Ticket<P>> q) {
+        Ticket<P> t = peekLive(q);
+        if (t != null) q.poll();
+        return t;
+    }
+
+    private boolean claim(Ticket<P> t, Ticket<P> u, long now) {
+        claimLock.lock();
+        try {
+            if (!tickets.remove(t.player, t)) {
+                t.cancelled = true;
+                return false;
+            }
+            if (!tickets.remove(u.player, u)) {
+                u.cancelled = true;
+                tickets.put(t.player, t);
+                return false;
+            }
+            onMatch.accept(t.player, u.player);
+        } finally {
+            claimLock.unlock();
+        }
+        WAIT.record(now - t.enqueuedNanos);
+        WAIT.record(now - u.enqueuedNanos);
+        GAP.record(Math.abs(t.rating - u.rating));
+        MATCHES.inc();
+        return true;
+    }
+}
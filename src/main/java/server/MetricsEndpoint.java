@@ -0,0 +1,71 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Локальный HTTP-эндпоинт GET /metrics в текстовом формате Prometheus.
+ * Слушает только 127.0.0.1, порт metrics.port (по умолчанию 9404, 0 — выключен).
+ */
+public class MetricsEndpoint implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsEndpoint.class);
+    private final HttpServer http;
+
+    public MetricsEndpoint(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", this::handle);
+        http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        http.start();
+    }
+
+    /**
+     * null, если эндпоинт выключен в конфиге или порт занят: без метрик сервер работает,
+     * поэтому ошибка только пишется в лог.
+     */
+    public static MetricsEndpoint fromConfig() {
+        int port = ConfigLoader.getInt("metrics.port", 9404);
+        if (port <= 0) return null;
+        try {
+            return new MetricsEndpoint(port);
+        } catch (IOException e) {
+            log.warn("cannot listen on 127.0.0.1:{}, /metrics disabled", port, e);
+            return null;
+        }
+    }
+
+    public int port() { return http.getAddress().getPort(); }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!"GET".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+    }
+}
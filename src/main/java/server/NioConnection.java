@@ -0,0 +1,187 @@
+package server;
+
+import net.FrameDecoder;
+import net.Protocol;
+import net.ProtocolException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Неблокирующее подключение. Все операции с каналом выполняет только его NioEventLoop;
+ * send() из других потоков лишь кладёт байты в OutboundQueue и будит цикл (один раз на пачку),
+ * а цикл склеивает накопленное в один буфер и пишет его одним write.
+ */
+public class NioConnection implements Connection {
+    private static final Logger log = LoggerFactory.getLogger(NioConnection.class);
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final GameServer server;
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final OutboundQueue outbound = OutboundQueue.fromConfig();
+    private final ConnectionStats stats = new ConnectionStats();
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean overflowed;
+    // Дальше — только поток цикла
+    private final List<byte[]> batch = new ArrayList<>();
+    private ByteBuffer pending;
+    private int pendingMessages;
+    private SelectionKey key;
+    private volatile int playerIndex = -1;
+    private volatile Room room;
+    private volatile Protocol.Format format = Protocol.Format.TEXT;
+
+    NioConnection(SocketChannel channel, NioEventLoop loop, GameServer server) {
+        this.channel = channel;
+        this.loop = loop;
+        this.server = server;
+    }
+
+    @Override
+    public void attach(Room room, int playerIndex) {
+        this.room = room;
+        this.playerIndex = playerIndex;
+        // В очередь до INFO MATCH_START; уйдёт, как только канал зарегистрируется
+        if (playerIndex == Room.SPECTATOR) send("SPECTATE", String.valueOf(room.id));
+        else send("ASSIGN", String.valueOf(playerIndex));
+    }
+
+    @Override
+    public int playerIndex() { return playerIndex; }
+
+    @Override
+    public Room room() { return room; }
+
+    SocketChannel channel() { return channel; }
+
+    /** Вызывается циклом после регистрации канала в селекторе. */
+    void onRegistered(SelectionKey key) {
+        this.key = key;
+        flush();
+    }
+
+    @Override
+    public void send(String type, String payload) {
+        if (closed.get()) return;
+        sendEncoded(Protocol.encode(format, type, payload), "UPDATE".equals(type));
+    }
+
+    @Override
+    public Protocol.Format format() { return format; }
+
+    @Override
+    public void sendEncoded(byte[] frame, boolean update) {
+        if (closed.get()) return;
+        // Закрывать здесь нельзя: send() зовут под замком комнаты, а close() уходит в onDisconnect
+        if (!outbound.offer(frame, update)) overflowed = true;
+        if (flushRequested.compareAndSet(false, true)) loop.requestFlush(this);
+    }
+
+    @Override
+    public OutboundQueue outbound() { return outbound; }
+
+    @Override
+    public ConnectionStats stats() { return stats; }
+
+    /** Чтение на потоке цикла: pooled-буфер берётся только на время read(). */
+    void onReadable(BufferPool pool) {
+        ByteBuffer buf = pool.acquire();
+        try {
+            int n = channel.read(buf);
+            if (n < 0) {
+                close();
+                return;
+            }
+            stats.receivedBytes(n);
+            buf.flip();
+            decoder.decode(buf, this::onMessage);
+        } catch (ProtocolException e) {
+            // Битый кадр — поток дальше не разобрать
+            log.warn("closing client {} after a bad frame", channel.socket().getRemoteSocketAddress(), e);
+            close();
+        } catch (IOException e) {
+            log.info("client disconnected: {}", e.toString());
+            close();
+        } catch (RuntimeException e) {
+            // Ошибка в обработке сообщения закрывает только это соединение, а не цикл с остальными
+            log.error("closing client {} after error", channel.socket().getRemoteSocketAddress(), e);
+            close();
+        } finally {
+            pool.release(buf);
+        }
+    }
+
+    private void onMessage(Protocol.Parsed msg) {
+        stats.receivedMessage();
+        if ("HELLO".equals(msg.type)) {
+            // Ответ уходит ещё в старом формате, всё после него — в согласованном
+            Protocol.Format agreed = Protocol.negotiate(msg.payload);
+            send("HELLO", Protocol.helloPayload(agreed));
+            format = agreed;
+            return;
+        }
+        server.handleClientMessage(this, msg);
+    }
+
+    /** Пишет сколько получится; если сокет забит — ждём OP_WRITE. */
+    void flush() {
+        flushRequested.set(false);
+        if (closed.get() || key == null) return;
+        if (overflowed) {
+            log.warn("client too slow, disconnecting: {}", channel.socket().getRemoteSocketAddress());
+            close();
+            return;
+        }
+        try {
+            while (true) {
+                if (pending == null || !pending.hasRemaining()) {
+                    batch.clear();
+                    if (outbound.drainTo(batch) == 0) {
+                        pending = null;
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    pending = join(batch);
+                    pendingMessages = batch.size();
+                }
+                stats.sent(0, channel.write(pending));
+                if (!pending.hasRemaining()) stats.sent(pendingMessages, 0);
+                if (pending.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private static ByteBuffer join(List<byte[]> frames) {
+        if (frames.size() == 1) return ByteBuffer.wrap(frames.get(0));
+        int total = 0;
+        for (byte[] f : frames) total += f.length;
+        ByteBuffer b = ByteBuffer.allocate(total);
+        for (byte[] f : frames) b.put(f);
+        return b.flip();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        if (key != null) key.cancel();
+        try { channel.close(); } catch (IOException ignored) {}
+        outbound.close();
+        server.onDisconnect(this);
+    }
+
+    @Override
+    public boolean isClosed() { return closed.get(); }
+}
@@ -0,0 +1,104 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Один поток с селектором, обслуживающий множество NioConnection.
+ * Регистрация новых каналов и запросы на запись приходят через очереди и wakeup().
+ */
+public class NioEventLoop implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(NioEventLoop.class);
+    private final Selector selector;
+    private final BufferPool pool;
+    private final ConcurrentLinkedQueue<NioConnection> pendingRegister = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<NioConnection> pendingFlush = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    public NioEventLoop(BufferPool pool) throws IOException {
+        this.selector = Selector.open();
+        this.pool = pool;
+    }
+
+    void register(NioConnection c) {
+        pendingRegister.offer(c);
+        selector.wakeup();
+        // Цикл мог упасть, пока канал шёл сюда: тогда очередь регистрации уже никто не разберёт
+        if (!running) {
+            NioConnection stale;
+            while ((stale = pendingRegister.poll()) != null) stale.close();
+        }
+    }
+
+    void requestFlush(NioConnection c) {
+        pendingFlush.offer(c);
+        selector.wakeup();
+    }
+
+    /** false, когда цикл остановлен или упал: новые каналы ему отдавать нельзя. */
+    boolean isRunning() { return running; }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                NioConnection c;
+                while ((c = pendingRegister.poll()) != null) {
+                    try {
+                        c.channel().configureBlocking(false);
+                        SelectionKey key = c.channel().register(selector, SelectionKey.OP_READ, c);
+                        c.onRegistered(key);
+                    } catch (IOException e) {
+                        c.close();
+                    }
+                }
+                while ((c = pendingFlush.poll()) != null) {
+                    try {
+                        c.flush();
+                    } catch (RuntimeException e) {
+                        log.error("closing connection after error", e);
+                        c.close();
+                    }
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    NioConnection conn = (NioConnection) key.attachment();
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isReadable()) conn.onReadable(pool);
+                        if (key.isValid() && key.isWritable()) conn.flush();
+                    } catch (RuntimeException e) {
+                        // Сбой одного соединения не должен останавливать цикл и закрывать всех остальных
+                        log.error("closing connection after error", e);
+                        conn.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("event loop stopped", e);
+        } finally {
+            running = false;
+            NioConnection c;
+            while ((c = pendingRegister.poll()) != null) c.close();
+            for (SelectionKey key : new ArrayList<>(selector.keys())) ((NioConnection) key.attachment()).close();
+            try { selector.close(); } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * NIO-транспорт: accept в вызывающем потоке, чтение/запись — в нескольких NioEventLoop.
+ * Поток на клиента не создаётся, буферы чтения общие (BufferPool).
+ */
+public class NioTransport {
+    private static final Logger log = LoggerFactory.getLogger(NioTransport.class);
+    public static final int READ_BUFFER_SIZE = 4096;
+
+    private final GameServer server;
+    private final ServerSocketChannel serverChannel;
+    private final NioEventLoop[] loops;
+    private int next = 0;
+
+    public NioTransport(GameServer server, int port, int loopCount) throws IOException {
+        this.server = server;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        BufferPool pool = new BufferPool(READ_BUFFER_SIZE, loopCount * 4);
+        loops = new NioEventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new NioEventLoop(pool);
+            Thread t = new Thread(loops[i], "nio-loop-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /** Блокирующий цикл приёма; новые каналы раздаются циклам по кругу. */
+    public void serve() throws IOException {
+        while (serverChannel.isOpen()) {
+            SocketChannel ch;
+            try {
+                ch = serverChannel.accept();
+            } catch (IOException e) {
+                if (!serverChannel.isOpen()) break;
+                throw e;
+            }
+            NioEventLoop loop = nextLoop();
+            if (loop == null) {
+                log.error("no live event loops, rejecting {}", ch.getRemoteAddress());
+                ch.close();
+                continue;
+            }
+            NioConnection c = new NioConnection(ch, loop, server);
+            Room room = server.rooms().admit(c);
+            loop.register(c);
+            if (room == null) log.info("client connected: {} -> matchmaking queue", ch.getRemoteAddress());
+            else log.info("client connected: {} -> room {} as player {}", ch.getRemoteAddress(), room.id, c.playerIndex());
+        }
+    }
+
+    /** Следующий живой цикл по кругу; упавшие пропускаются. */
+    private NioEventLoop nextLoop() {
+        for (int i = 0; i < loops.length; i++) {
+            NioEventLoop loop = loops[next];
+            next = (next + 1) % loops.length;
+            if (loop.isRunning()) return loop;
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        serverChannel.close();
+        for (NioEventLoop l : loops) l.shutdown();
+    }
+}
@@ -0,0 +1,160 @@
+package server;
+
+import util.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченная очередь исходящих кадров одного клиента.
+ *
+ * Комната только кладёт сюда уже закодированные байты и сразу идёт дальше, а в сокет пишет
+ * отдельный писатель подключения — забирает всё накопленное разом и делает один flush.
+ * Если клиент не успевает и очередь заполнена, срабатывает политика server.outbound.policy:
+ *   drop_updates — новые UPDATE выбрасываются, служебные сообщения вытесняют самый старый UPDATE;
+ *   latest       — все ждущие UPDATE выбрасываются, остаётся только самый свежий;
+ *   disconnect   — клиента отключают.
+ * После пропущенного UPDATE клиент видит разрыв seq и сам просит RESYNC (см. UpdateEncoder).
+ */
+public class OutboundQueue {
+    public enum Policy { DROP_UPDATES, LATEST, DISCONNECT }
+
+    private static final Metrics.Counter DROPPED = Metrics.counter("net_dropped_updates_total",
+            "UPDATE frames dropped because a client outbound queue was full");
+
+    private final int capacity;
+    private final Policy policy;
+    private final ArrayDeque<Frame> frames;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private long dropped;
+    private boolean closed;
+
+    public OutboundQueue(int capacity, Policy policy) {
+        this.capacity = Math.max(2, capacity);
+        this.policy = policy;
+        this.frames = new ArrayDeque<>(this.capacity);
+    }
+
+    public static OutboundQueue fromConfig() {
+        return new OutboundQueue(ConfigLoader.getInt("server.outbound.capacity", 64),
+                Policy.valueOf(ConfigLoader.get("server.outbound.policy", "drop_updates").trim().toUpperCase()));
+    }
+
+    /** Кладёт кадр в очередь. false — клиент безнадёжно отстал и его надо отключить. */
+    public boolean offer(byte[] bytes, boolean update) {
+        lock.lock();
+        try {
+            if (closed) return true;
+            if (frames.size() >= capacity) {
+                switch (policy) {
+                    case DISCONNECT:
+                        return false;
+                    case LATEST:
+                        dropUpdates(frames.size());
+                        break;
+                    case DROP_UPDATES:
+                        if (update) {
+                            dropped++;
+                            DROPPED.inc();
+                            return true;
+                        }
+                        dropUpdates(1);
+                        break;
+                }
+                // В очереди одни служебные сообщения — клиент не читает совсем
+                if (frames.size() >= capacity) return false;
+            }
+            frames.add(new Frame(bytes, update));
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dropUpdates(int max) {
+        for (Iterator<Frame> it = frames.iterator(); it.hasNext() && max > 0; ) {
+            if (it.next().update) {
+                it.remove();
+                dropped++;
+                DROPPED.inc();
+                max--;
+            }
+        }
+    }
+
+    /** Забирает всё накопленное, не дожидаясь. Возвращает число кадров. */
+    public int drainTo(List<byte[]> out) {
+        lock.lock();
+        try {
+            int n = frames.size();
+            Frame f;
+            while ((f = frames.poll()) != null) out.add(f.bytes);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ждёт хотя бы один кадр и забирает всё накопленное. false — очередь закрыта. */
+    public boolean awaitAndDrain(List<byte[]> out) throws InterruptedException {
+        lock.lock();
+        try {
+            while (frames.isEmpty() && !closed) notEmpty.await();
+            if (closed) return false;
+            drainTo(out);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            frames.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Сколько кадров ждёт отправки — по этому видно, какой клиент отстаёт. */
+    public int depth() {
+        lock.lock();
+        try {
+            return frames.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() { return capacity; }
+
+    public Policy policy() { return policy; }
+
+    /** Сколько UPDATE выброшено из-за переполнения за всё время. */
+    public long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Frame {
+        final byte[] bytes;
+        final boolean update;
+
+        Frame(byte[] bytes, boolean update) {
+            this.bytes = bytes;
+            this.update = update;
+        }
+    }
+}
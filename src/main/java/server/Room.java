@@ -0,0 +1,558 @@
+package server;
+
+import model.GameSnapshot;
+import model.GameState;
+import model.UpdateEncoder;
+import net.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Histogram;
+import util.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Комната: один матч на двух игроков со своим GameState, своими клиентами и своим замком.
+ * Комнаты друг с другом не пересекаются — каждая синхронизируется только на собственном lock.
+ * Потоки ввода-вывода замок не берут: команды идут через lock-free очередь и применяются тиком.
+ * Под замком тика идёт только симуляция: она публикует GameSnapshot, а кодирование UPDATE
+ * и рассылка делаются по снимку уже после освобождения замка.
+ *
+ * Зрители (SPECTATE) получают свой поток UPDATE: отдельный UpdateEncoder, кадр кодируется один раз
+ * на формат и общий массив байт кладётся в очереди всех зрителей. Поток можно задержать на
+ * server.spectator.delay.ms (например, против подсказок со стрима). Вошедший посреди матча зритель
+ * сразу получает полный кадр последнего отправленного зрителям состояния.
+ */
+public class Room {
+    private static final Logger log = LoggerFactory.getLogger(Room.class);
+
+    // Метрики тика общие для всех комнат: запись — несколько атомарных инкрементов, без аллокаций
+    private static final Histogram TICK_TIME = Metrics.histogram("tick_seconds", "Room tick duration", Metrics.NANOS);
+    private static final Histogram[] PHASE_TIME = new Histogram[GameState.TICK_PHASES.length];
+    private static final Histogram TICK_UNITS = Metrics.histogram("tick_units", "Units on the board per tick", Metrics.UNITS);
+    private static final Histogram SERIALIZE_TIME = Metrics.histogram("serialize_seconds", "UPDATE payload encoding time", Metrics.NANOS);
+    private static final Metrics.Counter DROPPED_COMMANDS = Metrics.counter("room_dropped_commands_total",
+            "Client commands dropped because the sender already had too many waiting for the tick");
+    private static final Histogram BROADCAST_TIME = Metrics.histogram("broadcast_seconds", "UPDATE fan-out time to room clients", Metrics.NANOS);
+
+    static {
+        for (int i = 0; i < PHASE_TIME.length; i++) {
+            PHASE_TIME[i] = Metrics.histogram("tick_phase_seconds{phase=\"" + GameState.TICK_PHASES[i] + "\"}",
+                    "GameState.advanceTick phase duration", Metrics.NANOS);
+        }
+    }
+
+    public enum Phase { LOBBY, IN_MATCH, FINISHED, EVICTED }
+
+    public static final long TICK_MILLIS = 3000;
+    /** playerIndex зрителя. */
+    public static final int SPECTATOR = -1;
+    /** Сколько команд разбирается за один проход, чтобы флуд одного клиента не растягивал тик. */
+    static final int MAX_COMMANDS_PER_DRAIN = 256;
+    /**
+     * Сколько команд одного места может ждать тика; лишние отбрасываются.
+     * Оба места вместе не больше MAX_COMMANDS_PER_DRAIN, поэтому тик разбирает очередь целиком
+     * и флуд одного игрока не отодвигает команды соперника на следующие тики.
+     */
+    static final int MAX_PENDING_PER_SEAT = 32;
+
+    /** Команда клиента с моментом получения на сервере (для метрики задержки ввода). */
+    private static final class Command {
+        final Connection from;
+        final int seat;
+        final Protocol.Parsed msg;
+        final long receivedNanos;
+
+        Command(Connection from, int seat, Protocol.Parsed msg, long receivedNanos) {
+            this.from = from;
+            this.seat = seat;
+            this.msg = msg;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    public final int id;
+    private final RoomManager manager;
+    private final GameState state = new GameState();
+    private final UpdateEncoder updates;
+    private final Connection[] seats = new Connection[2];
+    // Копия занятых мест для чтения без замка (рассылка UPDATE, метрики); пересобирается под lock
+    private volatile Connection[] audience = new Connection[0];
+    private final ReentrantLock lock = new ReentrantLock();
+    // Много производителей (потоки ввода-вывода), один потребитель (тот, кто держит lock)
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicIntegerArray pendingPerSeat = new AtomicIntegerArray(2);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private volatile Phase phase = Phase.LOBBY;
+    private volatile long finishedAt = 0;
+    private ScheduledFuture<?> tickTask;
+
+    // Зрители: всё ниже — только под spectatorLock (он берётся и из тика вне замка комнаты,
+    // и из отложенных задач, поэтому отдельный и короткий — только раскладка по очередям)
+    private final ReentrantLock spectatorLock = new ReentrantLock();
+    private final List<Connection> spectators = new ArrayList<>();
+    private final UpdateEncoder spectatorUpdates;
+    private final long spectatorDelayMillis;
+    private GameSnapshot spectatorLast; // последнее отправленное зрителям состояние идущего матча
+    private boolean spectatorInMatch; // поток зрителей между START_GAME и последним кадром матча
+    private volatile int spectatorCount;
+
+    Room(int id, RoomManager manager) {
+        this.id = id;
+        this.manager = manager;
+        this.updates = new UpdateEncoder(manager.updateMode(), manager.keyframeInterval());
+        this.spectatorUpdates = new UpdateEncoder(manager.updateMode(), manager.keyframeInterval());
+        this.spectatorDelayMillis = manager.spectatorDelayMillis();
+        state.setTag("room-" + id);
+    }
+
+    public Phase phase() { return phase; }
+    long finishedAt() { return finishedAt; }
+
+    /** Сажает клиента на свободное место. Возвращает индекс игрока или -1, если мест нет. */
+    int seat(Connection h) {
+        lock.lock();
+        try {
+            if (phase != Phase.LOBBY) return -1;
+            for (int i = 0; i < seats.length; i++) {
+                if (seats[i] == null) {
+                    seats[i] = h;
+                    updateAudience();
+                    h.attach(this, i);
+                    return i;
+                }
+            }
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isFull() {
+        lock.lock();
+        try {
+            return seats[0] != null && seats[1] != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Вызывается, когда оба места заняты. */
+    void onFilled() {
+        broadcast("INFO", "MATCH_START");
+    }
+
+    public void broadcast(String type, String payload) {
+        lock.lock();
+        try {
+            for (Connection c : seats) if (c != null) c.send(type, payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Текущие подключения комнаты (для наблюдения за очередями). Без замка. */
+    public List<Connection> connections() {
+        return List.of(audience);
+    }
+
+    /** Только под lock. */
+    private void updateAudience() {
+        List<Connection> out = new ArrayList<>(seats.length);
+        for (Connection c : seats) if (c != null) out.add(c);
+        audience = out.toArray(new Connection[0]);
+    }
+
+    /** Последний опубликованный снимок матча или null. Без замка. */
+    public GameSnapshot snapshot() { return state.published(); }
+
+    public void sendTo(int playerIndex, String type, String payload) {
+        lock.lock();
+        try {
+            if (playerIndex >= 0 && playerIndex < seats.length && seats[playerIndex] != null)
+                seats[playerIndex].send(type, payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Вызывается потоком ввода-вывода: команда только кладётся в очередь, замок комнаты не берётся.
+     * Во время матча очередь разбирает тик в самом его начале, вне матча — разовая задача на пуле тиков.
+     */
+    public void handleMessage(Connection from, Protocol.Parsed p) {
+        if (p == null || phase == Phase.EVICTED) return;
+        if (from.playerIndex() == SPECTATOR) {
+            // Зритель может только попросить полный кадр; остальное от него не принимается
+            if ("RESYNC".equals(p.type)) resyncSpectator(from);
+            return;
+        }
+        int seat = from.playerIndex();
+        if (seat < 0 || seat >= seats.length) return;
+        if (pendingPerSeat.incrementAndGet(seat) > MAX_PENDING_PER_SEAT) {
+            pendingPerSeat.decrementAndGet(seat);
+            // Молча: ответ на каждую лишнюю команду забил бы исходящую очередь флудера,
+            // а предсказанный юнит клиент и так снимает после двух UPDATE без эха
+            DROPPED_COMMANDS.inc();
+            return;
+        }
+        commands.offer(new Command(from, seat, p, System.nanoTime()));
+        if (phase != Phase.IN_MATCH) scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) manager.ticks().execute(this::drainOutsideMatch);
+    }
+
+    private void drainOutsideMatch() {
+        drainScheduled.set(false);
+        lock.lock();
+        try {
+            // Матч мог начаться, пока задача ждала в пуле — тогда команды разберёт тик
+            if (phase != Phase.IN_MATCH) {
+                drainCommands();
+                // Пачка ограничена MAX_COMMANDS_PER_DRAIN — остаток разберёт следующая задача
+                if (phase != Phase.IN_MATCH && phase != Phase.EVICTED && !commands.isEmpty()) scheduleDrain();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Применяет накопленные команды по порядку поступления. Только под lock. */
+    private void drainCommands() {
+        long now = System.nanoTime();
+        Command c;
+        for (int n = 0; n < MAX_COMMANDS_PER_DRAIN && (c = commands.poll()) != null; n++) {
+            pendingPerSeat.decrementAndGet(c.seat);
+            if (phase == Phase.EVICTED) {
+                clearCommands();
+                return;
+            }
+            manager.recordInputLatency(now - c.receivedNanos);
+            apply(c.from, c.msg);
+        }
+    }
+
+    private void clearCommands() {
+        commands.clear();
+        for (int i = 0; i < seats.length; i++) pendingPerSeat.set(i, 0);
+    }
+
+    private void apply(Connection from, Protocol.Parsed p) {
+        int player = from.playerIndex();
+        if (player < 0 || player >= seats.length || seats[player] != from) return; // уже отключился
+        switch (p.type) {
+            case "SELECT":
+                record(MatchJournal.SELECT, player, p.payload);
+                state.setPlayerSelection(player, p.payload);
+                broadcast("SELECT", player + ":" + p.payload);
+                break;
+            case "READY":
+                record(MatchJournal.READY, player, null);
+                state.setReady(player, true);
+                broadcast("READY", String.valueOf(player));
+                // Из FINISHED тоже можно стартовать — это реванш в той же комнате
+                if (state.bothReady() && isFull()) startMatch();
+                break;
+            case "NOTREADY":
+                record(MatchJournal.NOTREADY, player, null);
+                state.setReady(player, false);
+                broadcast("NOTREADY", String.valueOf(player));
+                break;
+            case "DEPLOY": {
+                // "cardId,localRow,col[,seq]": seq — номер попытки у клиента, он возвращается в эхе или REJECT,
+                // чтобы клиент подтвердил или откатил свой предсказанный юнит
+                String[] f = p.payload.split(",", 4);
+                String deploy = f.length == 4 ? f[0] + "," + f[1] + "," + f[2] : p.payload;
+                String seq = f.length == 4 ? f[3] : null;
+                // Эхо и запись в журнал — только для принятых (хватило эликсира, клетка свободна)
+                if (state.deploy(player, deploy)) {
+                    record(MatchJournal.DEPLOY, player, deploy);
+                    broadcast("DEPLOY", player + ":" + p.payload);
+                } else if (seq != null) {
+                    from.send("REJECT", seq);
+                }
+                break;
+            }
+            case "RESYNC":
+                // Клиент потерял базу для дельт — следующий UPDATE будет полным кадром
+                updates.requestKeyframe();
+                break;
+            default:
+                log.warn("[room-{}] unknown message: {}", id, p.type);
+        }
+    }
+
+    private void startMatch() {
+        record(MatchJournal.MATCH_START, -1, null);
+        state.startMatch();
+        updates.requestKeyframe();
+        phase = Phase.IN_MATCH;
+        broadcast("START_GAME", "");
+        toSpectators(this::spectatorsMatchStart);
+        ScheduledExecutorService ticks = manager.ticks();
+        tickTask = ticks.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    void tick() {
+        GameSnapshot snap;
+        long t0;
+        lock.lock();
+        try {
+            if (phase != Phase.IN_MATCH || !state.inMatch()) return;
+            // Команды, пришедшие с прошлого тика, применяются до шага симуляции
+            drainCommands();
+            if (phase != Phase.IN_MATCH) return;
+            t0 = System.nanoTime();
+            record(MatchJournal.TICK, -1, null);
+            state.advanceTick();
+            snap = state.publish();
+            for (int i = 0; i < PHASE_TIME.length; i++) PHASE_TIME[i].record(state.tickPhaseNanos(i));
+            TICK_UNITS.record(snap.size());
+            if (snap.matchOver) {
+                // Последний тик целиком под замком: UPDATE и END должны уйти раньше, чем реванш
+                // (его READY разбирается вне матча сразу после освобождения замка)
+                sendUpdate(snap, t0);
+                GameSnapshot last = snap;
+                toSpectators(() -> spectatorsUpdate(last));
+                finishMatch(snap);
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.error("[room-{}] tick failed", id, e);
+            return;
+        } finally {
+            lock.unlock();
+        }
+        // Следующий тик этой комнаты не начнётся, пока не закончится этот (scheduleAtFixedRate),
+        // так что UpdateEncoder по-прежнему используется одним потоком
+        try {
+            sendUpdate(snap, t0);
+            GameSnapshot published = snap;
+            toSpectators(() -> spectatorsUpdate(published));
+        } catch (RuntimeException e) {
+            log.error("[room-{}] update fan-out failed", id, e);
+        }
+    }
+
+    private void sendUpdate(GameSnapshot snap, long t0) {
+        long t1 = System.nanoTime();
+        EncodedMessage update = new EncodedMessage("UPDATE", updates.encode(snap));
+        long t2 = System.nanoTime();
+        for (Connection c : audience) update.sendTo(c);
+        long t3 = System.nanoTime();
+        SERIALIZE_TIME.record(t2 - t1);
+        BROADCAST_TIME.record(t3 - t2);
+        TICK_TIME.record(t3 - t0);
+    }
+
+    /** Только под lock. */
+    private void finishMatch(GameSnapshot snap) {
+        String result = snap.result();
+        record(MatchJournal.END, -1, result);
+        broadcast("END", result);
+        // Только в очередь MatchWriter; если оба вошли (LOGIN), матч идёт в рейтинг
+        manager.db().saveResult(manager.profileOf(seats[0]), manager.profileOf(seats[1]),
+                snap.towerDamage(0), snap.towerDamage(1));
+        state.resetToMenu();
+        cancelTick();
+        // Комната остаётся живой для реванша, но после простоя её заберёт RoomManager
+        phase = Phase.FINISHED;
+        finishedAt = System.currentTimeMillis();
+        // Пришедшее после последнего тика (например READY на реванш) разберём уже вне матча
+        if (!commands.isEmpty()) scheduleDrain();
+    }
+
+    void onDisconnect(Connection h) {
+        if (h.playerIndex() == SPECTATOR) {
+            removeSpectator(h);
+            return;
+        }
+        lock.lock();
+        try {
+            if (phase == Phase.EVICTED) return;
+            int idx = h.playerIndex();
+            if (idx >= 0 && idx < seats.length && seats[idx] == h) seats[idx] = null;
+            updateAudience();
+            // Комната без одного из игроков больше не нужна — сообщаем второму и освобождаем
+            for (Connection c : seats) {
+                if (c != null) c.send("INFO", "OPPONENT_LEFT");
+            }
+        } finally {
+            lock.unlock();
+        }
+        manager.evict(this);
+    }
+
+    /** Освобождает комнату: останавливает тики и закрывает оставшихся клиентов. */
+    void evict() {
+        lock.lock();
+        try {
+            if (phase == Phase.EVICTED) return;
+            phase = Phase.EVICTED;
+            clearCommands();
+            cancelTick();
+            state.resetToMenu();
+            for (int i = 0; i < seats.length; i++) {
+                if (seats[i] != null) {
+                    seats[i].close();
+                    seats[i] = null;
+                }
+            }
+            updateAudience();
+        } finally {
+            lock.unlock();
+        }
+        List<Connection> watching;
+        spectatorLock.lock();
+        try {
+            watching = new ArrayList<>(spectators);
+            spectators.clear();
+            spectatorCount = 0;
+            spectatorLast = null;
+            spectatorInMatch = false;
+        } finally {
+            spectatorLock.unlock();
+        }
+        // close() может сразу же позвать onDisconnect, поэтому вне spectatorLock
+        for (Connection c : watching) c.close();
+    }
+
+    /**
+     * Освобождает место игрока в лобби (клиент ушёл в зрители другой комнаты).
+     * Во время матча место не отдаётся. Возвращает false, если освободить нельзя.
+     */
+    boolean release(Connection c) {
+        if (c.playerIndex() == SPECTATOR) {
+            removeSpectator(c);
+            return true;
+        }
+        lock.lock();
+        try {
+            int idx = c.playerIndex();
+            if (phase != Phase.LOBBY || idx < 0 || idx >= seats.length || seats[idx] != c) return false;
+            seats[idx] = null;
+            state.setReady(idx, false);
+            updateAudience();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return audience.length == 0;
+    }
+
+    // ---- зрители ----
+
+    public int spectatorCount() { return spectatorCount; }
+
+    /**
+     * Добавляет зрителя; посреди матча он сразу получает START_GAME и полный кадр, если кадр уже был.
+     * До первого кадра START_GAME уходит всё равно: ближайший кадр зрителям после старта — полный.
+     */
+    void addSpectator(Connection c) {
+        spectatorLock.lock();
+        try {
+            if (phase == Phase.EVICTED) {
+                c.send("INFO", "NO_MATCH");
+                return;
+            }
+            spectators.add(c);
+            spectatorCount = spectators.size();
+            c.attach(this, SPECTATOR);
+            if (spectatorInMatch) c.send("START_GAME", "");
+            if (spectatorLast != null) c.send("UPDATE", spectatorUpdates.keyframe(spectatorLast));
+        } finally {
+            spectatorLock.unlock();
+        }
+    }
+
+    private void removeSpectator(Connection c) {
+        spectatorLock.lock();
+        try {
+            spectators.remove(c);
+            spectatorCount = spectators.size();
+        } finally {
+            spectatorLock.unlock();
+        }
+    }
+
+    private void resyncSpectator(Connection c) {
+        spectatorLock.lock();
+        try {
+            if (spectatorLast != null && spectators.contains(c)) c.send("UPDATE", spectatorUpdates.keyframe(spectatorLast));
+        } finally {
+            spectatorLock.unlock();
+        }
+    }
+
+    /** Событие потока зрителей: сразу или через server.spectator.delay.ms, в том же порядке. */
+    private void toSpectators(Runnable event) {
+        if (spectatorDelayMillis <= 0) {
+            event.run();
+            return;
+        }
+        manager.ticks().schedule(event, spectatorDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void spectatorsMatchStart() {
+        spectatorLock.lock();
+        try {
+            spectatorLast = null;
+            spectatorUpdates.requestKeyframe();
+            if (phase == Phase.EVICTED) return;
+            spectatorInMatch = true;
+            if (spectators.isEmpty()) return;
+            EncodedMessage start = new EncodedMessage("START_GAME", "");
+            for (Connection c : spectators) start.sendTo(c);
+        } finally {
+            spectatorLock.unlock();
+        }
+    }
+
+    private void spectatorsUpdate(GameSnapshot snap) {
+        spectatorLock.lock();
+        try {
+            if (phase == Phase.EVICTED) return;
+            spectatorLast = snap.matchOver ? null : snap;
+            if (snap.matchOver) spectatorInMatch = false;
+            if (spectators.isEmpty()) {
+                // Никто не смотрит — не кодируем; первый же кадр для новых зрителей будет полным
+                spectatorUpdates.requestKeyframe();
+                return;
+            }
+            EncodedMessage update = new EncodedMessage("UPDATE", spectatorUpdates.encode(snap));
+            for (Connection c : spectators) update.sendTo(c);
+            if (snap.matchOver) {
+                EncodedMessage end = new EncodedMessage("END", snap.result());
+                for (Connection c : spectators) end.sendTo(c);
+            }
+        } finally {
+            spectatorLock.unlock();
+        }
+    }
+
+    /** Запись в журнал матчей (вызывается под lock, поэтому порядок совпадает с порядком применения). */
+    private void record(byte type, int player, String payload) {
+        MatchJournal journal = manager.journal();
+        if (journal != null) journal.append(type, id, player, payload);
+    }
+
+    private void cancelTick() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+    }
+}
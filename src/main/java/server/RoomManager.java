@@ -0,0 +1,460 @@
+package server;
+
+import db.DatabaseManager;
+import db.MatchHistory;
+import db.PlayerProfile;
+import db.PlayerStore;
+import model.UpdateEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Histogram;
+import util.Metrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Держит все комнаты сервера: рассаживает новых клиентов,
+ * делит между комнатами общий пул тиков и забирает завершённые комнаты.
+ *
+ * Рассадка — параметр server.matchmaking:
+ *   queue — клиент встаёт в очередь Matchmaker и попадает в новую комнату, когда ему подобран соперник
+ *           по рейтингу (пока он в очереди, комнаты у него нет и ASSIGN не приходит);
+ *   lobby — первые два подключившихся садятся в одно лобби, как раньше.
+ *
+ * Рейтинг для подбора — из профиля игрока (LOGIN:имя); до входа — matchmaking.rating.default.
+ */
+public class RoomManager {
+    private static final Logger log = LoggerFactory.getLogger(RoomManager.class);
+    /** Сколько FINISHED-комната может ждать реванша, прежде чем её освободят. */
+    public static final long FINISHED_TTL_MILLIS = 5 * 60 * 1000;
+
+    private final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ScheduledExecutorService ticks;
+    private final ExecutorService tasks;
+    private final DatabaseManager db;
+    private final MatchJournal journal = MatchJournal.fromConfig();
+    private final UpdateEncoder.Mode updateMode =
+            UpdateEncoder.Mode.valueOf(ConfigLoader.get("server.update", "delta").trim().toUpperCase());
+    private final int keyframeInterval = ConfigLoader.getInt("server.update.keyframe", 20);
+    private final long spectatorDelayMillis = ConfigLoader.getInt("server.spectator.delay.ms", 0);
+    // ReentrantLock, а не synchronized: под ним идёт запись в сокеты, и виртуальный поток не должен пиниться
+    private final ReentrantLock seatLock = new ReentrantLock();
+    private Room openLobby; // комната, в которой ещё есть свободное место (режим lobby)
+    private Matchmaker<Connection> matchmaker; // null в режиме lobby; задаётся в start() до приёма клиентов
+    private final Consumer<StringBuilder> clientsCollector;
+    private final int defaultRating = ConfigLoader.getInt("matchmaking.rating.default", PlayerStore.INITIAL_RATING);
+    // Вошедшие игроки; запись живёт, пока открыто соединение
+    private final Map<Connection, PlayerProfile> profiles = new ConcurrentHashMap<>();
+    // Задержка ввода: от получения команды потоком ввода-вывода до её применения в комнате
+    private static final Histogram INPUT_LATENCY = Metrics.histogram("input_latency_seconds",
+            "Time from command receipt to its application in the room", Metrics.NANOS);
+
+    public RoomManager(DatabaseManager db, ExecutionMode mode) {
+        this.db = db;
+        this.ticks = mode.newScheduler("room-tick", Runtime.getRuntime().availableProcessors());
+        this.tasks = mode.newTaskExecutor("room-task");
+        clientsCollector = this::collectClients;
+    }
+
+    /**
+     * Запускает фоновые задачи, метрики и подбор соперников. Вызывается один раз, до того как
+     * транспорт начнёт принимать клиентов.
+     */
+    public void start() {
+        ticks.scheduleAtFixedRate(this::reapFinished, 30, 30, TimeUnit.SECONDS);
+        ticks.scheduleAtFixedRate(this::reportLagging, 10, 10, TimeUnit.SECONDS);
+        Metrics.gauge("rooms", "Rooms alive", () -> rooms.size());
+        Metrics.gauge("matches_active", "Rooms in IN_MATCH", this::activeMatches);
+        Metrics.gauge("clients_connected", "Connected clients, including those waiting for a match", this::connectedClients);
+        Metrics.gauge("spectators", "Connected spectators", this::spectators);
+        Metrics.gauge("outbound_queue_depth_max", "Deepest client outbound queue", this::maxOutboundDepth);
+        Metrics.addCollector(clientsCollector);
+        if (ConfigLoader.get("server.matchmaking", "queue").trim().equalsIgnoreCase("queue")) {
+            matchmaker = Matchmaker.fromConfig(seatLock, this::createMatch);
+            matchmaker.start(ticks, ConfigLoader.getInt("matchmaking.interval.ms", 100));
+        }
+    }
+
+    ScheduledExecutorService ticks() { return ticks; }
+    /** Фоновые задачи комнат, чтобы не держать поток тика. */
+    ExecutorService tasks() { return tasks; }
+    DatabaseManager db() { return db; }
+    /** Журнал событий матчей; null, если выключен (journal.enabled=false). */
+    MatchJournal journal() { return journal; }
+    UpdateEncoder.Mode updateMode() { return updateMode; }
+    int keyframeInterval() { return keyframeInterval; }
+    long spectatorDelayMillis() { return spectatorDelayMillis; }
+
+    /**
+     * Новый клиент: в режиме queue встаёт в очередь подбора (возвращается null),
+     * в режиме lobby сразу садится в лобби.
+     */
+    public Room admit(Connection h) {
+        if (matchmaker == null) return seat(h);
+        matchmaker.enqueue(h, ratingOf(h));
+        h.send("INFO", "QUEUED");
+        return null;
+    }
+
+    /** Рейтинг для подбора соперника: на момент входа, пока игрок в этом подключении не перезайдёт. */
+    private int ratingOf(Connection h) {
+        PlayerProfile p = profiles.get(h);
+        return p != null ? p.rating : defaultRating;
+    }
+
+    /** Профиль вошедшего игрока или null. */
+    PlayerProfile profileOf(Connection h) {
+        return h == null ? null : profiles.get(h);
+    }
+
+    /**
+     * LOGIN:имя — находит или заводит игрока в БД (на фоновом потоке, не на потоке ввода-вывода),
+     * отвечает PROFILE:id,имя,рейтинг. Если клиент ещё в очереди подбора, он встаёт в неё заново
+     * уже со своим рейтингом (время ожидания при этом начинается заново).
+     */
+    void login(Connection c, String name) {
+        String n = name == null ? "" : name.trim();
+        if (!PlayerStore.isValidName(n)) {
+            c.send("INFO", "BAD_NAME");
+            return;
+        }
+        tasks.execute(() -> {
+            PlayerProfile p;
+            try {
+                p = db.players().login(n);
+            } catch (SQLException e) {
+                log.warn("login {} failed", n, e);
+                c.send("INFO", "LOGIN_FAILED");
+                return;
+            }
+            profiles.put(c, p);
+            // close() идёт раньше disconnected(): либо там запись уже увидят, либо здесь — закрытое соединение
+            if (c.isClosed()) {
+                profiles.remove(c);
+                return;
+            }
+            c.send("PROFILE", p.id + "," + p.name + "," + p.rating);
+            if (matchmaker == null) return;
+            seatLock.lock();
+            try {
+                if (matchmaker.cancel(c)) matchmaker.enqueue(c, p.rating);
+            } finally {
+                seatLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * HISTORY:курсор — страница последних матчей вошедшего игрока (на фоновом потоке).
+     * Пустой курсор — первая страница (из кэша MatchHistory для горячих игроков), иначе — курсор
+     * из прошлого ответа. Ответ HISTORY:матч;матч;...|курсор, матч — id,соперник,урон по себе,
+     * урон по сопернику,W/L/D,время в мс; курсора нет, если дальше матчей нет.
+     */
+    void history(Connection c, String cursor) {
+        PlayerProfile p = profiles.get(c);
+        if (p == null) {
+            c.send("INFO", "LOGIN_REQUIRED");
+            return;
+        }
+        MatchHistory.Cursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : MatchHistory.Cursor.parse(cursor.trim());
+        } catch (IllegalArgumentException e) {
+            c.send("INFO", "BAD_CURSOR");
+            return;
+        }
+        tasks.execute(() -> {
+            MatchHistory history = db.history();
+            MatchHistory.Page page;
+            try {
+                page = after == null ? history.recent(p.id) : history.recent(p.id, after, history.pageSize());
+            } catch (SQLException e) {
+                log.warn("history of {} failed", p.id, e);
+                c.send("INFO", "HISTORY_FAILED");
+                return;
+            }
+            c.send("HISTORY", historyPayload(p.id, page));
+        });
+    }
+
+    private static String historyPayload(long playerId, MatchHistory.Page page) {
+        StringBuilder sb = new StringBuilder();
+        for (MatchHistory.Match m : page.matches) {
+            boolean first = m.player1Id == playerId;
+            int own = first ? m.damage0 : m.damage1;
+            int other = first ? m.damage1 : m.damage0;
+            if (sb.length() > 0) sb.append(';');
+            sb.append(m.id).append(',').append(first ? m.player2Id : m.player1Id).append(',')
+                    .append(own).append(',').append(other).append(',')
+                    .append("DRAW".equals(m.result) ? 'D' : ("P1".equals(m.result) == first ? 'W' : 'L')).append(',')
+                    .append(m.playedAt.getTime());
+        }
+        sb.append('|');
+        if (page.next != null) sb.append(page.next);
+        return sb.toString();
+    }
+
+    /** Пара от Matchmaker: новая комната на двоих. Вызывается под seatLock. */
+    private void createMatch(Connection a, Connection b) {
+        Room room = new Room(nextId.getAndIncrement(), this);
+        rooms.put(room.id, room);
+        room.seat(a);
+        room.seat(b);
+        room.onFilled();
+    }
+
+    /** Снимает клиента с очереди подбора. false — он не в очереди. */
+    private boolean dequeue(Connection c) {
+        if (matchmaker == null) return false;
+        seatLock.lock();
+        try {
+            return matchmaker.cancel(c);
+        } finally {
+            seatLock.unlock();
+        }
+    }
+
+    /** Отключение клиента: из очереди подбора или из его комнаты. */
+    void disconnected(Connection c) {
+        profiles.remove(c);
+        if (dequeue(c)) return;
+        // Сажает в комнату только проход Matchmaker под seatLock, так что после dequeue комната уже видна
+        Room room = c.room();
+        if (room != null) room.onDisconnect(c);
+    }
+
+    public int queuedPlayers() { return matchmaker == null ? 0 : matchmaker.queued(); }
+
+    /** Сажает клиента в лобби с свободным местом, при необходимости создаёт новую комнату. */
+    public Room seat(Connection h) {
+        seatLock.lock();
+        try {
+            if (openLobby == null || openLobby.seat(h) < 0) {
+                openLobby = new Room(nextId.getAndIncrement(), this);
+                rooms.put(openLobby.id, openLobby);
+                openLobby.seat(h);
+            }
+            Room room = openLobby;
+            if (room.isFull()) {
+                openLobby = null;
+                room.onFilled();
+            }
+            return room;
+        } finally {
+            seatLock.unlock();
+        }
+    }
+
+    public void evict(Room room) {
+        seatLock.lock();
+        try {
+            if (openLobby == room) openLobby = null;
+        } finally {
+            seatLock.unlock();
+        }
+        rooms.remove(room.id);
+        room.evict();
+    }
+
+    /**
+     * SPECTATE[:roomId] — клиент становится зрителем комнаты roomId, а без номера — первого идущего матча.
+     * Место в лобби, на которое его посадили при подключении, освобождается; из матча уйти в зрители нельзя.
+     */
+    public void spectate(Connection c, String payload) {
+        Room target = null;
+        if (payload != null && !payload.isBlank()) {
+            try {
+                target = rooms.get(Integer.parseInt(payload.trim()));
+            } catch (NumberFormatException ignored) {
+            }
+        } else {
+            for (Room r : rooms.values()) {
+                if (r.phase() == Room.Phase.IN_MATCH) {
+                    target = r;
+                    break;
+                }
+            }
+        }
+        if (target == null || target.phase() == Room.Phase.EVICTED) {
+            c.send("INFO", "NO_MATCH");
+            return;
+        }
+        Room current = c.room();
+        if (current == target && c.playerIndex() == Room.SPECTATOR) return;
+        // Из очереди подбора — места ни в одной комнате у него нет (room() может помнить прошлую)
+        if (dequeue(c)) current = null;
+        if (current != null && !leave(current, c)) {
+            c.send("INFO", "SPECTATE_DENIED");
+            return;
+        }
+        target.addSpectator(c);
+    }
+
+    /** Снимает клиента с места в лобби или из зрителей; опустевшее лобби освобождает. */
+    private boolean leave(Room room, Connection c) {
+        boolean spectator = c.playerIndex() == Room.SPECTATOR;
+        seatLock.lock();
+        try {
+            if (!room.release(c)) return false;
+            if (spectator) return true;
+            if (!room.isEmpty() && (matchmaker != null || openLobby != null && openLobby != room)) {
+                // Оставшийся игрок ждал бы в комнате, куда больше никого не посадят, — пересаживаем
+                // (в режиме queue — обратно в очередь подбора)
+                for (Connection o : room.connections()) {
+                    room.release(o);
+                    admit(o);
+                }
+            }
+            if (room.isEmpty()) {
+                if (openLobby == room) openLobby = null;
+                rooms.remove(room.id);
+                room.evict();
+            } else if (openLobby == null) {
+                openLobby = room; // снова ждёт второго игрока
+            }
+            return true;
+        } finally {
+            seatLock.unlock();
+        }
+    }
+
+    private void reapFinished() {
+        long now = System.currentTimeMillis();
+        for (Room r : rooms.values()) {
+            if (r.phase() == Room.Phase.FINISHED && now - r.finishedAt() > FINISHED_TTL_MILLIS) {
+                log.info("evicting idle room {}", r.id);
+                evict(r);
+            }
+        }
+    }
+
+    void recordInputLatency(long nanos) {
+        INPUT_LATENCY.record(nanos);
+    }
+
+    public long commandsApplied() { return INPUT_LATENCY.count(); }
+
+    /** Средняя задержка ввода в микросекундах за всё время работы. */
+    public long avgInputLatencyMicros() {
+        long n = INPUT_LATENCY.count();
+        return n == 0 ? 0 : INPUT_LATENCY.sum() / n / 1000;
+    }
+
+    public long maxInputLatencyMicros() { return INPUT_LATENCY.max() / 1000; }
+
+    /** 99-й перцентиль задержки ввода в микросекундах. */
+    public long p99InputLatencyMicros() { return INPUT_LATENCY.percentile(0.99) / 1000; }
+
+    public int connectedClients() {
+        int n = queuedPlayers();
+        for (Room r : rooms.values()) n += r.connections().size();
+        return n;
+    }
+
+    /** Ждущие пары в очереди подбора: у них ещё нет комнаты. */
+    private Collection<Connection> queuedConnections() {
+        return matchmaker == null ? List.of() : matchmaker.queuedPlayers();
+    }
+
+    public int spectators() {
+        int n = 0;
+        for (Room r : rooms.values()) n += r.spectatorCount();
+        return n;
+    }
+
+    public int maxOutboundDepth() {
+        int max = 0;
+        for (Room r : rooms.values()) {
+            for (Connection c : r.connections()) max = Math.max(max, c.outbound().depth());
+        }
+        for (Connection c : queuedConnections()) max = Math.max(max, c.outbound().depth());
+        return max;
+    }
+
+    /** Метрики по каждому подключению: набор меток заранее неизвестен, поэтому собираются при scrape. */
+    private void collectClients(StringBuilder sb) {
+        String[][] families = {
+                { "client_sent_bytes_total", "counter", "Bytes sent to the client" },
+                { "client_sent_messages_total", "counter", "Messages sent to the client" },
+                { "client_received_bytes_total", "counter", "Bytes received from the client" },
+                { "client_received_messages_total", "counter", "Messages received from the client" },
+                { "client_outbound_depth", "gauge", "Frames waiting in the client outbound queue" },
+                { "client_dropped_updates_total", "counter", "UPDATE frames dropped for the client" },
+        };
+        List<String> labels = new ArrayList<>();
+        List<Connection> conns = new ArrayList<>();
+        for (Room r : rooms.values()) {
+            for (Connection c : r.connections()) {
+                labels.add("client=\"" + c.stats().id() + "\",room=\"" + r.id + "\",player=\"" + c.playerIndex() + "\"");
+                conns.add(c);
+            }
+        }
+        // Без комнаты: room и player пустые
+        for (Connection c : queuedConnections()) {
+            labels.add("client=\"" + c.stats().id() + "\",room=\"\",player=\"\"");
+            conns.add(c);
+        }
+        for (int f = 0; f < families.length; f++) {
+            String name = families[f][0];
+            sb.append("# HELP ").append(name).append(' ').append(families[f][2]).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(families[f][1]).append('\n');
+            for (int i = 0; i < conns.size(); i++) {
+                Connection c = conns.get(i);
+                ConnectionStats s = c.stats();
+                long v = switch (f) {
+                    case 0 -> s.bytesSent();
+                    case 1 -> s.messagesSent();
+                    case 2 -> s.bytesReceived();
+                    case 3 -> s.messagesReceived();
+                    case 4 -> c.outbound().depth();
+                    default -> c.outbound().dropped();
+                };
+                Metrics.sample(sb, name, labels.get(i), null, v);
+            }
+        }
+    }
+
+    /** Пишет в лог клиентов, у которых очередь исходящих заполнена больше чем наполовину. */
+    private void reportLagging() {
+        for (Room r : rooms.values()) {
+            for (Connection c : r.connections()) {
+                OutboundQueue q = c.outbound();
+                int depth = q.depth();
+                if (depth * 2 >= q.capacity()) {
+                    log.warn("room {} player {} is lagging: outbound {}/{}, dropped updates {} ({})",
+                            r.id, c.playerIndex(), depth, q.capacity(), q.dropped(), q.policy());
+                }
+            }
+        }
+    }
+
+    public Collection<Room> rooms() { return rooms.values(); }
+
+    public int activeMatches() {
+        int n = 0;
+        for (Room r : rooms.values()) if (r.phase() == Room.Phase.IN_MATCH) n++;
+        return n;
+    }
+
+    public void shutdown() {
+        Metrics.removeCollector(clientsCollector);
+        if (matchmaker != null) matchmaker.stop();
+        ticks.shutdownNow();
+        tasks.shutdown();
+        for (Room r : rooms.values()) evict(r);
+        if (journal != null) journal.close();
+        db.shutdown();
+    }
+}
@@ -0,0 +1,76 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/** Standard MBean поверх RoomManager и реестра Metrics. */
+public class ServerMetrics implements ServerMetricsMBean {
+    private static final Logger log = LoggerFactory.getLogger(ServerMetrics.class);
+    private static final String NAME = "clashroyale:type=Server";
+
+    private final RoomManager rooms;
+
+    public ServerMetrics(RoomManager rooms) {
+        this.rooms = rooms;
+    }
+
+    /** Регистрирует MBean в платформенном MBeanServer, заменяя прежний (например, после перезапуска в тестах). */
+    public static void register(RoomManager rooms) {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (mbs.isRegistered(name)) mbs.unregisterMBean(name);
+            mbs.registerMBean(new ServerMetrics(rooms), name);
+        } catch (JMException e) {
+            log.warn("JMX registration failed", e);
+        }
+    }
+
+    public static void unregister() {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (mbs.isRegistered(name)) mbs.unregisterMBean(name);
+        } catch (JMException ignored) {
+        }
+    }
+
+    @Override
+    public int getRooms() { return rooms.rooms().size(); }
+
+    @Override
+    public int getActiveMatches() { return rooms.activeMatches(); }
+
+    @Override
+    public int getConnectedClients() { return rooms.connectedClients(); }
+
+    @Override
+    public int getQueuedPlayers() { return rooms.queuedPlayers(); }
+
+    @Override
+    public int getMaxOutboundDepth() { return rooms.maxOutboundDepth(); }
+
+    @Override
+    public long getCommandsApplied() { return rooms.commandsApplied(); }
+
+    @Override
+    public long getAvgInputLatencyMicros() { return rooms.avgInputLatencyMicros(); }
+
+    @Override
+    public long getP99InputLatencyMicros() { return rooms.p99InputLatencyMicros(); }
+
+    @Override
+    public long getMaxInputLatencyMicros() { return rooms.maxInputLatencyMicros(); }
+
+    @Override
+    public int getPendingResults() { return rooms.db().matchWriter().pending(); }
+
+    @Override
+    public String scrape() { return Metrics.scrape(); }
+}
@@ -0,0 +1,27 @@
+package server;
+
+/** Основные показатели сервера для JMX (jconsole, VisualVM): clashroyale:type=Server. */
+public interface ServerMetricsMBean {
+    int getRooms();
+
+    int getActiveMatches();
+
+    int getConnectedClients();
+
+    int getQueuedPlayers();
+
+    int getMaxOutboundDepth();
+
+    long getCommandsApplied();
+
+    long getAvgInputLatencyMicros();
+
+    long getP99InputLatencyMicros();
+
+    long getMaxInputLatencyMicros();
+
+    int getPendingResults();
+
+    /** Всё то же, что отдаёт /metrics. */
+    String scrape();
+}
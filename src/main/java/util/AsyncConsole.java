@@ -0,0 +1,71 @@
+package util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная консоль: System.out/System.err (и логгер slf4j-simple, который пишет в них)
+ * только кладут готовые байты в ограниченную очередь, а в терминал их пишет отдельный поток.
+ * Если писатель не успевает, новые сообщения отбрасываются — поток тика никогда не ждёт консоль.
+ */
+public class AsyncConsole extends OutputStream {
+    public static final int QUEUE_CAPACITY = 8192;
+
+    private static volatile boolean installed = false;
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final OutputStream target;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private AsyncConsole(OutputStream target, String name) {
+        this.target = target;
+        Thread writer = new Thread(this::drainLoop, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Подменяет System.out и System.err; вызывать в main до первого лога. */
+    public static synchronized void install() {
+        if (installed) return;
+        installed = true;
+        System.setOut(new PrintStream(new AsyncConsole(System.out, "console-out"), true));
+        System.setErr(new PrintStream(new AsyncConsole(System.err, "console-err"), true));
+    }
+
+    public long dropped() { return dropped.get(); }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        byte[] copy = new byte[len];
+        System.arraycopy(b, off, copy, 0, len);
+        if (!queue.offer(copy)) dropped.incrementAndGet();
+    }
+
+    private void drainLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (byte[] b : batch) target.write(b);
+                long lost = dropped.getAndSet(0);
+                if (lost > 0) target.write(("[console] dropped " + lost + " writes\n").getBytes());
+                target.flush();
+                batch.clear();
+            }
+        } catch (InterruptedException | IOException ignored) {
+            // консоль закрыта или JVM завершается
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Общий реестр метрик процесса: счётчики (LongAdder), гейджи (функции) и гистограммы.
+ * Запись — без замков и аллокаций; чтение (scrape) собирает текст в формате Prometheus.
+ *
+ * Метрика заводится один раз в статическом поле того класса, который её пишет:
+ *   private static final Histogram TICK = Metrics.histogram("tick_seconds", "...", Metrics.NANOS);
+ * Метки задаются прямо в имени: "tick_phase_seconds{phase=\"plan\"}".
+ */
+public final class Metrics {
+    /** Масштаб гистограммы при выводе: наносекунды в секундах или значения как есть. */
+    public static final double NANOS = 1e-9;
+    public static final double UNITS = 1;
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final class Family {
+        final String type;
+        final String help;
+        final Map<String, Object> series = new TreeMap<>(); // метки -> Counter / LongSupplier / Histogram
+        double scale = 1;
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    /** Счётчик на LongAdder: при конкурентной записи потоки пишут в разные ячейки. */
+    public static final class Counter {
+        private final LongAdder adder = new LongAdder();
+
+        public void inc() { adder.increment(); }
+
+        public void add(long n) { adder.add(n); }
+
+        public long get() { return adder.sum(); }
+    }
+
+    private static final Map<String, Family> families = new TreeMap<>();
+    private static final List<Consumer<StringBuilder>> collectors = new CopyOnWriteArrayList<>();
+
+    private Metrics() {}
+
+    public static Counter counter(String name, String help) {
+        return register(name, "counter", help, new Counter(), 1);
+    }
+
+    public static void gauge(String name, String help, LongSupplier value) {
+        register(name, "gauge", help, value, 1);
+    }
+
+    public static Histogram histogram(String name, String help, double scale) {
+        return register(name, "summary", help, new Histogram(), scale);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized <T> T register(String name, String type, String help, T metric, double scale) {
+        int brace = name.indexOf('{');
+        String family = brace < 0 ? name : name.substring(0, brace);
+        String labels = brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+        Family f = families.computeIfAbsent(family, k -> new Family(type, help));
+        f.scale = scale;
+        // Гейдж при повторной регистрации заменяется (новый экземпляр источника), остальное переиспользуется
+        if (metric instanceof LongSupplier) {
+            f.series.put(labels, metric);
+            return metric;
+        }
+        Object existing = f.series.putIfAbsent(labels, metric);
+        return existing != null ? (T) existing : metric;
+    }
+
+    /**
+     * Дополнительные строки в выводе для метрик с заранее неизвестным набором меток
+     * (например, по каждому подключению). Коллектор сам пишет # HELP / # TYPE.
+     */
+    public static void addCollector(Consumer<StringBuilder> collector) {
+        collectors.add(collector);
+    }
+
+    /** Убирает коллектор, добавленный addCollector (тот же объект), например при остановке сервера. */
+    public static void removeCollector(Consumer<StringBuilder> collector) {
+        collectors.remove(collector);
+    }
+
+    /** Текстовый формат Prometheus (text/plain; version=0.0.4). */
+    public static String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        List<Map.Entry<String, Family>> snapshot;
+        synchronized (Metrics.class) {
+            snapshot = new ArrayList<>(families.entrySet());
+        }
+        for (Map.Entry<String, Family> e : snapshot) {
+            String name = e.getKey();
+            Family f = e.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(f.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(f.type).append('\n');
+            List<Map.Entry<String, Object>> series;
+            synchronized (Metrics.class) {
+                series = new ArrayList<>(f.series.entrySet());
+            }
+            for (Map.Entry<String, Object> s : series) {
+                String labels = s.getKey();
+                Object m = s.getValue();
+                if (m instanceof Counter c) {
+                    sample(sb, name, labels, null, c.get());
+                } else if (m instanceof LongSupplier g) {
+                    sample(sb, name, labels, null, g.getAsLong());
+                } else if (m instanceof Histogram h) {
+                    for (double q : QUANTILES) sample(sb, name, labels, "quantile=\"" + q + "\"", h.percentile(q) * f.scale);
+                    sample(sb, name + "_sum", labels, null, h.sum() * f.scale);
+                    sample(sb, name + "_count", labels, null, h.count());
+                }
+            }
+            if (f.type.equals("summary")) {
+                // Максимум — отдельным гейджем: в summary допустимы только квантили, _sum и _count
+                sb.append("# TYPE ").append(name).append("_max gauge\n");
+                for (Map.Entry<String, Object> s : series) {
+                    sample(sb, name + "_max", s.getKey(), null, ((Histogram) s.getValue()).max() * f.scale);
+                }
+            }
+        }
+        for (Consumer<StringBuilder> c : collectors) c.accept(sb);
+        return sb.toString();
+    }
+
+    public static void sample(StringBuilder sb, String name, String labels, String extra, double value) {
+        sb.append(name);
+        boolean hasLabels = !labels.isEmpty();
+        if (hasLabels || extra != null) {
+            sb.append('{').append(labels);
+            if (extra != null) sb.append(hasLabels ? "," : "").append(extra);
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) sb.append((long) value);
+        else sb.append(value);
+        sb.append('\n');
+    }
+}
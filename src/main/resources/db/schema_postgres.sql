@@ -1,7 +1,39 @@
+CREATE TABLE IF NOT EXISTS players (
+    id BIGSERIAL PRIMARY KEY,
+    name VARCHAR(32) NOT NULL UNIQUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_seen TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS ratings (
+    player_id BIGINT PRIMARY KEY REFERENCES players(id) ON DELETE CASCADE,
+    rating INTEGER NOT NULL DEFAULT 1000,
+    games INTEGER NOT NULL DEFAULT 0,
+    wins INTEGER NOT NULL DEFAULT 0,
+    losses INTEGER NOT NULL DEFAULT 0,
+    draws INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Загрузка лидерборда при старте: проход по индексу с LIMIT, без сортировки таблицы
+CREATE INDEX IF NOT EXISTS ratings_rating_idx ON ratings (rating DESC, player_id);
+
 CREATE TABLE IF NOT EXISTS matches (
     id SERIAL PRIMARY KEY,
+    player1_id BIGINT REFERENCES players(id),
+    player2_id BIGINT REFERENCES players(id),
     player1_damage INTEGER NOT NULL,
     player2_damage INTEGER NOT NULL,
     result VARCHAR(16) NOT NULL,
-    timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
+
+-- Базы, созданные до появления игроков
+ALTER TABLE matches ADD COLUMN IF NOT EXISTS player1_id BIGINT REFERENCES players(id);
+ALTER TABLE matches ADD COLUMN IF NOT EXISTS player2_id BIGINT REFERENCES players(id);
+
+-- История матчей (MatchHistory): keyset-страницы по игроку с любой стороны матча и по паре игроков
+CREATE INDEX IF NOT EXISTS matches_player1_history_idx ON matches (player1_id, timestamp DESC, id DESC);
+CREATE INDEX IF NOT EXISTS matches_player2_history_idx ON matches (player2_id, timestamp DESC, id DESC);
+CREATE INDEX IF NOT EXISTS matches_pair_history_idx ON matches
+    (LEAST(player1_id, player2_id), GREATEST(player1_id, player2_id), timestamp DESC, id DESC);
@@ -0,0 +1,118 @@
+package app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * UpdateParser до разбора вне FX-потока, как он был: LinkedHashMap юнитов и split по кадру.
+ * Эталон для UpdateParserReplayTest — не менять.
+ */
+class BaselineUpdateParser {
+    private static final Logger log = LoggerFactory.getLogger(BaselineUpdateParser.class);
+
+    enum Result {
+        /** Состояние обновлено. */
+        APPLIED,
+        /** Пропущен кадр: нужно отправить RESYNC. */
+        RESYNC,
+        /** Ждём полный кадр после RESYNC, дельта проигнорирована. */
+        WAITING,
+        /** Payload не разобран. */
+        BAD
+    }
+
+    // Юниты по uid; порядок вставки сохраняется для стабильной отрисовки
+    private final Map<Integer, UnitState> units = new LinkedHashMap<>();
+    private long lastUpdateSeq = -1;
+    private boolean resyncRequested = false;
+    private int elixir0 = 5, elixir1 = 5;
+    private int towerDamage0 = 0, towerDamage1 = 0;
+
+    Result apply(String pay) {
+        try {
+            boolean delta = pay.startsWith("K|") || pay.startsWith("D|");
+            String[] parts = delta ? pay.split("\\|", 8) : pay.split("\\|", 5);
+            int base = 0;
+            if (delta) {
+                boolean keyframe = parts[0].equals("K");
+                long seq = Long.parseLong(parts[1]);
+                if (!keyframe && seq != lastUpdateSeq + 1) {
+                    // Пропустили кадр — дельту не к чему применить, просим полный кадр и ждём его
+                    if (resyncRequested) return Result.WAITING;
+                    resyncRequested = true;
+                    return Result.RESYNC;
+                }
+                if (keyframe) resyncRequested = false;
+                lastUpdateSeq = seq;
+                base = 2;
+            }
+
+            if (parts.length >= base + 2) {
+                elixir0 = Integer.parseInt(parts[base]);
+                elixir1 = Integer.parseInt(parts[base + 1]);
+            }
+            if (parts.length >= base + 4) {
+                try { towerDamage0 = Integer.parseInt(parts[base + 2]); } catch (Exception ignored) { towerDamage0 = 0; }
+                try { towerDamage1 = Integer.parseInt(parts[base + 3]); } catch (Exception ignored) { towerDamage1 = 0; }
+            }
+            if (!delta || parts[0].equals("K")) units.clear();
+            if (parts.length > base + 4) {
+                String unitsPart = parts[base + 4];
+                if (unitsPart != null && !unitsPart.isBlank()) {
+                    int synthetic = 0;
+                    for (String u : unitsPart.split(";")) {
+                        if (u.isBlank()) continue;
+                        UnitState us = parseUnitEntry(u, delta);
+                        if (us == null) continue;
+                        // В старом формате uid нет — ключом служит порядковый номер в кадре
+                        units.put(delta ? us.uid : synthetic++, us);
+                    }
+                }
+            }
+            if (delta && parts.length > base + 5) {
+                for (String removed : parts[base + 5].split(";")) {
+                    if (!removed.isBlank()) units.remove(Integer.parseInt(removed));
+                }
+            }
+            return Result.APPLIED;
+        } catch (Exception ex) {
+            log.warn("bad UPDATE payload: {}", pay, ex);
+            return Result.BAD;
+        }
+    }
+
+    /** "uid,owner,card,row,col,hp" (дельта-формат) или "owner,card,row,col,hp" (старый). */
+    private static UnitState parseUnitEntry(String entry, boolean withUid) {
+        String[] f = entry.split(",");
+        int o = withUid ? 1 : 0;
+        if (f.length < o + 5) return null;
+        try {
+            int uid = withUid ? Integer.parseInt(f[0]) : 0;
+            int owner = Integer.parseInt(f[o]);
+            int cardId = Integer.parseInt(f[o + 1]);
+            int row = Integer.parseInt(f[o + 2]);
+            int col = Integer.parseInt(f[o + 3]);
+            int hp = Integer.parseInt(f[o + 4]);
+            return new UnitState(uid, owner, cardId, row, col, hp);
+        } catch (NumberFormatException nfe) {
+            log.warn("bad unit entry: {}", entry);
+            return null;
+        }
+    }
+
+    /** Новый матч: забываем поле и номер последнего кадра. */
+    void reset() {
+        units.clear();
+        lastUpdateSeq = -1;
+        resyncRequested = false;
+        towerDamage0 = 0;
+        towerDamage1 = 0;
+    }
+
+    Map<Integer, UnitState> units() { return units; }
+    int elixir(int player) { return player == 0 ? elixir0 : elixir1; }
+    int towerDamage(int player) { return player == 0 ? towerDamage0 : towerDamage1; }
+}
@@ -0,0 +1,54 @@
+package app;
+
+import model.GameState;
+import model.UpdateEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * UpdateParser против старого разбора (BaselineUpdateParser) на кадрах настоящего UpdateEncoder:
+ * по 3000 тиков в режимах FULL и DELTA, каждый 50-й кадр в среднем теряется, на RESYNC энкодер
+ * выдаёт ключевой кадр. После каждого доставленного кадра результат, юниты, эликсир и урон
+ * по башням совпадают.
+ */
+class UpdateParserReplayTest {
+
+    @Test
+    void replayMatchesBaselineParser() {
+        Random rnd = new Random(7);
+        long frames = 0;
+        for (UpdateEncoder.Mode mode : UpdateEncoder.Mode.values()) {
+            GameState state = new GameState();
+            state.startMatch();
+            UpdateEncoder enc = new UpdateEncoder(mode, 10);
+            BaselineUpdateParser baseline = new BaselineUpdateParser();
+            UpdateParser parser = new UpdateParser();
+            for (int t = 0; t < 3000; t++) {
+                for (int p = 0; p < 2; p++) state.deploy(p, rnd.nextInt(8), rnd.nextInt(5), rnd.nextInt(3));
+                state.advanceTick();
+                String pay = enc.encode(state);
+                if (rnd.nextInt(50) == 0) continue; // потеря кадра
+                BaselineUpdateParser.Result expected = baseline.apply(pay);
+                UpdateParser.Result actual = parser.apply(pay);
+                String where = mode + " tick " + t + ": " + pay;
+                assertEquals(expected.name(), actual.name(), where);
+                if (expected == BaselineUpdateParser.Result.RESYNC) enc.requestKeyframe();
+                ClientFrame f = parser.frame();
+                assertEquals(baseline.units().values().toString(), f.units.toString(), where);
+                assertEquals(baseline.elixir(0), f.elixir0, where);
+                assertEquals(baseline.elixir(1), f.elixir1, where);
+                assertEquals(baseline.towerDamage(0), f.towerDamage0, where);
+                assertEquals(baseline.towerDamage(1), f.towerDamage1, where);
+                frames++;
+                if (state.isMatchOver()) {
+                    state.startMatch();
+                    enc.requestKeyframe();
+                }
+            }
+        }
+        assertEquals(5901, frames, "delivered frames");
+    }
+}
@@ -0,0 +1,220 @@
+package db;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Лидерборд из памяти.
+ *
+ * 1. Кэш против полной сортировки: players игроков в модели, matches рейтинговых матчей пачками
+ *    по 32 (половина — среди текущих лидеров, чтобы верх таблицы постоянно менялся). После каждой
+ *    пачки top() сравнивается с честной сортировкой всей модели. Время чтения — jmh.LeaderboardBench.
+ * 2. Путь через MatchWriter: JDBC-заглушка с таблицами players и ratings в памяти — рейтинг меняется
+ *    в транзакции писателя, сумма рейтингов сохраняется, а лидерборд, в который игроки входят
+ *    по ходу игры, совпадает с тем, что показала бы свежая загрузка из БД.
+ */
+class LeaderboardTest {
+    private static final int K = 32;
+
+    @Test
+    void cacheMatchesFullSort() throws Exception {
+        int players = 2_000;
+        int matches = 10_000;
+        Random rnd = new Random(7);
+        int[] rating = new int[players];
+        for (int i = 0; i < players; i++) rating[i] = (int) Math.round(1000 + rnd.nextGaussian() * 200);
+        // "БД" — сама модель; top() честно сортирует её целиком
+        PlayerStore store = new PlayerStore(null) {
+            @Override
+            public List<PlayerProfile> top(int limit) {
+                return sorted(rating, limit);
+            }
+        };
+        Leaderboard lb = new Leaderboard(store, 100, 200, 0);
+        lb.reload();
+
+        long mismatches = 0;
+        List<PlayerProfile> changed = new ArrayList<>();
+        for (int m = 0; m < matches; m++) {
+            int a, b;
+            if (m % 2 == 0) {
+                List<PlayerProfile> top = lb.top();
+                a = (int) top.get(rnd.nextInt(top.size())).id;
+                b = (int) top.get(rnd.nextInt(top.size())).id;
+            } else {
+                a = rnd.nextInt(players);
+                b = rnd.nextInt(players);
+            }
+            if (a == b) continue;
+            double score = rnd.nextInt(3) / 2.0;
+            int d = PlayerStore.eloDelta(rating[a], rating[b], score, K);
+            rating[a] += d;
+            rating[b] -= d;
+            changed.add(new PlayerProfile(a, "p" + a, rating[a]));
+            changed.add(new PlayerProfile(b, "p" + b, rating[b]));
+            if (changed.size() == 64) {
+                lb.update(changed);
+                changed.clear();
+                mismatches += compare(lb.top(), sorted(rating, lb.size()));
+            }
+        }
+        assertEquals(0, mismatches, "places that differ from a full sort");
+    }
+
+    /** Сравнение по рейтингам мест: на равных рейтингах порядок игроков условный. */
+    private static long compare(List<PlayerProfile> cached, List<PlayerProfile> truth) {
+        long bad = Math.abs(cached.size() - truth.size());
+        for (int i = 0; i < Math.min(cached.size(), truth.size()); i++) {
+            if (cached.get(i).rating != truth.get(i).rating) bad++;
+        }
+        return bad;
+    }
+
+    /** Полная сортировка: ключ — рейтинг по убыванию в старших битах, id в младших. */
+    private static List<PlayerProfile> sorted(int[] rating, int limit) {
+        long[] keys = new long[rating.length];
+        for (int i = 0; i < keys.length; i++) keys[i] = ((long) -rating[i] << 32) | i;
+        Arrays.sort(keys);
+        List<PlayerProfile> top = new ArrayList<>(limit);
+        for (int i = 0; i < Math.min(limit, keys.length); i++) {
+            int id = (int) keys[i];
+            top.add(new PlayerProfile(id, "p" + id, rating[id]));
+        }
+        return top;
+    }
+
+    // ---- путь через MatchWriter на заглушке JDBC ----
+
+    /** Таблица ratings заглушки: player_id -> {rating, games}. */
+    private final Map<Long, int[]> ratings = new ConcurrentHashMap<>();
+    private final Map<String, Long> players = new ConcurrentHashMap<>();
+
+    @Test
+    void writerUpdatesRatingsAndLeaderboard() throws Exception {
+        DatabaseManager db = new DatabaseManager(new ConnectionPool(this::openFake, 2, 5000));
+        db.leaderboard().reload(); // как при старте сервера на пустой БД
+        List<PlayerProfile> ps = new ArrayList<>();
+        Random rnd = new Random(3);
+        int games = 3000;
+        for (int g = 0; g < games; g++) {
+            // Игроки входят по ходу: вход не должен ломать границу кэша лидерборда
+            if (g % 20 == 0 && ps.size() < 150) {
+                for (int i = 0; i < 10; i++) ps.add(db.players().login("p" + (ps.size() + 1)));
+            }
+            int a = rnd.nextInt(ps.size()), b = rnd.nextInt(ps.size());
+            // Первые чаще выигрывают, чтобы рейтинги разошлись
+            int d0 = rnd.nextInt(10) + b, d1 = rnd.nextInt(10) + a;
+            db.saveResult(ps.get(a), ps.get(b), d0, d1);
+            while (db.matchWriter().pending() > 512) Thread.sleep(1); // очередь писателя не переполняем
+        }
+        // Вошли, но ещё не играли
+        for (int i = 0; i < 5; i++) db.players().login("late" + i);
+        db.saveResult(10, 20); // без игроков — в рейтинг не идёт
+        while (db.matchWriter().pending() > 0) Thread.sleep(10);
+        Thread.sleep(50);
+        int sum = 0;
+        for (int[] r : ratings.values()) sum += r[0];
+        List<PlayerProfile> top = db.leaderboard().top();
+        Leaderboard fresh = new Leaderboard(db.players(), db.leaderboard().size(), db.leaderboard().size() * 2, 0);
+        fresh.reload();
+        db.shutdown();
+        assertEquals(ratings.size() * PlayerStore.INITIAL_RATING, sum, "Elo must keep the rating sum");
+        for (PlayerProfile p : top) assertEquals(ratings.get(p.id)[0], p.rating, "leaderboard rating of " + p);
+        assertEquals(0, compare(top, fresh.top()), "places that differ from a fresh load\n" + top + "\n" + fresh.top());
+    }
+
+    private Connection openFake() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, m, a) -> switch (m.getName()) {
+                    case "prepareStatement" -> fakeStatement((String) a[0]);
+                    case "getAutoCommit", "isValid" -> true;
+                    case "isClosed" -> false;
+                    default -> null;
+                });
+    }
+
+    /**
+     * Запросы PlayerStore и MatchWriter над players/ratings в памяти; матчи не хранятся.
+     * Транзакций нет: писатель один, а проверки идут после того, как он всё записал.
+     */
+    private PreparedStatement fakeStatement(String sql) {
+        Object[] params = new Object[8];
+        List<Object[]> batch = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "setLong", "setInt", "setString": params[(Integer) a[0]] = a[1]; return null;
+                        case "addBatch": batch.add(params.clone()); return null;
+                        case "executeUpdate":
+                            if (sql.startsWith("INSERT INTO ratings")) ratings.putIfAbsent((Long) params[1], new int[] { PlayerStore.INITIAL_RATING, 0 });
+                            return 1;
+                        case "executeQuery": return rows(query(sql, params));
+                        case "executeBatch":
+                            if (sql.startsWith("INSERT INTO ratings")) {
+                                for (Object[] p : batch) {
+                                    int[] old = ratings.get((Long) p[1]);
+                                    ratings.put((Long) p[1], new int[] { (Integer) p[2], old == null ? 1 : old[1] + 1 });
+                                }
+                            }
+                            int[] counts = new int[batch.size()];
+                            batch.clear();
+                            return counts;
+                        default: return null;
+                    }
+                });
+    }
+
+    private List<Object[]> query(String sql, Object[] params) {
+        List<Object[]> rows = new ArrayList<>();
+        if (sql.startsWith("INSERT INTO players")) {
+            rows.add(new Object[] { players.computeIfAbsent((String) params[1], n -> (long) players.size() + 1) });
+        } else if (sql.startsWith("SELECT rating FROM ratings")) {
+            int[] r = ratings.get((Long) params[1]);
+            if (r != null) rows.add(new Object[] { r[0] });
+        } else if (sql.equals(PlayerStore.SELECT_TOP)) {
+            // Фильтр по сыгранным — только если он есть в самом запросе
+            boolean playedOnly = sql.contains("games > 0");
+            Map<Long, String> names = new HashMap<>();
+            players.forEach((n, id) -> names.put(id, n));
+            ratings.entrySet().stream()
+                    .filter(e -> !playedOnly || e.getValue()[1] > 0)
+                    .sorted(Comparator.comparingInt((Map.Entry<Long, int[]> e) -> -e.getValue()[0]).thenComparingLong(Map.Entry::getKey))
+                    .limit((Integer) params[1])
+                    .forEach(e -> rows.add(new Object[] { e.getKey(), names.get(e.getKey()), e.getValue()[0] }));
+        } else {
+            // LOCK_RATINGS: строки пары по возрастанию id
+            long id0 = (Long) params[1], id1 = (Long) params[2];
+            for (long id : new long[] { Math.min(id0, id1), Math.max(id0, id1) }) {
+                int[] r = ratings.get(id);
+                if (r != null) rows.add(new Object[] { id, r[0] });
+            }
+        }
+        return rows;
+    }
+
+    private static ResultSet rows(List<Object[]> rows) {
+        int[] at = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, m, a) -> switch (m.getName()) {
+                    case "next" -> ++at[0] < rows.size();
+                    case "getLong" -> ((Number) rows.get(at[0])[(Integer) a[0] - 1]).longValue();
+                    case "getInt" -> ((Number) rows.get(at[0])[(Integer) a[0] - 1]).intValue();
+                    case "getString" -> rows.get(at[0])[(Integer) a[0] - 1];
+                    default -> null;
+                });
+    }
+}
@@ -0,0 +1,98 @@
+package db;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Повторы MatchWriter на заглушке JDBC: временные ошибки (08, 40) повторяются всей пачкой,
+ * остальные — делят пачку до одной плохой записи, которая выбрасывается, а соседние записываются.
+ */
+class MatchWriterTest {
+    /** Результат с таким уроном БД не принимает никогда (как нарушение ограничения). */
+    private static final int POISON = 666;
+
+    private final List<Integer> stored = new ArrayList<>();
+    private final AtomicInteger transientLeft = new AtomicInteger();
+
+    @Test
+    void transientStates() {
+        assertTrue(MatchWriter.isTransient(new SQLException("refused", "08001")));
+        assertTrue(MatchWriter.isTransient(new SQLException("serialization", "40001")));
+        assertTrue(MatchWriter.isTransient(new SQLException("deadlock", "40P01")));
+        assertTrue(MatchWriter.isTransient(new SQLException("wrapped", null, new SQLException("io", "08006"))));
+        assertFalse(MatchWriter.isTransient(new SQLException("unique", "23505")));
+        assertFalse(MatchWriter.isTransient(new SQLException("no state")));
+    }
+
+    @Test
+    void poisonRowIsDroppedAndNeighboursAreWritten() throws Exception {
+        transientLeft.set(2);
+        MatchWriter writer = writer();
+        for (int i = 0; i < 100; i++) writer.enqueue(i == 37 ? POISON : i, 0);
+        waitIdle(writer);
+        writer.close();
+        assertEquals(1, writer.deadLettered());
+        assertEquals(99, writer.written());
+        assertEquals(99, stored.size());
+        assertFalse(stored.contains(POISON));
+        assertEquals(0, transientLeft.get(), "transient failures are retried");
+    }
+
+    private MatchWriter writer() {
+        ConnectionPool pool = new ConnectionPool(this::openFake, 1, 1000);
+        PlayerStore players = new PlayerStore(pool);
+        return new MatchWriter(pool, new Leaderboard(players, 10, 20, 0), new MatchHistory(pool, 20, 100, 16, 1000),
+                32, 1000, 64, 1000).start();
+    }
+
+    private static void waitIdle(MatchWriter writer) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (writer.pending() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    }
+
+    private Connection openFake() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, m, a) -> switch (m.getName()) {
+                    case "prepareStatement" -> fakeInsert();
+                    case "getAutoCommit", "isValid" -> true;
+                    case "isClosed" -> false;
+                    default -> null;
+                });
+    }
+
+    /** executeBatch сохраняет урон первого игрока; пачка с POISON падает целиком, как в транзакции. */
+    private PreparedStatement fakeInsert() {
+        int[] damage = new int[1];
+        List<Integer> batch = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "setInt":
+                            if ((Integer) a[0] == 3) damage[0] = (Integer) a[1];
+                            return null;
+                        case "addBatch": batch.add(damage[0]); return null;
+                        case "executeBatch":
+                            if (transientLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                                throw new SQLException("could not serialize access", "40001");
+                            }
+                            if (batch.contains(POISON)) throw new SQLException("check constraint violated", "23514");
+                            synchronized (stored) {
+                                stored.addAll(batch);
+                            }
+                            return new int[batch.size()];
+                        default: return null;
+                    }
+                });
+    }
+}
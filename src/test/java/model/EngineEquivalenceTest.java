@@ -0,0 +1,67 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Текущий GameState против исходного движка (BaselineGameState): на одних и тех же случайных
+ * высадках обоих игроков serializeForClients() совпадает после каждого тика.
+ */
+class EngineEquivalenceTest {
+
+    /** 20 000 сидов по 40 тиков, до 5 высадок за тик; эликсир доливается, чтобы высадки проходили. */
+    @Test
+    void randomDeploysMatchBaseline() {
+        int seeds = 20_000;
+        for (int seed = 0; seed < seeds; seed++) {
+            Random rnd = new Random(seed);
+            GameState state = new GameState();
+            BaselineGameState baseline = new BaselineGameState();
+            state.startMatch();
+            baseline.startMatch();
+            for (int t = 0; t < 40; t++) {
+                for (int d = rnd.nextInt(6); d > 0; d--) {
+                    int player = rnd.nextInt(2);
+                    String payload = rnd.nextInt(8) + "," + rnd.nextInt(5) + "," + rnd.nextInt(3);
+                    state.deploy(player, payload);
+                    baseline.deploy(player, payload);
+                    state.players[player].elixir = baseline.players[player].elixir = 10;
+                }
+                state.advanceTick();
+                baseline.advanceTick();
+                assertEquals(baseline.serializeForClients(), state.serializeForClients(), "seed " + seed + " tick " + t);
+            }
+        }
+    }
+
+    /**
+     * 5 000 сидов, матчи до isMatchOver на одних и тех же экземплярах: рабочие массивы тика
+     * переживают startMatch и не должны протаскивать состояние из прошлого матча.
+     */
+    @Test
+    void fullMatchesOnReusedStateMatchBaseline() {
+        GameState state = new GameState();
+        BaselineGameState baseline = new BaselineGameState();
+        for (int seed = 0; seed < 5_000; seed++) {
+            Random rnd = new Random(seed);
+            state.startMatch();
+            baseline.startMatch();
+            for (int t = 0; !baseline.isMatchOver(); t++) {
+                for (int d = rnd.nextInt(4); d > 0; d--) {
+                    int player = rnd.nextInt(2);
+                    state.players[player].elixir = baseline.players[player].elixir = 10;
+                    String payload = rnd.nextInt(8) + "," + rnd.nextInt(5) + "," + rnd.nextInt(3);
+                    state.deploy(player, payload);
+                    baseline.deploy(player, payload);
+                }
+                state.advanceTick();
+                baseline.advanceTick();
+                assertEquals(baseline.serializeForClients(), state.serializeForClients(), "seed " + seed + " tick " + t);
+                assertEquals(baseline.isMatchOver(), state.isMatchOver(), "match over, seed " + seed + " tick " + t);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Хэш 3000 случайных матчей: полное состояние и DELTA-кадры UpdateEncoder после каждого тика.
+ * Ожидаемые числа сняты на движке со списком юнитов до перехода на UnitStore; любое изменение
+ * правил, порядка юнитов или формата кадров их сдвинет.
+ */
+class GoldenHashTest {
+
+    @Test
+    void threeThousandMatchesKeepTheGoldenHash() {
+        long state = 1, frames = 1, ticks = 0;
+        Random rnd = new Random(5);
+        for (int m = 0; m < 3000; m++) {
+            GameState s = new GameState();
+            UpdateEncoder enc = new UpdateEncoder(UpdateEncoder.Mode.DELTA, 20);
+            s.startMatch();
+            while (!s.isMatchOver()) {
+                for (int k = rnd.nextInt(4); k > 0; k--) {
+                    int player = rnd.nextInt(2);
+                    s.players[player].elixir = 10;
+                    s.deploy(player, rnd.nextInt(8), rnd.nextInt(5), rnd.nextInt(3));
+                }
+                s.advanceTick();
+                ticks++;
+                state = state * 31 + s.serializeForClients().hashCode();
+                // Порядок удалённых uid в D-кадре не важен: хэшируются отсортированные
+                String[] parts = enc.encode(s).split("\\|", -1);
+                if (parts.length > 7) {
+                    String[] removed = parts[7].split(";");
+                    Arrays.sort(removed);
+                    parts[7] = String.join(";", removed);
+                }
+                frames = frames * 31 + String.join("|", parts).hashCode();
+            }
+        }
+        assertEquals("120000 4740254636212181354 6595486603048691672", ticks + " " + state + " " + frames);
+    }
+}
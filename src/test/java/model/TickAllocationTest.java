@@ -0,0 +1,44 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * GameState.advanceTick после прогрева не аллоцирует.
+ * Меряются байты, выделенные текущим потоком только внутри advanceTick (DEBUG-лог GameState выключен по умолчанию).
+ */
+class TickAllocationTest {
+    private static final int TICKS = 200_000;
+
+    @Test
+    void advanceTickIsAllocationFreeAfterWarmup() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Random rnd = new Random(42);
+        GameState state = new GameState();
+
+        run(state, rnd, TICKS / 4, mx);
+        long allocated = run(state, rnd, TICKS, mx);
+        assertEquals(0, allocated, "bytes allocated by advanceTick over " + TICKS + " ticks");
+    }
+
+    /** Гоняет тики, между ними доставляет юнитов; возвращает байты, выделенные только тиками. */
+    private static long run(GameState state, Random rnd, int ticks, com.sun.management.ThreadMXBean mx) {
+        long inTicks = 0;
+        for (int t = 0; t < ticks; t++) {
+            if (t % 40 == 0) state.startMatch();
+            for (int d = rnd.nextInt(4); d > 0; d--) {
+                int player = rnd.nextInt(2);
+                state.players[player].elixir = 10;
+                state.deploy(player, rnd.nextInt(8) + "," + rnd.nextInt(5) + "," + rnd.nextInt(3));
+            }
+            long before = mx.getCurrentThreadAllocatedBytes();
+            state.advanceTick();
+            inTicks += mx.getCurrentThreadAllocatedBytes() - before;
+        }
+        return inTicks;
+    }
+}
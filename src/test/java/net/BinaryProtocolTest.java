@@ -0,0 +1,97 @@
+package net;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Битые кадры отвергаются ProtocolException, а не разбираются из мусора за границей тела. */
+class BinaryProtocolTest {
+
+    @Test
+    void roundTrip() throws ProtocolException {
+        String payload = "12,0,5,1,1,100;7,1,3,2,0,250;|Ёлка:x/y";
+        byte[] frame = BinaryProtocol.encode("UPDATE", payload);
+        List<Protocol.Parsed> out = new ArrayList<>();
+        new FrameDecoder().decode(ByteBuffer.wrap(frame), out::add);
+        assertEquals(1, out.size());
+        assertEquals("UPDATE", out.get(0).type);
+        assertEquals(payload, out.get(0).payload);
+    }
+
+    @Test
+    void unknownTypeIsProtocolError() {
+        assertThrows(ProtocolException.class, () -> decode(0xB1, 0x01, 0xFF));
+    }
+
+    @Test
+    void varintPastFrameEndIsProtocolError() {
+        // Тело {UPDATE, 0xF0} обрывается посреди varint; следующие байты буфера — старые данные
+        byte[] buf = { 0x08, (byte) 0xF0, 0x00, 0x05 };
+        assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeBody(buf, 0, 2));
+        assertThrows(ProtocolException.class, () -> decode(0xB1, 0x02, 0x08, 0xF0));
+    }
+
+    @Test
+    void stringPastFrameEndIsProtocolError() {
+        byte[] buf = { 0x08, (byte) 0x58, 'a', 'b', 'c', 'd', 'e' };
+        assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeBody(buf, 0, 4));
+    }
+
+    @Test
+    void overlongVarintIsProtocolError() {
+        byte[] buf = new byte[16];
+        buf[0] = 0x08;
+        buf[1] = (byte) 0xF0;
+        for (int i = 2; i < buf.length; i++) buf[i] = (byte) 0xFF;
+        assertThrows(ProtocolException.class, () -> BinaryProtocol.decodeBody(buf, 0, buf.length));
+    }
+
+    @Test
+    void badFrameLengthIsProtocolError() {
+        assertThrows(ProtocolException.class, () -> decode(0xB1, 0x00));
+        assertThrows(ProtocolException.class, () -> decode(0xB1, 0xFF, 0xFF, 0xFF, 0xFF, 0x7F));
+    }
+
+    /** Оба транспорта режут по одному пределу BinaryProtocol.MAX_FRAME — и кадры, и текстовые строки. */
+    @Test
+    void bothTransportsShareTheFrameLimit() throws Exception {
+        String longest = "INFO:" + "a".repeat(BinaryProtocol.MAX_FRAME - 5);
+        byte[] line = (longest + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tooLong = (longest + "a\n").getBytes(StandardCharsets.UTF_8);
+        assertEquals(longest.length() - 5, readBoth(line).payload.length());
+        assertThrows(ProtocolException.class, () -> new FrameDecoder().decode(ByteBuffer.wrap(tooLong), m -> { }));
+        assertThrows(ProtocolException.class, () -> new FrameReader(new ByteArrayInputStream(tooLong)).read());
+
+        byte[] frame = BinaryProtocol.encode("INFO", "a".repeat(BinaryProtocol.MAX_FRAME - 8));
+        assertEquals(BinaryProtocol.MAX_FRAME - 8, readBoth(frame).payload.length());
+        // Заголовок кадра длиной MAX_FRAME + 1, varint в три байта
+        int over = BinaryProtocol.MAX_FRAME + 1;
+        byte[] header = { BinaryProtocol.MAGIC, (byte) (0x80 | over & 0x7F), (byte) (0x80 | over >>> 7 & 0x7F), (byte) (over >>> 14) };
+        assertThrows(ProtocolException.class, () -> new FrameDecoder().decode(ByteBuffer.wrap(header), m -> { }));
+        assertThrows(ProtocolException.class, () -> new FrameReader(new ByteArrayInputStream(header)).read());
+    }
+
+    /** Разбирает сообщение обоими транспортами и проверяет, что результат одинаковый. */
+    private static Protocol.Parsed readBoth(byte[] bytes) throws Exception {
+        List<Protocol.Parsed> out = new ArrayList<>();
+        new FrameDecoder().decode(ByteBuffer.wrap(bytes), out::add);
+        Protocol.Parsed blocking = new FrameReader(new ByteArrayInputStream(bytes)).read();
+        assertEquals(1, out.size());
+        assertEquals(out.get(0).type, blocking.type);
+        assertEquals(out.get(0).payload, blocking.payload);
+        return blocking;
+    }
+
+    private static void decode(int... bytes) throws ProtocolException {
+        byte[] b = new byte[bytes.length];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) bytes[i];
+        new FrameDecoder().decode(ByteBuffer.wrap(b), m -> {});
+    }
+}
@@ -0,0 +1,117 @@
+package server;
+
+import model.GameState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MatchJournal пишет, JournalReader читает: матч воспроизводится тик в тик, чтение останавливается
+ * на нулевой длине, сегменты переключаются, запись максимальной длины читается целиком.
+ */
+class MatchJournalTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void seededMatchReplaysTickByTick() throws Exception {
+        Random rnd = new Random(11);
+        int room = 7;
+        GameState state = new GameState();
+        List<String> expected = new ArrayList<>();
+        String result;
+        // Те же записи и в том же порядке, что делает Room
+        try (MatchJournal journal = MatchJournal.open(dir, 1024 * 1024, 50)) {
+            for (int p = 0; p < 2; p++) {
+                String selection = p == 0 ? "0,1,2,3,4" : "3,4,5,6,7";
+                journal.append(MatchJournal.SELECT, room, p, selection);
+                state.setPlayerSelection(p, selection);
+                journal.append(MatchJournal.READY, room, p, null);
+                state.setReady(p, true);
+            }
+            journal.append(MatchJournal.MATCH_START, room, -1, null);
+            state.startMatch();
+            while (!state.isMatchOver()) {
+                for (int d = rnd.nextInt(3); d > 0; d--) {
+                    int p = rnd.nextInt(2);
+                    String deploy = rnd.nextInt(8) + "," + rnd.nextInt(5) + "," + rnd.nextInt(3);
+                    journal.append(MatchJournal.DEPLOY, room, p, deploy);
+                    state.deploy(p, deploy);
+                }
+                journal.append(MatchJournal.TICK, room, -1, null);
+                state.advanceTick();
+                expected.add(state.serializeForClients());
+            }
+            result = state.computeResult();
+            journal.append(MatchJournal.END, room, -1, result);
+            // Чужая комната в том же журнале воспроизведению не мешает
+            journal.append(MatchJournal.DEPLOY, room + 1, 0, "0,0,0");
+        }
+
+        List<String> replayed = new ArrayList<>();
+        boolean same = JournalReader.replay(JournalReader.segments(dir, 0), room, 1,
+                (tick, s) -> replayed.add(s.serializeForClients()));
+        assertTrue(same, "replayed result must match END " + result);
+        assertEquals(expected, replayed);
+    }
+
+    @Test
+    void zeroLengthEndsReading() throws Exception {
+        try (MatchJournal journal = MatchJournal.open(dir, MatchJournal.MIN_SEGMENT, 50)) {
+            for (int i = 0; i < 3; i++) journal.append(MatchJournal.DEPLOY, 1, 0, "1,2," + i);
+        }
+        // Полная запись за двумя нулевыми байтами: читатель до неё дойти не должен
+        List<File> segs = JournalReader.segments(dir, 0);
+        long end = 3L * (MatchJournal.HEADER + MatchJournal.BODY_FIXED + 5);
+        try (RandomAccessFile raf = new RandomAccessFile(segs.get(0), "rw")) {
+            raf.seek(end + MatchJournal.HEADER);
+            raf.writeShort(MatchJournal.BODY_FIXED);
+            raf.write(new byte[] { MatchJournal.TICK, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+        }
+        List<String> payloads = new ArrayList<>();
+        JournalReader.forEach(segs, e -> payloads.add(e.payload));
+        assertEquals(List.of("1,2,0", "1,2,1", "1,2,2"), payloads);
+    }
+
+    @Test
+    void rollsOverSmallSegments() throws Exception {
+        int events = 10_000;
+        try (MatchJournal journal = MatchJournal.open(dir, MatchJournal.MIN_SEGMENT, 50)) {
+            for (int i = 0; i < events; i++) journal.append(MatchJournal.DEPLOY, 1, i & 1, "event-" + i);
+        }
+        List<File> segs = JournalReader.segments(dir, 0);
+        assertTrue(segs.size() > 1, "expected several segments, got " + segs.size());
+        List<String> payloads = new ArrayList<>();
+        JournalReader.forEach(segs, e -> payloads.add(e.payload));
+        assertEquals(events, payloads.size());
+        for (int i = 0; i < events; i++) assertEquals("event-" + i, payloads.get(i));
+    }
+
+    @Test
+    void maxPayloadReadsBackIntact() throws Exception {
+        // Длина тела 0xFFFF не влезает в signed short: читатель должен брать её беззнаковой
+        String payload = "x".repeat(MatchJournal.MAX_PAYLOAD - 1) + "y";
+        try (MatchJournal journal = MatchJournal.open(dir, MatchJournal.MIN_SEGMENT, 50)) {
+            journal.append(MatchJournal.END, 3, -1, payload);
+            journal.append(MatchJournal.END, 3, -1, payload);
+            journal.append(MatchJournal.TICK, 3, -1, null);
+        }
+        List<JournalReader.Event> events = new ArrayList<>();
+        JournalReader.forEach(JournalReader.segments(dir, 0), events::add);
+        assertEquals(3, events.size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(MatchJournal.END, events.get(i).type);
+            assertEquals(3, events.get(i).room);
+            assertEquals(payload, events.get(i).payload);
+        }
+        assertEquals(MatchJournal.TICK, events.get(2).type);
+    }
+}